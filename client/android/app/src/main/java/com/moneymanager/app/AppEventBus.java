@@ -0,0 +1,201 @@
+package com.moneymanager.app;
+
+import android.util.Log;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-process event bus between the native services and the Capacitor plugins.
+ *
+ * Events are immutable objects keyed by their class, so nothing is marshalled through
+ * Intent extras. Publishing reads a copy-on-write subscriber array without locking;
+ * each subscriber gets the event on the executor it chose ({@link #DIRECT} runs it on
+ * the publishing thread).
+ *
+ * Types registered with {@link #retainUndelivered} keep events that were published
+ * while nobody was subscribed and hand them to the next subscriber that asks for
+ * replay; {@link ExpensesChangedEvent} uses this so a background delta sync is not
+ * lost on a plugin that loads later. Saved expenses do not rely on this: they are
+ * durable in {@link TransactionStore}.
+ */
+public final class AppEventBus {
+    private static final String TAG = "AppEventBus";
+    private static final AppEventBus INSTANCE = new AppEventBus();
+    private static final Subscription<?>[] EMPTY = new Subscription<?>[0];
+
+    public static final Executor DIRECT = Runnable::run;
+
+    public interface Subscriber<T> {
+        void onEvent(T event);
+    }
+
+    public static final class Subscription<T> {
+        private final Class<T> type;
+        private final Executor executor;
+        private final Subscriber<? super T> subscriber;
+        private final AtomicBoolean active = new AtomicBoolean(true);
+
+        private Subscription(Class<T> type, Executor executor, Subscriber<? super T> subscriber) {
+            this.type = type;
+            this.executor = executor;
+            this.subscriber = subscriber;
+        }
+
+        private void deliver(T event) {
+            executor.execute(() -> {
+                // Cancelled after the event was queued on the executor
+                if (!active.get()) return;
+                try {
+                    subscriber.onEvent(event);
+                } catch (Exception e) {
+                    Log.e(TAG, "Subscriber for " + type.getSimpleName() + " failed: " + e.getMessage(), e);
+                }
+            });
+        }
+
+        public void cancel() {
+            if (active.compareAndSet(true, false)) {
+                INSTANCE.remove(this);
+            }
+        }
+    }
+
+    private static final class Retained {
+        final int capacity;
+        final ConcurrentLinkedQueue<Object> events = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+
+        Retained(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void add(Object event) {
+            events.offer(event);
+            // Oldest undelivered events go first once the buffer is full
+            if (size.incrementAndGet() > capacity && events.poll() != null) {
+                size.decrementAndGet();
+            }
+        }
+
+        Object poll() {
+            Object event = events.poll();
+            if (event != null) size.decrementAndGet();
+            return event;
+        }
+    }
+
+    private final ConcurrentHashMap<Class<?>, AtomicReference<Subscription<?>[]>> subscribers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, Retained> retained = new ConcurrentHashMap<>();
+
+    private AppEventBus() {
+    }
+
+    public static AppEventBus get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Keep up to {@code capacity} events of this type that were published with no subscriber.
+     * Registering a type again keeps its existing buffer.
+     */
+    public void retainUndelivered(Class<?> type, int capacity) {
+        retained.putIfAbsent(type, new Retained(capacity));
+    }
+
+    /**
+     * @param replay also deliver retained events that nobody has received yet
+     */
+    public <T> Subscription<T> subscribe(Class<T> type, Executor executor, boolean replay, Subscriber<? super T> subscriber) {
+        Subscription<T> subscription = new Subscription<>(type, executor, subscriber);
+        AtomicReference<Subscription<?>[]> ref = slot(type);
+        Subscription<?>[] current;
+        Subscription<?>[] updated;
+        do {
+            current = ref.get();
+            updated = new Subscription<?>[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = subscription;
+        } while (!ref.compareAndSet(current, updated));
+
+        Retained pending = replay ? retained.get(type) : null;
+        if (pending != null) {
+            Object event;
+            int count = 0;
+            while ((event = pending.poll()) != null) {
+                subscription.deliver(type.cast(event));
+                count++;
+            }
+            if (count > 0) Log.d(TAG, "🔁 Replayed " + count + " " + type.getSimpleName());
+        }
+        return subscription;
+    }
+
+    /**
+     * Deliver an event to every subscriber of its exact class.
+     *
+     * @return the number of subscribers it was handed to
+     */
+    @SuppressWarnings("unchecked")
+    public <T> int post(T event) {
+        Class<T> type = (Class<T>) event.getClass();
+        AtomicReference<Subscription<?>[]> ref = subscribers.get(type);
+        Subscription<?>[] current = ref != null ? ref.get() : EMPTY;
+        if (current.length == 0) {
+            Retained pending = retained.get(type);
+            if (pending != null) {
+                pending.add(event);
+                Log.d(TAG, "No subscriber for " + type.getSimpleName() + ", retained for replay");
+                // A subscriber that arrived meanwhile may already have drained the buffer
+                current = ref != null ? ref.get() : EMPTY;
+                if (current.length > 0) {
+                    Object retainedEvent;
+                    while ((retainedEvent = pending.poll()) != null) {
+                        for (Subscription<?> subscription : current) {
+                            ((Subscription<T>) subscription).deliver((T) retainedEvent);
+                        }
+                    }
+                }
+            }
+            return 0;
+        }
+        for (Subscription<?> subscription : current) {
+            ((Subscription<T>) subscription).deliver(event);
+        }
+        return current.length;
+    }
+
+    private AtomicReference<Subscription<?>[]> slot(Class<?> type) {
+        AtomicReference<Subscription<?>[]> ref = subscribers.get(type);
+        if (ref == null) {
+            ref = new AtomicReference<>(EMPTY);
+            AtomicReference<Subscription<?>[]> raced = subscribers.putIfAbsent(type, ref);
+            if (raced != null) ref = raced;
+        }
+        return ref;
+    }
+
+    private void remove(Subscription<?> subscription) {
+        AtomicReference<Subscription<?>[]> ref = subscribers.get(subscription.type);
+        if (ref == null) return;
+        Subscription<?>[] current;
+        Subscription<?>[] updated;
+        do {
+            current = ref.get();
+            int index = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == subscription) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) return;
+            updated = new Subscription<?>[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+        } while (!ref.compareAndSet(current, updated));
+    }
+}
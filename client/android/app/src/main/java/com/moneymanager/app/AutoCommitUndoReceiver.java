@@ -0,0 +1,39 @@
+package com.moneymanager.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.Toast;
+
+/**
+ * "Undo" action on the auto-commit notification.
+ */
+public class AutoCommitUndoReceiver extends BroadcastReceiver {
+    private static final String TAG = "AutoCommitUndo";
+    static final String EXTRA_CLIENT_ID = "clientId";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String clientId = intent.getStringExtra(EXTRA_CLIENT_ID);
+        if (clientId == null) return;
+
+        // The store flushes and deletes on disk; keep that off the main thread
+        PendingResult result = goAsync();
+        Context appContext = context.getApplicationContext();
+        new Thread(() -> {
+            try {
+                boolean removed = AutoCommitter.undo(appContext, clientId);
+                String message = removed ? "Expense removed" : "Already synced - delete it in the app";
+                new Handler(Looper.getMainLooper()).post(() ->
+                        Toast.makeText(appContext, message, Toast.LENGTH_SHORT).show());
+            } catch (Exception e) {
+                Log.e(TAG, "Error undoing auto-commit: " + e.getMessage(), e);
+            } finally {
+                result.finish();
+            }
+        }, "AutoCommitUndo").start();
+    }
+}
@@ -0,0 +1,154 @@
+package com.moneymanager.app;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+import androidx.core.app.NotificationCompat;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in auto-commit: a capture whose parse and category prediction both clear the
+ * user's thresholds is written straight to {@link TransactionStore} and announced with
+ * an undo notification instead of the overlay. Only a parsed merchant with enough saves
+ * of its own qualifies; the ratio alone is not evidence, and naive Bayes guesses for
+ * unseen merchants always go to the overlay.
+ *
+ * The row is saved as {@link TransactionStore#STATE_HELD}, so nothing reaches the
+ * server before {@link #UNDO_WINDOW_MS} has passed and Undo only has to delete it
+ * locally. It is deliberately not published as an {@link ExpenseSavedEvent}, which
+ * would make JS save it to the server immediately.
+ */
+public final class AutoCommitter {
+    private static final String TAG = "AutoCommitter";
+    static final String KEY_ENABLED = "autoCommitEnabled";
+    static final String KEY_MIN_PARSE_CONFIDENCE = "autoCommitMinParseConfidence";
+    static final String KEY_MIN_CATEGORY_CONFIDENCE = "autoCommitMinCategoryConfidence";
+    static final float DEFAULT_MIN_PARSE_CONFIDENCE = 0.9f;
+    static final float DEFAULT_MIN_CATEGORY_CONFIDENCE = 0.8f;
+    static final String KEY_MIN_MERCHANT_SAMPLES = "autoCommitMinMerchantSamples";
+    static final int DEFAULT_MIN_MERCHANT_SAMPLES = 5;
+
+    public static final long UNDO_WINDOW_MS = 30 * 1000L;
+    static final String CHANNEL_ID = "auto_commit_channel";
+    private static final int NOTIFICATION_ID_BASE = 3000;
+
+    private static final AtomicLong committed = new AtomicLong();
+    private static final AtomicLong undone = new AtomicLong();
+    private static final AtomicLong declined = new AtomicLong();
+
+    private AutoCommitter() {
+    }
+
+    /**
+     * Save the capture without an overlay if auto-commit is on and it is confident enough.
+     * Call on a worker thread.
+     *
+     * @return true if it was saved and the caller must not show the overlay
+     */
+    public static boolean tryCommit(Context context, String source, String title, String text, String packageName,
+                                    ParsedTransaction parsed) {
+        SharedPreferences prefs = context.getSharedPreferences(SelectedApps.PREFS_NAME, Context.MODE_PRIVATE);
+        if (!prefs.getBoolean(KEY_ENABLED, false)) return false;
+
+        float parseConfidence = TransactionParser.confidence(parsed);
+        String merchant = TransactionParser.knownMerchant(parsed.merchant);
+        CategoryPredictor predictor = CategoryPredictor.getInstance(context);
+        CategoryPredictor.Prediction prediction = new CategoryPredictor.Prediction();
+        boolean predicted = merchant != null && predictor.predict(merchant, text, prediction);
+
+        if (parseConfidence < prefs.getFloat(KEY_MIN_PARSE_CONFIDENCE, DEFAULT_MIN_PARSE_CONFIDENCE)
+                || !predicted
+                || !prediction.byMerchant
+                || prediction.samples < prefs.getInt(KEY_MIN_MERCHANT_SAMPLES, DEFAULT_MIN_MERCHANT_SAMPLES)
+                || prediction.confidence < prefs.getFloat(KEY_MIN_CATEGORY_CONFIDENCE, DEFAULT_MIN_CATEGORY_CONFIDENCE)) {
+            declined.incrementAndGet();
+            Log.d(TAG, "Not confident enough to auto-commit: merchant=" + merchant + ", parse=" + parseConfidence +
+                    ", category=" + prediction.confidence + " from " + prediction.samples + " saves");
+            return false;
+        }
+
+        String category = CategoryPredictor.CATEGORIES[prediction.category];
+        long transactionTime = parsed.timestamp > 0 ? parsed.timestamp : System.currentTimeMillis();
+        String clientId = TransactionStore.getInstance(context).save(parsed.amount, parsed.type, category, title, text,
+                packageName, source, transactionTime, TransactionStore.STATE_HELD);
+        predictor.record(merchant, text, prediction.category);
+        ExpenseSyncJobService.schedule(context, UNDO_WINDOW_MS);
+
+        committed.incrementAndGet();
+        Log.d(TAG, "⚡ Auto-committed Rs." + parsed.amount + " to " + category + " (parse=" + parseConfidence +
+                ", category=" + prediction.confidence + ")");
+        showUndoNotification(context, clientId, merchant, parsed.amount, category);
+        return true;
+    }
+
+    /**
+     * Called by {@link AutoCommitUndoReceiver}, off the main thread.
+     *
+     * @return false if the row was already released for sync
+     */
+    static boolean undo(Context context, String clientId) {
+        cancelNotification(context, clientId);
+        if (!TransactionStore.getInstance(context).discardHeld(clientId)) {
+            return false;
+        }
+        undone.incrementAndGet();
+        Log.d(TAG, "↩️ Auto-commit undone: " + clientId);
+        return true;
+    }
+
+    public static long getCommitted() {
+        return committed.get();
+    }
+
+    public static long getUndone() {
+        return undone.get();
+    }
+
+    /**
+     * Captures that went to the overlay because a threshold was not met.
+     */
+    public static long getDeclined() {
+        return declined.get();
+    }
+
+    private static void showUndoNotification(Context context, String clientId, String merchant, double amount,
+                                             String category) {
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        if (manager == null) return;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Auto-saved expenses",
+                    NotificationManager.IMPORTANCE_LOW);
+            channel.setDescription("Expenses saved without a popup, with an undo action");
+            manager.createNotificationChannel(channel);
+        }
+
+        Intent undoIntent = new Intent(context, AutoCommitUndoReceiver.class);
+        undoIntent.putExtra(AutoCommitUndoReceiver.EXTRA_CLIENT_ID, clientId);
+        PendingIntent undo = PendingIntent.getBroadcast(context, notificationId(clientId), undoIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.ic_dialog_info)
+                .setContentTitle("✅ Saved ₹" + String.format("%.2f", amount) + " · " + category)
+                .setContentText(merchant)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .setAutoCancel(true)
+                .setTimeoutAfter(UNDO_WINDOW_MS)
+                .addAction(android.R.drawable.ic_menu_revert, "Undo", undo);
+        manager.notify(notificationId(clientId), builder.build());
+    }
+
+    private static void cancelNotification(Context context, String clientId) {
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        if (manager != null) manager.cancel(notificationId(clientId));
+    }
+
+    private static int notificationId(String clientId) {
+        return NOTIFICATION_ID_BASE + (clientId.hashCode() & 0xFFF);
+    }
+}
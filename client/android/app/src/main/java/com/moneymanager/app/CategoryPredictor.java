@@ -0,0 +1,322 @@
+package com.moneymanager.app;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * On-device merchant → category model, learned from the user's own saves.
+ *
+ * Two tables live in one memory-mapped file:
+ * - per-merchant category counts in an open-addressed hash table; a merchant that was
+ *   saved before is predicted from its own history
+ * - hashed token counts per category for a naive Bayes fallback over the merchant and
+ *   message words, for merchants never seen before
+ *
+ * Both are updated in place on every save. Prediction walks the strings char by char
+ * and writes into a caller-owned {@link Prediction}, so a lookup allocates nothing.
+ */
+public class CategoryPredictor {
+    private static final String TAG = "CategoryPredictor";
+    private static final String MODEL_FILE = "category_model.bin";
+
+    /** Model columns; the order is part of the file format. */
+    public static final String[] CATEGORIES = {"Food & Dining", "Transportation", "Shopping", "Entertainment", "Bills & Utilities", "Healthcare", "Other"};
+
+    private static final int MAGIC = 0x43415450; // "CATP"
+    private static final int VERSION = 1;
+    private static final int COLUMNS = 8; // room for one more category without a format change
+
+    // Header: magic, version, then per-category save totals and token totals
+    private static final int DOC_TOTALS_OFFSET = 16;
+    private static final int TOKEN_TOTALS_OFFSET = DOC_TOTALS_OFFSET + COLUMNS * 4;
+    private static final int HEADER_BYTES = 128;
+
+    // Merchant slot: 64-bit key (0 = empty) + one unsigned 16-bit count per column
+    private static final int MERCHANT_SLOTS = 4096;
+    private static final int MERCHANT_SLOT_BYTES = 8 + COLUMNS * 2;
+    private static final int MERCHANT_PROBES = 16;
+    private static final int MERCHANT_OFFSET = HEADER_BYTES;
+
+    // Token bucket: one unsigned 16-bit count per column
+    private static final int TOKEN_BUCKETS = 8192;
+    private static final int TOKEN_BUCKET_BYTES = COLUMNS * 2;
+    private static final int TOKEN_OFFSET = MERCHANT_OFFSET + MERCHANT_SLOTS * MERCHANT_SLOT_BYTES;
+    private static final int MAX_TOKENS_PER_FIELD = 24;
+
+    private static final int FILE_BYTES = TOKEN_OFFSET + TOKEN_BUCKETS * TOKEN_BUCKET_BYTES; // ~224 KB
+    private static final int MAX_COUNT = 0xFFFF;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Result holder, reused by the caller across lookups.
+     */
+    public static final class Prediction {
+        /** Index into {@link #CATEGORIES}, or -1 when the model has nothing to go on. */
+        public int category = -1;
+        /** 0..1; merchant history gives count / (saves + 1), naive Bayes the posterior. */
+        public float confidence;
+        public boolean byMerchant;
+        /** Saves behind a merchant-history prediction; 0 for naive Bayes. */
+        public int samples;
+    }
+
+    private static CategoryPredictor instance;
+
+    private final File file;
+    private MappedByteBuffer table;
+    private final double[] scores = new double[COLUMNS];
+    private int scoredTokens;
+
+    public static synchronized CategoryPredictor getInstance(Context context) {
+        if (instance == null) {
+            instance = new CategoryPredictor(new File(context.getApplicationContext().getFilesDir(), MODEL_FILE));
+        }
+        return instance;
+    }
+
+    CategoryPredictor(File file) {
+        this.file = file;
+    }
+
+    public static int indexOf(String category) {
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            if (CATEGORIES[i].equals(category)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Map the model file ahead of the first lookup.
+     */
+    public synchronized boolean warmUp() {
+        return open();
+    }
+
+    /**
+     * @return false (and category -1) when there is no history to predict from
+     */
+    public synchronized boolean predict(String merchant, String text, Prediction out) {
+        out.category = -1;
+        out.confidence = 0f;
+        out.byMerchant = false;
+        out.samples = 0;
+        if (!open()) return false;
+
+        long key = merchantKey(merchant);
+        int slot = key != 0 ? findSlot(key, false) : -1;
+        if (slot >= 0) {
+            int base = MERCHANT_OFFSET + slot * MERCHANT_SLOT_BYTES + 8;
+            int best = -1;
+            int bestCount = 0;
+            int total = 0;
+            for (int c = 0; c < CATEGORIES.length; c++) {
+                int count = table.getChar(base + c * 2);
+                total += count;
+                if (count > bestCount) {
+                    best = c;
+                    bestCount = count;
+                }
+            }
+            if (best >= 0) {
+                out.category = best;
+                out.confidence = bestCount / (float) (total + 1);
+                out.byMerchant = true;
+                out.samples = total;
+                return true;
+            }
+        }
+
+        int docs = 0;
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            docs += table.getInt(DOC_TOTALS_OFFSET + c * 4);
+        }
+        if (docs == 0) return false;
+
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            int docCount = table.getInt(DOC_TOTALS_OFFSET + c * 4);
+            scores[c] = docCount == 0 ? Double.NEGATIVE_INFINITY
+                    : Math.log((docCount + 1.0) / (docs + CATEGORIES.length));
+        }
+        scoredTokens = 0;
+        scanTokens(merchant, -1);
+        scanTokens(text, -1);
+        if (scoredTokens == 0) return false;
+
+        int best = 0;
+        for (int c = 1; c < CATEGORIES.length; c++) {
+            if (scores[c] > scores[best]) best = c;
+        }
+        double sum = 0;
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            sum += Math.exp(scores[c] - scores[best]);
+        }
+        out.category = best;
+        out.confidence = (float) (1.0 / sum);
+        return true;
+    }
+
+    /**
+     * Learn from a save. Unknown categories are ignored.
+     */
+    public synchronized void record(String merchant, String text, int category) {
+        if (category < 0 || category >= CATEGORIES.length || !open()) return;
+
+        int docOffset = DOC_TOTALS_OFFSET + category * 4;
+        table.putInt(docOffset, table.getInt(docOffset) + 1);
+
+        long key = merchantKey(merchant);
+        if (key != 0) {
+            int slot = findSlot(key, true);
+            int base = MERCHANT_OFFSET + slot * MERCHANT_SLOT_BYTES + 8;
+            if (increment(base + category * 2) == MAX_COUNT) {
+                halve(base);
+            }
+        }
+
+        scanTokens(merchant, category);
+        scanTokens(text, category);
+    }
+
+    private boolean open() {
+        if (table != null) return true;
+        boolean fresh = !file.exists() || file.length() != FILE_BYTES;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(FILE_BYTES);
+            table = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_BYTES);
+        } catch (IOException e) {
+            Log.e(TAG, "Error mapping category model: " + e.getMessage());
+            return false;
+        }
+
+        if (fresh || table.getInt(0) != MAGIC || table.getInt(4) != VERSION) {
+            for (int i = 0; i < FILE_BYTES; i += 8) {
+                table.putLong(i, 0L);
+            }
+            table.putInt(0, MAGIC);
+            table.putInt(4, VERSION);
+            Log.d(TAG, "Category model initialised");
+        }
+        return true;
+    }
+
+    /**
+     * @param insert claim an empty slot (or evict the lightest one in the probe run) if absent
+     * @return slot index, or -1 when absent and not inserting
+     */
+    private int findSlot(long key, boolean insert) {
+        int start = (int) (mix(key) & (MERCHANT_SLOTS - 1));
+        int lightest = start;
+        int lightestTotal = Integer.MAX_VALUE;
+        for (int i = 0; i < MERCHANT_PROBES; i++) {
+            int slot = (start + i) & (MERCHANT_SLOTS - 1);
+            int offset = MERCHANT_OFFSET + slot * MERCHANT_SLOT_BYTES;
+            long existing = table.getLong(offset);
+            if (existing == key) return slot;
+            if (existing == 0) {
+                if (!insert) return -1;
+                table.putLong(offset, key);
+                return slot;
+            }
+            if (insert) {
+                int total = 0;
+                for (int c = 0; c < COLUMNS; c++) total += table.getChar(offset + 8 + c * 2);
+                if (total < lightestTotal) {
+                    lightest = slot;
+                    lightestTotal = total;
+                }
+            }
+        }
+        if (!insert) return -1;
+
+        int offset = MERCHANT_OFFSET + lightest * MERCHANT_SLOT_BYTES;
+        table.putLong(offset, key);
+        for (int c = 0; c < COLUMNS; c++) table.putChar(offset + 8 + c * 2, (char) 0);
+        return lightest;
+    }
+
+    /**
+     * Walk the letter/digit runs of {@code s}. Runs shorter than three chars or without a
+     * letter (amounts, account digits) are skipped. Trains when {@code trainCategory} is
+     * a column, otherwise adds log-likelihoods to {@link #scores}.
+     */
+    private void scanTokens(String s, int trainCategory) {
+        if (s == null) return;
+        int tokens = 0;
+        long hash = FNV_OFFSET;
+        int length = 0;
+        boolean hasLetter = false;
+        int n = s.length();
+        for (int i = 0; i <= n && tokens < MAX_TOKENS_PER_FIELD; i++) {
+            char ch = i < n ? s.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(ch)) {
+                hash = (hash ^ Character.toLowerCase(ch)) * FNV_PRIME;
+                length++;
+                hasLetter |= Character.isLetter(ch);
+                continue;
+            }
+            if (length >= 3 && hasLetter) {
+                tokens++;
+                int base = TOKEN_OFFSET + (int) (mix(hash) & (TOKEN_BUCKETS - 1)) * TOKEN_BUCKET_BYTES;
+                if (trainCategory >= 0) {
+                    int totalOffset = TOKEN_TOTALS_OFFSET + trainCategory * 4;
+                    table.putInt(totalOffset, table.getInt(totalOffset) + 1);
+                    if (increment(base + trainCategory * 2) == MAX_COUNT) {
+                        halve(base);
+                    }
+                } else {
+                    scoredTokens++;
+                    for (int c = 0; c < CATEGORIES.length; c++) {
+                        int tokenTotal = table.getInt(TOKEN_TOTALS_OFFSET + c * 4);
+                        scores[c] += Math.log((table.getChar(base + c * 2) + 1.0) / (tokenTotal + TOKEN_BUCKETS));
+                    }
+                }
+            }
+            hash = FNV_OFFSET;
+            length = 0;
+            hasLetter = false;
+        }
+    }
+
+    private int increment(int offset) {
+        int count = Math.min(MAX_COUNT, table.getChar(offset) + 1);
+        table.putChar(offset, (char) count);
+        return count;
+    }
+
+    // Keeps ratios while making room in a saturated row
+    private void halve(int base) {
+        for (int c = 0; c < COLUMNS; c++) {
+            table.putChar(base + c * 2, (char) (table.getChar(base + c * 2) >>> 1));
+        }
+    }
+
+    // Case- and punctuation-insensitive, so "Swiggy" and "SWIGGY." share history
+    private static long merchantKey(String merchant) {
+        if (merchant == null) return 0;
+        long hash = FNV_OFFSET;
+        int length = 0;
+        for (int i = 0; i < merchant.length(); i++) {
+            char ch = merchant.charAt(i);
+            if (Character.isLetterOrDigit(ch)) {
+                hash = (hash ^ Character.toLowerCase(ch)) * FNV_PRIME;
+                length++;
+            }
+        }
+        if (length == 0) return 0;
+        return hash != 0 ? hash : 1;
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
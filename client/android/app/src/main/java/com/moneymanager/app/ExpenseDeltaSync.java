@@ -0,0 +1,182 @@
+package com.moneymanager.app;
+
+import android.util.Log;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Pulls only the expenses that changed on the server since the user's watermark
+ * (GET /api/expenses?since=&afterId=&limit=) and mirrors them into
+ * {@link TransactionStore}. Each page and its watermark are applied in one
+ * transaction, so an interrupted run resumes where it stopped.
+ *
+ * Rows deleted on the server are not reported by the delta endpoint and stay in the
+ * mirror until a full refresh.
+ */
+public class ExpenseDeltaSync {
+    private static final String TAG = "ExpenseDeltaSync";
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_PAGES_PER_RUN = 50;
+    // Larger runs (e.g. the first one) are announced without their rows
+    private static final int MAX_REPORTED_ROWS = 500;
+    private static final int MAX_RETAINED_EVENTS = 8;
+
+    static {
+        // A sync from the background job may finish before TransactionStorePlugin loads
+        AppEventBus.get().retainUndelivered(ExpensesChangedEvent.class, MAX_RETAINED_EVENTS);
+    }
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 30000;
+
+    /**
+     * Non-2xx response from the delta endpoint.
+     */
+    public static class HttpException extends IOException {
+        public final int status;
+
+        HttpException(int status) {
+            super("HTTP " + status);
+            this.status = status;
+        }
+    }
+
+    private final String baseUrl;
+    private final String accessToken;
+    private final TransactionStore store;
+
+    public ExpenseDeltaSync(String apiUrl, String accessToken, TransactionStore store) {
+        this.baseUrl = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        this.accessToken = accessToken;
+        this.store = store;
+    }
+
+    /**
+     * @return number of changed rows applied
+     */
+    public int run(String userId) throws IOException, JSONException {
+        TransactionStore.Watermark watermark = store.getWatermark(userId);
+        int changed = 0;
+        List<TransactionStore.ServerExpense> reported = new ArrayList<>();
+
+        for (int page = 0; page < MAX_PAGES_PER_RUN; page++) {
+            JSONObject response = fetch(watermark);
+            List<TransactionStore.ServerExpense> expenses = parseExpenses(response.optJSONArray("expenses"));
+
+            JSONObject next = response.optJSONObject("watermark");
+            if (next != null) {
+                watermark = new TransactionStore.Watermark(next.optString("since", watermark.since),
+                        next.optLong("afterId", watermark.afterId));
+            }
+            if (!expenses.isEmpty()) {
+                store.applyServerChanges(userId, expenses, watermark);
+                changed += expenses.size();
+                if (reported != null && reported.size() + expenses.size() <= MAX_REPORTED_ROWS) {
+                    reported.addAll(expenses);
+                } else {
+                    reported = null;
+                }
+            }
+            if (response.optJSONObject("nextCursor") == null) break;
+        }
+
+        Log.d(TAG, "🔄 Delta sync: " + changed + " changed row(s), watermark " + watermark.since + "/" + watermark.afterId);
+        if (changed > 0) {
+            AppEventBus.get().post(new ExpensesChangedEvent(userId, changed, reported));
+        }
+        return changed;
+    }
+
+    private JSONObject fetch(TransactionStore.Watermark watermark) throws IOException, JSONException {
+        String url = baseUrl + "/expenses?since=" + URLEncoder.encode(watermark.since, "UTF-8") +
+                "&afterId=" + watermark.afterId + "&limit=" + PAGE_SIZE;
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setRequestProperty("Authorization", "Bearer " + accessToken);
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+
+            int status = connection.getResponseCode();
+            if (status / 100 != 2) {
+                throw new HttpException(status);
+            }
+            InputStream in = connection.getInputStream();
+            if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                in = new GZIPInputStream(in);
+            }
+            try {
+                return new JSONObject(readFully(in));
+            } finally {
+                in.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    static List<TransactionStore.ServerExpense> parseExpenses(JSONArray array) {
+        List<TransactionStore.ServerExpense> expenses = new ArrayList<>();
+        if (array == null) return expenses;
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject item = array.optJSONObject(i);
+            if (item == null) continue;
+            JSONObject category = item.optJSONObject("category");
+            String clientId = item.optString("clientId", "");
+            expenses.add(new TransactionStore.ServerExpense(
+                    item.optLong("id", 0),
+                    clientId.isEmpty() || "null".equals(clientId) ? null : clientId,
+                    // Prisma serialises Decimal columns as strings
+                    parseDouble(item.optString("amount", "0")),
+                    item.optString("description", ""),
+                    parseIsoMillis(item.optString("date", "")),
+                    item.optLong("categoryId", 0),
+                    category != null ? category.optString("name", null) : null,
+                    item.optString("source", null),
+                    item.optString("updatedAt", "")));
+        }
+        return expenses;
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static long parseIsoMillis(String value) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            return format.parse(value).getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,52 @@
+package com.moneymanager.app;
+
+import com.getcapacitor.JSObject;
+
+/**
+ * Immutable record of an expense the user confirmed in the overlay.
+ * Already written to {@link TransactionStore}; published on {@link AppEventBus} and
+ * forwarded to JS as "expenseSaved".
+ */
+public final class ExpenseSavedEvent {
+    public final String clientId; // TransactionStore row
+    public final String packageName;
+    public final String title;
+    public final String text;
+    public final String category;
+    public final double amount;
+    public final String type;
+    public final long transactionTimestamp;
+    public final long notificationTimestamp;
+
+    public ExpenseSavedEvent(String clientId, String packageName, String title, String text, String category,
+                             double amount, String type, long transactionTimestamp, long notificationTimestamp) {
+        this.clientId = clientId;
+        this.packageName = packageName;
+        this.title = title;
+        this.text = text;
+        this.category = category;
+        this.amount = amount;
+        this.type = type;
+        this.transactionTimestamp = transactionTimestamp;
+        this.notificationTimestamp = notificationTimestamp;
+    }
+
+    public JSObject toJSObject() {
+        JSObject expenseData = new JSObject();
+        expenseData.put("clientId", clientId);
+        expenseData.put("package", packageName);
+        expenseData.put("title", title);
+        expenseData.put("text", text);
+        expenseData.put("category", category);
+        expenseData.put("amount", amount);
+        expenseData.put("type", type);
+        expenseData.put("transactionTimestamp", transactionTimestamp);
+        expenseData.put("notificationTimestamp", notificationTimestamp);
+        return expenseData;
+    }
+
+    @Override
+    public String toString() {
+        return "ExpenseSavedEvent{amount=" + amount + ", category=" + category + ", type=" + type + "}";
+    }
+}
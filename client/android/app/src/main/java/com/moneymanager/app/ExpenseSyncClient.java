@@ -0,0 +1,191 @@
+package com.moneymanager.app;
+
+import android.util.Log;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Sends one batch of {@link TransactionStore} rows to POST /api/expenses/sync as
+ * gzip-compressed JSON and sorts the per-item results.
+ *
+ * The server upserts by clientId, so resending a batch is harmless; the
+ * Idempotency-Key header is derived from the batch's client ids and stays the same
+ * across retries. No Android dependencies beyond logging, so it is exercised
+ * against a local stand-in server on the JVM (see ExpenseSyncClientTest).
+ */
+public class ExpenseSyncClient {
+    private static final String TAG = "ExpenseSyncClient";
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 30000;
+
+    public static final class Result {
+        public int httpStatus;
+        /** Created or already on the server: mark synced. */
+        public final List<String> synced = new ArrayList<>();
+        /** Rejected by the server as invalid: never retried. */
+        public final List<String> rejected = new ArrayList<>();
+        /** Failed on the server side: stay pending and retry. */
+        public final List<String> failed = new ArrayList<>();
+
+        /** Worth retrying later with backoff (network error, 5xx, 429, or failed items). */
+        public boolean shouldRetry() {
+            return httpStatus == 0 || httpStatus == 429 || httpStatus >= 500 || !failed.isEmpty();
+        }
+
+        public boolean isUnauthorized() {
+            return httpStatus == 401 || httpStatus == 403;
+        }
+
+        @Override
+        public String toString() {
+            return "HTTP " + httpStatus + ": synced=" + synced.size() + ", rejected=" + rejected.size() +
+                    ", failed=" + failed.size();
+        }
+    }
+
+    private final String endpoint;
+    private final String accessToken;
+
+    /**
+     * @param apiUrl base API URL, e.g. https://host/api
+     */
+    public ExpenseSyncClient(String apiUrl, String accessToken) {
+        String base = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        this.endpoint = base + "/expenses/sync";
+        this.accessToken = accessToken;
+    }
+
+    public Result send(List<TransactionStore.Record> batch) {
+        Result result = new Result();
+        HttpURLConnection connection = null;
+        try {
+            byte[] body = encode(batch);
+            connection = (HttpURLConnection) new URL(endpoint).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            connection.setRequestProperty("Authorization", "Bearer " + accessToken);
+            connection.setRequestProperty("Idempotency-Key", idempotencyKey(batch));
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+
+            result.httpStatus = connection.getResponseCode();
+            if (result.httpStatus / 100 != 2) {
+                Log.w(TAG, "Sync rejected with HTTP " + result.httpStatus);
+                if (result.httpStatus / 100 == 4 && !result.isUnauthorized() && result.httpStatus != 429) {
+                    // The whole batch is malformed; retrying will not help
+                    for (TransactionStore.Record record : batch) result.rejected.add(record.clientId);
+                }
+                return result;
+            }
+
+            String response;
+            try (InputStream in = connection.getInputStream()) {
+                response = readFully(in);
+            }
+            sortResults(batch, new JSONObject(response), result);
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Sync request failed: " + e.getMessage());
+            result.httpStatus = 0;
+            result.synced.clear();
+            result.rejected.clear();
+            result.failed.clear();
+        } finally {
+            if (connection != null) connection.disconnect();
+        }
+        return result;
+    }
+
+    static byte[] encode(List<TransactionStore.Record> batch) throws IOException, JSONException {
+        JSONArray messages = new JSONArray();
+        for (TransactionStore.Record record : batch) {
+            JSONObject item = new JSONObject();
+            item.put("clientId", record.clientId);
+            item.put("amount", record.amount);
+            item.put("type", record.type);
+            item.put("description", record.title != null && !record.title.isEmpty() ? record.title : "Transaction");
+            item.put("category", record.category != null ? record.category : JSONObject.NULL);
+            item.put("date", record.transactionTime);
+            item.put("source", record.source != null ? record.source : "notification");
+            item.put("body", record.text != null ? record.text : JSONObject.NULL);
+            messages.put(item);
+        }
+        JSONObject payload = new JSONObject();
+        payload.put("messages", messages);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(payload.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    static String idempotencyKey(List<TransactionStore.Record> batch) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (TransactionStore.Record record : batch) {
+                digest.update(record.clientId.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) ',');
+            }
+            StringBuilder hex = new StringBuilder();
+            byte[] hash = digest.digest();
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", hash[i]));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            return batch.get(0).clientId + "-" + batch.size();
+        }
+    }
+
+    // Items missing from the response are treated as failed and retried
+    private static void sortResults(List<TransactionStore.Record> batch, JSONObject response, Result result) {
+        JSONArray results = response.optJSONArray("results");
+        HashMap<String, String> statuses = new HashMap<>();
+        if (results != null) {
+            for (int i = 0; i < results.length(); i++) {
+                JSONObject item = results.optJSONObject(i);
+                if (item == null) continue;
+                statuses.put(item.optString("clientId", ""), item.optString("status", ""));
+            }
+        }
+        for (TransactionStore.Record record : batch) {
+            String status = statuses.get(record.clientId);
+            if ("created".equals(status) || "duplicate".equals(status)) {
+                result.synced.add(record.clientId);
+            } else if ("invalid".equals(status)) {
+                result.rejected.add(record.clientId);
+            } else {
+                result.failed.add(record.clientId);
+            }
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,172 @@
+package com.moneymanager.app;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Drains pending {@link TransactionStore} rows to /api/expenses/sync in the background,
+ * whether or not the WebView ever opens, then pulls server-side changes with
+ * {@link ExpenseDeltaSync}.
+ *
+ * The job waits {@link #BATCH_WINDOW_MS} after the first capture and needs a network, so
+ * captures close together share one request and one radio wake-up. JobScheduler
+ * handles exponential backoff when {@link ExpenseSyncClient.Result#shouldRetry()}.
+ * The API URL and access token are handed over by JS through
+ * TransactionStorePlugin.configureSync.
+ *
+ * Limitation: only the Supabase access token is stored, not the refresh token, so
+ * background sync works for about an hour after the WebView last ran. After that every
+ * run gets a 401 and stops; rows stay pending (nothing is lost) until the app is opened,
+ * the session refreshes and configureSync schedules a new run. Refreshing natively was
+ * left out on purpose: Supabase rotates refresh tokens, and a native refresh would
+ * invalidate the token the WebView holds and sign the user out there.
+ */
+public class ExpenseSyncJobService extends JobService {
+    private static final String TAG = "ExpenseSyncJob";
+    static final int JOB_ID = 4001;
+    static final String KEY_API_URL = "syncApiUrl";
+    static final String KEY_ACCESS_TOKEN = "syncAccessToken";
+    static final String KEY_USER_ID = "syncUserId";
+    private static final int BATCH_SIZE = 50;
+    private static final long BATCH_WINDOW_MS = 30 * 1000L;
+    private static final long INITIAL_BACKOFF_MS = 30 * 1000L;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "ExpenseSync"));
+    private volatile boolean stopped = false;
+
+    /**
+     * Make sure a sync job is pending. An already pending job is left alone so
+     * repeated captures do not keep pushing it back.
+     */
+    public static void schedule(Context context) {
+        schedule(context, BATCH_WINDOW_MS);
+    }
+
+    /**
+     * @param delayMs minimum wait before the job may run
+     */
+    public static void schedule(Context context, long delayMs) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) return;
+        for (JobInfo pending : scheduler.getAllPendingJobs()) {
+            if (pending.getId() == JOB_ID) return;
+        }
+
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, ExpenseSyncJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setMinimumLatency(delayMs)
+                .setBackoffCriteria(INITIAL_BACKOFF_MS, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .setPersisted(true)
+                .build();
+        int result = scheduler.schedule(job);
+        Log.d(TAG, result == JobScheduler.RESULT_SUCCESS ? "⏰ Expense sync scheduled" : "Failed to schedule expense sync");
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        stopped = false;
+        executor.execute(() -> {
+            boolean retry;
+            boolean held = false;
+            try {
+                retry = syncPending();
+                held = getSharedPreferences(SelectedApps.PREFS_NAME, MODE_PRIVATE).contains(KEY_ACCESS_TOKEN)
+                        && TransactionStore.getInstance(this).countHeld() > 0;
+            } catch (Exception e) {
+                Log.e(TAG, "Expense sync failed: " + e.getMessage(), e);
+                retry = true;
+            }
+            jobFinished(params, retry && !stopped);
+            // Auto-committed rows still inside their undo window need a later run
+            if (held && !retry && !stopped) {
+                schedule(this, AutoCommitter.UNDO_WINDOW_MS);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Constraints lost (e.g. network gone); the rows are still pending
+        stopped = true;
+        return true;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        executor.shutdown();
+    }
+
+    /**
+     * @return true if the job should be retried with backoff
+     */
+    private boolean syncPending() {
+        SharedPreferences prefs = getSharedPreferences(SelectedApps.PREFS_NAME, MODE_PRIVATE);
+        String apiUrl = prefs.getString(KEY_API_URL, null);
+        String accessToken = prefs.getString(KEY_ACCESS_TOKEN, null);
+        if (apiUrl == null || accessToken == null) {
+            Log.d(TAG, "Sync not configured yet, waiting for the app to sign in");
+            return false;
+        }
+
+        TransactionStore store = TransactionStore.getInstance(this);
+        int released = store.releaseHeld(System.currentTimeMillis() - AutoCommitter.UNDO_WINDOW_MS);
+        if (released > 0) {
+            Log.d(TAG, "Released " + released + " auto-committed row(s) past their undo window");
+        }
+        ExpenseSyncClient client = new ExpenseSyncClient(apiUrl, accessToken);
+        boolean retry = false;
+        long afterId = 0;
+        int synced = 0;
+
+        while (!stopped) {
+            List<TransactionStore.Record> batch = store.queryPending(afterId, BATCH_SIZE);
+            if (batch.isEmpty()) break;
+            afterId = batch.get(batch.size() - 1).id;
+
+            ExpenseSyncClient.Result result = client.send(batch);
+            Log.d(TAG, "Sync batch of " + batch.size() + ": " + result);
+            synced += store.markSynced(result.synced);
+            store.markState(result.rejected, TransactionStore.STATE_REJECTED);
+
+            if (result.isUnauthorized()) {
+                // Token expired; configureSync schedules a new run once JS has a fresh one
+                Log.w(TAG, "Sync token rejected, waiting for a new one");
+                return false;
+            }
+            if (result.httpStatus == 0 || result.httpStatus == 429 || result.httpStatus >= 500) {
+                // Server or network trouble: the rest of the batches would fail the same way
+                return true;
+            }
+            // Items that failed individually stay pending; keep going with the next batch
+            retry |= result.shouldRetry();
+        }
+
+        Log.d(TAG, "✅ Expense sync done: " + synced + " synced" + (retry ? ", some will be retried" : ""));
+
+        // Then pull whatever changed on the server, including the rows just pushed
+        String userId = prefs.getString(KEY_USER_ID, null);
+        if (userId != null && !stopped) {
+            try {
+                new ExpenseDeltaSync(apiUrl, accessToken, store).run(userId);
+            } catch (ExpenseDeltaSync.HttpException e) {
+                Log.w(TAG, "Delta sync rejected: " + e.getMessage());
+                retry |= e.status == 429 || e.status >= 500;
+            } catch (Exception e) {
+                Log.w(TAG, "Delta sync failed: " + e.getMessage());
+                retry = true;
+            }
+        }
+        return retry;
+    }
+}
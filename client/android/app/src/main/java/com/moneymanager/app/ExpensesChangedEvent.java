@@ -0,0 +1,19 @@
+package com.moneymanager.app;
+
+import java.util.List;
+
+/**
+ * Published on {@link AppEventBus} after {@link ExpenseDeltaSync} applied server changes.
+ */
+public final class ExpensesChangedEvent {
+    public final String userId;
+    public final int changed;
+    // The changed rows, or null when there were too many to hand over
+    public final List<TransactionStore.ServerExpense> expenses;
+
+    public ExpensesChangedEvent(String userId, int changed, List<TransactionStore.ServerExpense> expenses) {
+        this.userId = userId;
+        this.changed = changed;
+        this.expenses = expenses;
+    }
+}
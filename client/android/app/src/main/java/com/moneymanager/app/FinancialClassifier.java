@@ -0,0 +1,328 @@
+package com.moneymanager.app;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass classifier for notification text.
+ *
+ * All financial keywords are compiled once into an Aho-Corasick automaton over a
+ * case-folded alphabet, and decimal amounts and "(yyyy:MM:dd HH:mm:ss)" stamps are
+ * recognised inline, so the title and text are each walked exactly once without
+ * building lowercase copies. The outcome is written into a caller-owned
+ * {@link Result}, including the offsets where a template match can start, so the
+ * parse stage does not have to rescan text that holds no transaction.
+ */
+public final class FinancialClassifier {
+    public static final int FORMAT_NONE = 0;
+    public static final int FORMAT_AMOUNT = 1;   // currency or decimal amount only
+    public static final int FORMAT_TRANSFER = 2; // direction keyword plus an amount
+    public static final int FORMAT_BUILTIN = 3;  // "Rs.x.xx ... (yyyy:MM:dd HH:mm:ss)"
+
+    private static final int KIND_DIRECTION = 1;
+    private static final int KIND_CURRENCY = 2;
+    private static final int KIND_CONTEXT = 3;
+
+    private static final String[] KEYWORDS = {
+            "debited", "credited", "paid", "received", "sent", "spent",
+            "rs", "inr", "₹", "rupee",
+            "payment", "transaction", "balance", "upi", "ref", "rrn", "txn"
+    };
+    private static final int[] KINDS = {
+            KIND_DIRECTION, KIND_DIRECTION, KIND_DIRECTION, KIND_DIRECTION, KIND_DIRECTION, KIND_DIRECTION,
+            KIND_CURRENCY, KIND_CURRENCY, KIND_CURRENCY, KIND_CURRENCY,
+            KIND_CONTEXT, KIND_CONTEXT, KIND_CONTEXT, KIND_CONTEXT, KIND_CONTEXT, KIND_CONTEXT, KIND_CONTEXT
+    };
+    private static final int KEYWORD_RS = 6;
+
+    // Alphabet: 0 = anything else, 1-26 = a-z (case-folded), 27 = rupee sign
+    private static final int ALPHABET = 28;
+
+    private static final FinancialClassifier INSTANCE = new FinancialClassifier();
+
+    private final int[][] next;    // full DFA: failure transitions folded in
+    private final int[] output;    // keyword ending at this state, or -1
+    private final int[] outputLink; // nearest suffix state with an output, or 0
+
+    /**
+     * Classification of one notification. Reused across calls by the owning thread.
+     * Offsets refer to the text, not the title, and are -1 when absent.
+     */
+    public static final class Result {
+        public int score;
+        public int formatId;
+        public int directionStart;
+        public int currencyStart;
+        public int amountStart;
+        public int amountEnd;
+        public int timestampStart;
+        boolean rsDot;
+        int contextHits;
+
+        public Result() {
+            reset();
+        }
+
+        void reset() {
+            score = 0;
+            formatId = FORMAT_NONE;
+            directionStart = -1;
+            currencyStart = -1;
+            amountStart = -1;
+            amountEnd = -1;
+            timestampStart = -1;
+            rsDot = false;
+            contextHits = 0;
+        }
+
+        public boolean isFinancial() {
+            return score > 0;
+        }
+
+        /**
+         * Earliest offset where a bank template can match: every template starts at
+         * either a direction keyword or a currency marker. -1 if the text has neither.
+         */
+        public int parseStart() {
+            if (directionStart < 0) return currencyStart;
+            if (currencyStart < 0) return directionStart;
+            return Math.min(directionStart, currencyStart);
+        }
+
+        /**
+         * Whether the legacy "Rs.x.xx ... (timestamp)" format can match at all.
+         */
+        public boolean mayMatchBuiltin() {
+            return formatId == FORMAT_BUILTIN;
+        }
+
+        @Override
+        public String toString() {
+            return "score=" + score + " format=" + formatId + " parseStart=" + parseStart();
+        }
+    }
+
+    public static FinancialClassifier getInstance() {
+        return INSTANCE;
+    }
+
+    private FinancialClassifier() {
+        List<int[]> gotoTable = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+        gotoTable.add(newRow());
+        outputs.add(-1);
+
+        for (int k = 0; k < KEYWORDS.length; k++) {
+            int state = 0;
+            String keyword = KEYWORDS[k];
+            for (int i = 0; i < keyword.length(); i++) {
+                int symbol = symbolOf(keyword.charAt(i));
+                if (gotoTable.get(state)[symbol] < 0) {
+                    gotoTable.get(state)[symbol] = gotoTable.size();
+                    gotoTable.add(newRow());
+                    outputs.add(-1);
+                }
+                state = gotoTable.get(state)[symbol];
+            }
+            outputs.set(state, k);
+        }
+
+        int states = gotoTable.size();
+        next = new int[states][];
+        output = new int[states];
+        outputLink = new int[states];
+        int[] fail = new int[states];
+        for (int s = 0; s < states; s++) {
+            next[s] = gotoTable.get(s);
+            output[s] = outputs.get(s);
+        }
+
+        // Breadth-first: resolve failure links and turn missing edges into DFA transitions
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int child = next[0][c];
+            if (child < 0) {
+                next[0][c] = 0;
+            } else {
+                fail[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int f = fail[state];
+            outputLink[state] = output[f] >= 0 ? f : outputLink[f];
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = next[state][c];
+                if (child < 0) {
+                    next[state][c] = next[f][c];
+                } else {
+                    fail[child] = next[f][c];
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET];
+        for (int i = 0; i < ALPHABET; i++) row[i] = -1;
+        return row;
+    }
+
+    private static int symbolOf(char c) {
+        if (c >= 'a' && c <= 'z') return c - 'a' + 1;
+        if (c >= 'A' && c <= 'Z') return c - 'A' + 1;
+        if (c == '₹') return 27;
+        return 0;
+    }
+
+    /**
+     * Classify a notification into {@code result}. Allocation-free.
+     */
+    public void classify(String title, String text, Result result) {
+        result.reset();
+        if (title != null) scan(title, result, false);
+        if (text != null) scan(text, result, true);
+
+        boolean hasDirection = result.directionStart >= 0;
+        boolean hasCurrency = result.currencyStart >= 0;
+        boolean hasAmount = result.amountStart >= 0;
+
+        int score = 0;
+        if (hasDirection) score += 2;
+        if (hasCurrency) score += 2;
+        if (hasAmount) score += 2;
+        score += Math.min(result.contextHits, 3);
+        result.score = score;
+
+        if (result.rsDot && result.timestampStart >= 0) {
+            result.formatId = FORMAT_BUILTIN;
+        } else if (hasDirection && (hasCurrency || hasAmount)) {
+            result.formatId = FORMAT_TRANSFER;
+        } else if (hasCurrency || hasAmount) {
+            result.formatId = FORMAT_AMOUNT;
+        }
+    }
+
+    private void scan(String s, Result result, boolean isText) {
+        int state = 0;
+        // Decimal amount recogniser for \d+\.\d{2}: 0 idle, 1 integer part, 2 after '.', 3 fraction
+        int amountState = 0;
+        int amountStart = -1;
+        int fractionDigits = 0;
+        int length = s.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            state = next[state][symbolOf(c)];
+
+            int hitState = output[state] >= 0 ? state : outputLink[state];
+            while (hitState > 0) {
+                onKeyword(output[hitState], s, i, result, isText);
+                hitState = outputLink[hitState];
+            }
+
+            boolean digit = c >= '0' && c <= '9';
+            switch (amountState) {
+                case 0:
+                    if (digit) {
+                        amountState = 1;
+                        amountStart = i;
+                    }
+                    break;
+                case 1:
+                    if (c == '.') {
+                        amountState = 2;
+                    } else if (!digit && c != ',') {
+                        amountState = 0;
+                    }
+                    break;
+                case 2:
+                    if (digit) {
+                        amountState = 3;
+                        fractionDigits = 1;
+                    } else {
+                        amountState = 0;
+                    }
+                    break;
+                default:
+                    if (digit) {
+                        if (++fractionDigits == 2 && result.amountStart < 0) {
+                            if (isText) {
+                                result.amountStart = amountStart;
+                                result.amountEnd = i + 1;
+                            } else {
+                                result.contextHits++;
+                            }
+                        }
+                    } else {
+                        amountState = 0;
+                        if (c == '.') {
+                            // "1.2.34" - the fraction so far may be the next integer part
+                            amountState = 2;
+                        }
+                    }
+                    break;
+            }
+
+            if (c == '(' && isText && result.timestampStart < 0 && isTimestampAt(s, i)) {
+                result.timestampStart = i;
+            }
+        }
+    }
+
+    private static void onKeyword(int keyword, String s, int end, Result result, boolean isText) {
+        int kind = KINDS[keyword];
+        int start = end - KEYWORDS[keyword].length() + 1;
+
+        if (keyword == KEYWORD_RS) {
+            // "rs" is only a currency marker when followed by '.', whitespace or a digit
+            char after = end + 1 < s.length() ? s.charAt(end + 1) : 0;
+            if (after != '.' && !Character.isWhitespace(after) && (after < '0' || after > '9')) return;
+            if (after == '.' && isText) result.rsDot = true;
+        }
+
+        if (!isText) {
+            // The title only contributes to the score
+            result.contextHits++;
+            return;
+        }
+
+        switch (kind) {
+            case KIND_DIRECTION:
+                if (result.directionStart < 0) result.directionStart = start;
+                break;
+            case KIND_CURRENCY:
+                if (result.currencyStart < 0) result.currencyStart = start;
+                break;
+            default:
+                result.contextHits++;
+                break;
+        }
+    }
+
+    // "(yyyy:MM:dd HH:mm:ss)" starting at the '('
+    private static boolean isTimestampAt(String s, int open) {
+        if (open + 20 >= s.length() || s.charAt(open + 20) != ')') return false;
+        for (int i = 1; i < 20; i++) {
+            char c = s.charAt(open + i);
+            switch (i) {
+                case 5:
+                case 8:
+                case 14:
+                case 17:
+                    if (c != ':') return false;
+                    break;
+                case 11:
+                    if (c != ' ') return false;
+                    break;
+                default:
+                    if (c < '0' || c > '9') return false;
+                    break;
+            }
+        }
+        return true;
+    }
+}
@@ -46,10 +46,11 @@ public class MainActivity extends BridgeActivity {
         registerPlugin(NotificationListenerPlugin.class);
         registerPlugin(ScreenshotListenerPlugin.class);
         registerPlugin(SecureStoragePlugin.class);
+        registerPlugin(TransactionStorePlugin.class);
         
         super.onCreate(savedInstanceState);
         
-        Log.d(TAG, "Plugins registered: SettingsHelper, NotificationListenerPlugin, ScreenshotListenerPlugin, SecureStoragePlugin");
+        Log.d(TAG, "Plugins registered: SettingsHelper, NotificationListenerPlugin, ScreenshotListenerPlugin, SecureStoragePlugin, TransactionStorePlugin");
 
         serviceMonitorHandler = new Handler(Looper.getMainLooper());
 
@@ -160,6 +161,14 @@ public class MainActivity extends BridgeActivity {
             @Override
             public void onSuccess(OCRProcessor.ExpenseData expenseData) {
                 Log.d(TAG, "✅ OCR Success - Amount: " + expenseData.amount + ", Merchant: " + expenseData.merchant);
+
+                // Record the share so automatic captures of the same payment attach to it
+                TransactionFingerprintStore.getInstance(MainActivity.this).attachOrRecord(
+                        expenseData.amount, expenseData.timestamp, expenseData.merchant, expenseData.reference,
+                        TransactionFingerprintStore.SOURCE_SHARE);
+                if (expenseData.reference != null) {
+                    TransactionReferenceIndex.getInstance(MainActivity.this).add(expenseData.reference);
+                }
                 
                 // Navigate to QuickSave page with OCR data
                 navigateToQuickSave(expenseData, "success", null);
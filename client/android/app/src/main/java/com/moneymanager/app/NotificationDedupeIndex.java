@@ -0,0 +1,106 @@
+package com.moneymanager.app;
+
+import java.util.HashMap;
+
+/**
+ * Remembers recently handled notifications so re-posts and re-alerts of the same
+ * content are skipped with one hash lookup instead of a full parse and overlay.
+ *
+ * Fingerprints combine the notification key with a hash of its title and text, so
+ * an update that changes the content (progress -> success) is still processed.
+ * Memory is bounded by a ring of the most recent fingerprints. Not thread-safe: it
+ * is only used from the pipeline worker.
+ */
+public class NotificationDedupeIndex {
+    public static final int DEFAULT_CAPACITY = 512;
+    public static final long DEFAULT_WINDOW_MS = 10 * 60 * 1000L; // 10 minutes
+
+    private final long[] ringFingerprints;
+    private final long[] ringTimes;
+    private final HashMap<Long, Long> lastSeen;
+    private int cursor = 0;
+    private long windowMs;
+    private long hits = 0;
+
+    public NotificationDedupeIndex() {
+        this(DEFAULT_CAPACITY, DEFAULT_WINDOW_MS);
+    }
+
+    public NotificationDedupeIndex(int capacity, long windowMs) {
+        this.ringFingerprints = new long[capacity];
+        this.ringTimes = new long[capacity];
+        this.lastSeen = new HashMap<>(capacity * 2);
+        this.windowMs = windowMs;
+    }
+
+    public static long fingerprint(NotificationEvent event) {
+        return fingerprint(event.key, event.title, event.fullText());
+    }
+
+    static long fingerprint(String key, String title, String text) {
+        long h = 0xcbf29ce484222325L;
+        h = mix(h, key);
+        h = mix(h, title);
+        h = mix(h, text);
+        return h;
+    }
+
+    // FNV-1a over the UTF-16 chars, without building a combined string
+    private static long mix(long h, String s) {
+        if (s != null) {
+            for (int i = 0; i < s.length(); i++) {
+                h ^= s.charAt(i);
+                h *= 0x100000001b3L;
+            }
+        }
+        h ^= 0x1f; // field separator
+        h *= 0x100000001b3L;
+        return h;
+    }
+
+    /**
+     * Check a fingerprint and record it as handled at {@code now}.
+     *
+     * @return true if the same fingerprint was already handled within the window
+     */
+    public boolean checkAndRecord(long fingerprint, long now) {
+        Long previous = lastSeen.get(fingerprint);
+        if (previous != null && now - previous <= windowMs) {
+            hits++;
+            return true;
+        }
+        record(fingerprint, now);
+        return false;
+    }
+
+    public boolean contains(long fingerprint, long now) {
+        Long previous = lastSeen.get(fingerprint);
+        return previous != null && now - previous <= windowMs;
+    }
+
+    public void record(long fingerprint, long now) {
+        // Evict whatever occupied this ring slot, unless it has been seen again since
+        long evicted = ringFingerprints[cursor];
+        Long evictedTime = lastSeen.get(evicted);
+        if (evictedTime != null && evictedTime == ringTimes[cursor]) {
+            lastSeen.remove(evicted);
+        }
+
+        ringFingerprints[cursor] = fingerprint;
+        ringTimes[cursor] = now;
+        lastSeen.put(fingerprint, now);
+        cursor = (cursor + 1) % ringFingerprints.length;
+    }
+
+    public void setWindowMs(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public int size() {
+        return lastSeen.size();
+    }
+}
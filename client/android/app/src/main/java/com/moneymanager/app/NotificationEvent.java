@@ -0,0 +1,35 @@
+package com.moneymanager.app;
+
+/**
+ * Immutable snapshot of a posted notification, taken on the listener callback thread
+ * and processed later on the pipeline worker.
+ */
+public final class NotificationEvent {
+    public final String key;
+    public final String packageName;
+    public final String title;
+    public final String text;
+    public final String bigText;
+    public final long postTime;
+    public final boolean isTest;
+    final long enqueuedAtNanos;
+
+    public NotificationEvent(String key, String packageName, String title, String text,
+                             String bigText, long postTime, boolean isTest) {
+        this.key = key != null ? key : packageName;
+        this.packageName = packageName;
+        this.title = title != null ? title : "";
+        this.text = text != null ? text : "";
+        this.bigText = bigText != null ? bigText : "";
+        this.postTime = postTime;
+        this.isTest = isTest;
+        this.enqueuedAtNanos = System.nanoTime();
+    }
+
+    /**
+     * The text used for parsing: the expanded text when present, otherwise the short text.
+     */
+    public String fullText() {
+        return bigText.isEmpty() ? text : bigText;
+    }
+}
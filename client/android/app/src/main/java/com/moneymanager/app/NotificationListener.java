@@ -1,9 +1,6 @@
 package com.moneymanager.app;
 
 import android.app.Notification;
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
@@ -18,32 +15,45 @@ import android.service.notification.NotificationListenerService;
 import android.service.notification.StatusBarNotification;
 import android.util.Log;
 import android.widget.Toast;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
-import org.json.JSONArray;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class NotificationListener extends NotificationListenerService {
     private static final String TAG = "NotificationListener";
-    public static final String NOTIFICATION_BROADCAST = "com.moneymanager.app.NOTIFICATION_RECEIVED";
-    private static final String PROCESSING_CHANNEL_ID = "expense_processing_channel";
-    private static final int PROCESSING_NOTIFICATION_ID = 2001;
+    static final String KEY_DEDUPE_WINDOW = "dedupeWindowMs";
+    static final String KEY_HIGH_WATER_MARK = "notificationHighWaterMark";
+    private static final int BACKFILL_BATCH_SIZE = 8;
+    private static final long BACKFILL_MAX_AGE_MS = 30 * 60 * 1000L; // 30 minutes
+    private static final long HIGH_WATER_PERSIST_MS = 5000;
     private static boolean isConnected = false;
     private static NotificationListener instance = null;
     private Handler reconnectionHandler;
     private BroadcastReceiver reconnectionReceiver;
-    private NotificationManager notificationManager;
+    private NotificationPipeline pipeline;
+    private NotificationProcessor processor;
+
+    // Post time of the newest notification handled; only touched on the pipeline worker
+    private long highWaterMark = 0;
+    private long highWaterPersistedAt = 0;
 
     @Override
     public void onCreate() {
         super.onCreate();
         instance = this;
         reconnectionHandler = new Handler(Looper.getMainLooper());
-        notificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        SelectedApps.init(this);
+        TransactionFormatRules.init(this);
+        NotificationDedupeIndex dedupeIndex = new NotificationDedupeIndex(NotificationDedupeIndex.DEFAULT_CAPACITY,
+                getSharedPreferences(SelectedApps.PREFS_NAME, MODE_PRIVATE)
+                        .getLong(KEY_DEDUPE_WINDOW, NotificationDedupeIndex.DEFAULT_WINDOW_MS));
+        processor = new NotificationProcessor(dedupeIndex, TransactionReferenceIndex.getInstance(this));
+        pipeline = new NotificationPipeline(this::processNotification);
+        pipeline.execute(() -> highWaterMark = getSharedPreferences(SelectedApps.PREFS_NAME, MODE_PRIVATE)
+                .getLong(KEY_HIGH_WATER_MARK, 0));
         Log.d(TAG, "=== NotificationListener service CREATED ===");
         Log.d(TAG, "Service instance created: " + instance.hashCode());
 
-        // Create processing notification channel
-        createProcessingNotificationChannel();
-
         // Register broadcast receiver for reconnection attempts
         setupReconnectionReceiver();
 
@@ -57,24 +67,6 @@ public class NotificationListener extends NotificationListenerService {
         }
     }
     
-    private void createProcessingNotificationChannel() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            NotificationChannel channel = new NotificationChannel(
-                    PROCESSING_CHANNEL_ID,
-                    "Expense Processing",
-                    NotificationManager.IMPORTANCE_HIGH
-            );
-            channel.setDescription("Shows real-time status when processing expenses");
-            channel.setSound(null, null); // Silent but visible
-            channel.setShowBadge(true);
-            channel.enableLights(false);
-            channel.enableVibration(false);
-            if (notificationManager != null) {
-                notificationManager.createNotificationChannel(channel);
-            }
-        }
-    }
-
     private void setupReconnectionReceiver() {
         reconnectionReceiver = new BroadcastReceiver() {
             @Override
@@ -160,6 +152,9 @@ public class NotificationListener extends NotificationListenerService {
         Log.d(TAG, "Connected at: " + System.currentTimeMillis());
         Log.d(TAG, "Service hash: " + this.hashCode());
 
+        // Inflate the overlay now so the first popup only has to bind data
+        OverlayService.prewarm(this);
+
         // Show a toast to confirm service is running
         try {
             Toast.makeText(this, "Money Manager: Notification monitoring active", Toast.LENGTH_LONG).show();
@@ -167,21 +162,78 @@ public class NotificationListener extends NotificationListenerService {
             Log.w(TAG, "Could not show toast: " + e.getMessage());
         }
 
-        // Log current active notifications to verify we can access them
+        // Transactions posted while we were unbound are still in the shade: pick them up
+        if (pipeline != null) {
+            pipeline.execute(this::backfillActiveNotifications);
+        }
+    }
+
+    /**
+     * Pipeline worker: queue the active notifications newer than the high-water mark
+     * that the dedupe index has not seen, oldest first.
+     */
+    private void backfillActiveNotifications() {
+        StatusBarNotification[] active;
         try {
-            StatusBarNotification[] activeNotifications = getActiveNotifications();
-            Log.d(TAG, "Active notifications count: " + (activeNotifications != null ? activeNotifications.length : 0));
-            
-            // Log some details about active notifications for debugging
-            if (activeNotifications != null && activeNotifications.length > 0) {
-                Log.d(TAG, "Sample active notifications:");
-                for (int i = 0; i < Math.min(3, activeNotifications.length); i++) {
-                    Log.d(TAG, "  - " + activeNotifications[i].getPackageName());
-                }
-            }
+            active = getActiveNotifications();
         } catch (Exception e) {
             Log.e(TAG, "Error getting active notifications: " + e.getMessage(), e);
+            return;
+        }
+        if (active == null || active.length == 0) {
+            Log.d(TAG, "Backfill: no active notifications");
+            return;
         }
+
+        long now = System.currentTimeMillis();
+        long since = Math.max(highWaterMark, now - BACKFILL_MAX_AGE_MS);
+        NotificationDedupeIndex dedupeIndex = processor.getDedupeIndex();
+        ArrayList<NotificationEvent> missed = new ArrayList<>();
+        for (StatusBarNotification sbn : active) {
+            // Equal post times are kept: the dedupe index and reference index catch repeats
+            if (sbn == null || sbn.getPostTime() < since) continue;
+            NotificationEvent event = snapshot(sbn);
+            if (event == null || event.isTest) continue;
+            if (dedupeIndex.contains(NotificationDedupeIndex.fingerprint(event), now)) continue;
+            missed.add(event);
+        }
+        Log.d(TAG, "Backfill: " + missed.size() + " of " + active.length + " active notifications since " + since);
+        if (missed.isEmpty()) return;
+
+        Collections.sort(missed, (a, b) -> Long.compare(a.postTime, b.postTime));
+        backfillBatch(missed, 0);
+    }
+
+    // Process one batch, then requeue the rest behind whatever live events arrived meanwhile
+    private void backfillBatch(List<NotificationEvent> events, int from) {
+        int end = Math.min(events.size(), from + BACKFILL_BATCH_SIZE);
+        for (int i = from; i < end; i++) {
+            try {
+                processNotification(events.get(i));
+            } catch (Exception e) {
+                Log.e(TAG, "Error backfilling notification: " + e.getMessage(), e);
+            }
+        }
+        if (end < events.size() && pipeline != null) {
+            pipeline.execute(() -> backfillBatch(events, end));
+        } else {
+            persistHighWaterMark();
+        }
+    }
+
+    private void advanceHighWaterMark(long postTime) {
+        if (postTime <= highWaterMark) return;
+        highWaterMark = postTime;
+        if (System.currentTimeMillis() - highWaterPersistedAt >= HIGH_WATER_PERSIST_MS) {
+            persistHighWaterMark();
+        }
+    }
+
+    private void persistHighWaterMark() {
+        highWaterPersistedAt = System.currentTimeMillis();
+        getSharedPreferences(SelectedApps.PREFS_NAME, MODE_PRIVATE).edit()
+                .putLong(KEY_HIGH_WATER_MARK, highWaterMark)
+                .apply();
     }
 
 
@@ -191,6 +243,9 @@ public class NotificationListener extends NotificationListenerService {
         super.onListenerDisconnected();
         isConnected = false;
         Log.e(TAG, "=== NotificationListener DISCONNECTED ===");
+        if (pipeline != null) {
+            pipeline.execute(this::persistHighWaterMark);
+        }
         Log.e(TAG, "Disconnected at: " + System.currentTimeMillis());
         Log.e(TAG, "Service hash: " + this.hashCode());
 
@@ -223,6 +278,11 @@ public class NotificationListener extends NotificationListenerService {
         if (reconnectionHandler != null) {
             reconnectionHandler.removeCallbacksAndMessages(null);
         }
+
+        if (pipeline != null) {
+            pipeline.execute(this::persistHighWaterMark);
+            pipeline.shutdown();
+        }
         
         instance = null;
         isConnected = false;
@@ -230,210 +290,165 @@ public class NotificationListener extends NotificationListenerService {
 
     @Override
     public void onNotificationPosted(StatusBarNotification sbn) {
-        Log.d(TAG, ">>> onNotificationPosted() called <<<");
-
+        // Runs on the listener callback thread: snapshot and enqueue only.
+        // Parsing, logging and starting the overlay happen on the pipeline worker.
         if (sbn == null) {
-            Log.d(TAG, "Received null notification");
             return;
         }
 
+        NotificationEvent event = snapshot(sbn);
+        if (event == null) {
+            return;
+        }
+
+        NotificationRecorder recorder = NotificationRecorder.active();
+        if (recorder != null) {
+            recorder.record(event);
+        }
+
+        if (pipeline == null || !pipeline.enqueue(event)) {
+            Log.w(TAG, "Notification dropped from " + event.packageName + " (pipeline full or not ready)");
+        }
+    }
+
+    /**
+     * Filter and snapshot a posted notification.
+     *
+     * @return the event to process, or null if the notification is not of interest
+     */
+    private NotificationEvent snapshot(StatusBarNotification sbn) {
+        // Ongoing notifications never carry a transaction. On Android 12+ the system
+        // filter in the manifest already drops them; this covers older versions.
+        if (sbn.isOngoing()) {
+            return null;
+        }
+
         String packageName = sbn.getPackageName();
-        Log.d(TAG, "Package name: " + packageName);
 
-        // Check if this is a test notification from our app
+        // Notifications from our own app are test notifications and skip the app selection
         boolean isTestNotification = packageName.equals(getPackageName());
-        
-        if (isTestNotification) {
-            Log.d(TAG, ">>> TEST NOTIFICATION DETECTED <<<");
-            // Allow test notifications to proceed for testing purposes
-        } else {
-            // Skip other notifications from our own app
-            if (packageName.equals(getPackageName())) {
-                Log.d(TAG, "Skipping our own notification");
-                return;
-            }
-        }
 
         // Check if app is selected for listening (skip check for test notifications)
         if (!isTestNotification && !isAppSelected(packageName)) {
-            Log.d(TAG, "Skipping notification from unselected app: " + packageName);
-            return;
+            return null;
         }
 
         Notification notification = sbn.getNotification();
-        if (notification == null) {
-            Log.d(TAG, "Notification is null from: " + packageName);
-            return;
+        if (notification == null || notification.extras == null) {
+            return null;
         }
-        
-        if (notification.extras == null) {
-            Log.d(TAG, "Notification extras is null from: " + packageName);
-            return;
+
+        // Group summaries repeat the content of their child notifications
+        if ((notification.flags & Notification.FLAG_GROUP_SUMMARY) != 0) {
+            return null;
         }
 
         Bundle extras = notification.extras;
-        
-        String title = "";
-        String text = "";
-        String bigText = "";
-
+        CharSequence titleCs;
+        CharSequence textCs;
+        CharSequence bigTextCs;
         try {
-            CharSequence titleCs = extras.getCharSequence(Notification.EXTRA_TITLE);
-            CharSequence textCs = extras.getCharSequence(Notification.EXTRA_TEXT);
-            CharSequence bigTextCs = extras.getCharSequence(Notification.EXTRA_BIG_TEXT);
-            
-            title = titleCs != null ? titleCs.toString() : "";
-            text = textCs != null ? textCs.toString() : "";
-            bigText = bigTextCs != null ? bigTextCs.toString() : "";
-            
-            Log.d(TAG, "Extracted - Title: '" + title + "', Text: '" + text + "', BigText: '" + bigText + "'");
+            titleCs = extras.getCharSequence(Notification.EXTRA_TITLE);
+            textCs = extras.getCharSequence(Notification.EXTRA_TEXT);
+            bigTextCs = extras.getCharSequence(Notification.EXTRA_BIG_TEXT);
         } catch (Exception e) {
             Log.e(TAG, "Error extracting notification text: " + e.getMessage(), e);
+            return null;
         }
-        
-        String fullText = bigText.isEmpty() ? text : bigText;
-        
-        // LOG ALL NOTIFICATIONS for debugging
-        Log.d(TAG, "========================================");
-        Log.d(TAG, "NEW NOTIFICATION RECEIVED");
-        Log.d(TAG, "Package: " + packageName);
-        Log.d(TAG, "Title: " + title);
-        Log.d(TAG, "Text: " + text);
-        Log.d(TAG, "BigText: " + bigText);
-        Log.d(TAG, "FullText: " + fullText);
-        
-        boolean isFinApp = isFinancialApp(packageName);
-        boolean isFinContent = isFinancialNotification(title, fullText);
 
-        Log.d(TAG, "Is Financial App: " + isFinApp);
-        Log.d(TAG, "Is Financial Content: " + isFinContent);
-        Log.d(TAG, "========================================");
-
-        // Show Android popup for notifications matching the specific SMS format
-        if (matchesSMSFormat(fullText)) {
-            Log.d(TAG, ">>> SMS FORMAT MATCHED - Showing Android overlay...");
-            
-            // Show processing notification
-            showProcessingNotification("💳 Transaction detected", "Parsing notification...");
+        return new NotificationEvent(
+                sbn.getKey(),
+                packageName,
+                titleCs != null ? titleCs.toString() : null,
+                textCs != null ? textCs.toString() : null,
+                bigTextCs != null ? bigTextCs.toString() : null,
+                sbn.getPostTime(),
+                isTestNotification);
+    }
 
-            try {
-                // Show Android overlay (works when app is open or closed)
-                showOverlayPopup(title, fullText, packageName);
-                Log.d(TAG, "showOverlayPopup() completed");
-                
-                // Update notification to success
-                updateProcessingNotification("✅ Expense ready", "Tap popup to save");
-                
-                // Auto-dismiss after 2 seconds
-                reconnectionHandler.postDelayed(() -> dismissProcessingNotification(), 2000);
-            } catch (Exception e) {
-                Log.e(TAG, "Exception in showOverlayPopup: " + e.getMessage(), e);
-                showErrorNotification("❌ Processing failed", "Could not show expense popup");
-            }
-        } else {
-            Log.d(TAG, "Skipping notification - doesn't match SMS format");
+    /**
+     * Pipeline worker: classify a snapshotted notification and show the overlay if it matches.
+     */
+    private void processNotification(NotificationEvent event) {
+        ParsedTransaction parsed = processor.process(event);
+        if (!event.isTest) {
+            advanceHighWaterMark(event.postTime);
         }
-    }
-    
-    private void showProcessingNotification(String title, String message) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            // Create a dummy intent for heads-up display
-            Intent intent = new Intent(this, MainActivity.class);
-            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-            
-            int flags = PendingIntent.FLAG_UPDATE_CURRENT;
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                flags |= PendingIntent.FLAG_IMMUTABLE;
-            }
-            PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, intent, flags);
-            
-            androidx.core.app.NotificationCompat.Builder builder = new androidx.core.app.NotificationCompat.Builder(this, PROCESSING_CHANNEL_ID)
-                    .setSmallIcon(android.R.drawable.ic_dialog_info)
-                    .setContentTitle(title)
-                    .setContentText(message)
-                    .setPriority(androidx.core.app.NotificationCompat.PRIORITY_MAX)
-                    .setCategory(androidx.core.app.NotificationCompat.CATEGORY_STATUS)
-                    .setVisibility(androidx.core.app.NotificationCompat.VISIBILITY_PUBLIC)
-                    .setContentIntent(pendingIntent)
-                    .setFullScreenIntent(pendingIntent, true)
-                    .setOngoing(true)
-                    .setAutoCancel(false)
-                    .setShowWhen(true)
-                    .setWhen(System.currentTimeMillis())
-                    .setDefaults(0)
-                    .setOnlyAlertOnce(true)
-                    .setProgress(100, 0, true);
-            
-            if (notificationManager != null) {
-                notificationManager.notify(PROCESSING_NOTIFICATION_ID, builder.build());
-            }
+        if (parsed == null) {
+            return;
         }
-    }
-    
-    private void updateProcessingNotification(String title, String message) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            // Create a dummy intent for heads-up display
-            Intent intent = new Intent(this, MainActivity.class);
-            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-            
-            int flags = PendingIntent.FLAG_UPDATE_CURRENT;
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                flags |= PendingIntent.FLAG_IMMUTABLE;
+
+        String packageName = event.packageName;
+        String title = event.title;
+        String fullText = event.fullText();
+
+        // The same payment may already have arrived as an SMS or a screenshot
+        if (!event.isTest) {
+            TransactionFingerprintStore.Fingerprint existing = TransactionFingerprintStore.getInstance(this)
+                    .attachOrRecord(parsed.amount, parsed.timestamp > 0 ? parsed.timestamp : event.postTime,
+                            parsed.merchant, parsed.reference, TransactionFingerprintStore.SOURCE_NOTIFICATION);
+            if (existing != null) {
+                Log.d(TAG, "Transaction already captured from another source, skipping overlay");
+                return;
             }
-            PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, intent, flags);
-            
-            androidx.core.app.NotificationCompat.Builder builder = new androidx.core.app.NotificationCompat.Builder(this, PROCESSING_CHANNEL_ID)
-                    .setSmallIcon(android.R.drawable.stat_notify_sync)
-                    .setContentTitle(title)
-                    .setContentText(message)
-                    .setPriority(androidx.core.app.NotificationCompat.PRIORITY_MAX)
-                    .setCategory(androidx.core.app.NotificationCompat.CATEGORY_STATUS)
-                    .setVisibility(androidx.core.app.NotificationCompat.VISIBILITY_PUBLIC)
-                    .setContentIntent(pendingIntent)
-                    .setFullScreenIntent(pendingIntent, true)
-                    .setOngoing(false)
-                    .setAutoCancel(true)
-                    .setShowWhen(true)
-                    .setWhen(System.currentTimeMillis())
-                    .setDefaults(0)
-                    .setTimeoutAfter(3000);
-            
-            if (notificationManager != null) {
-                notificationManager.notify(PROCESSING_NOTIFICATION_ID, builder.build());
+            if (parsed.reference != null) {
+                TransactionReferenceIndex.getInstance(this).add(parsed.reference);
             }
         }
-    }
-    
-    private void showErrorNotification(String title, String message) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            androidx.core.app.NotificationCompat.Builder builder = new androidx.core.app.NotificationCompat.Builder(this, PROCESSING_CHANNEL_ID)
-                    .setSmallIcon(android.R.drawable.stat_notify_error)
-                    .setContentTitle(title)
-                    .setContentText(message)
-                    .setPriority(androidx.core.app.NotificationCompat.PRIORITY_HIGH)
-                    .setCategory(androidx.core.app.NotificationCompat.CATEGORY_ERROR)
-                    .setVisibility(androidx.core.app.NotificationCompat.VISIBILITY_PUBLIC)
-                    .setOngoing(false)
-                    .setAutoCancel(true)
-                    .setShowWhen(true)
-                    .setWhen(System.currentTimeMillis())
-                    .setDefaults(0) // No sound, vibration, or lights
-                    .setTimeoutAfter(3000); // Auto-dismiss after 3 seconds
+
+        ParsedTransaction completed = TransactionParser.complete(parsed, fullText);
+        // Opted-in, high-confidence captures are saved with an undo notification instead
+        if (!event.isTest && AutoCommitter.tryCommit(this, "notification", title, fullText, packageName, completed)) {
+            return;
+        }
+
+        Log.d(TAG, ">>> SMS FORMAT MATCHED - Showing Android overlay...");
+        
+        // Show processing notification
+        ProcessingNotifier status = ProcessingNotifier.getInstance(this);
+        status.showProgress(android.R.drawable.ic_dialog_info, "💳 Transaction detected", "Parsing notification...",
+                ProcessingNotifier.PROGRESS_INDETERMINATE);
+
+        try {
+            // Show Android overlay (works when app is open or closed)
+            showOverlayPopup(title, fullText, packageName, completed, event.enqueuedAtNanos);
+            Log.d(TAG, "showOverlayPopup() completed");
             
-            if (notificationManager != null) {
-                notificationManager.notify(PROCESSING_NOTIFICATION_ID, builder.build());
-            }
+            // Update notification to success
+            status.showDone("✅ Expense ready", "Tap popup to save", ProcessingNotifier.PROGRESS_NONE);
             
-            // Auto-dismiss after 3 seconds
-            reconnectionHandler.postDelayed(() -> dismissProcessingNotification(), 3000);
+            // Auto-dismiss after 2 seconds
+            status.dismissAfter(2000);
+        } catch (Exception e) {
+            Log.e(TAG, "Exception in showOverlayPopup: " + e.getMessage(), e);
+            status.showError("❌ Processing failed", "Could not show expense popup");
         }
     }
-    
-    private void dismissProcessingNotification() {
-        if (notificationManager != null) {
-            notificationManager.cancel(PROCESSING_NOTIFICATION_ID);
+
+    public static PipelineMetrics getPipelineMetrics() {
+        NotificationListener listener = instance;
+        return listener != null && listener.pipeline != null ? listener.pipeline.getMetrics() : null;
+    }
+
+    public static long getDedupeHits() {
+        NotificationListener listener = instance;
+        return listener != null && listener.processor != null ? listener.processor.getDedupeIndex().getHits() : 0;
+    }
+
+    /**
+     * Apply a new dedupe window to the running listener (also persisted by the plugin).
+     */
+    public static void setDedupeWindow(long windowMs) {
+        NotificationListener listener = instance;
+        if (listener != null && listener.pipeline != null) {
+            listener.pipeline.execute(() -> listener.processor.getDedupeIndex().setWindowMs(windowMs));
         }
     }
+
+    public static int getPipelineDepth() {
+        NotificationListener listener = instance;
+        return listener != null && listener.pipeline != null ? listener.pipeline.getDepth() : 0;
+    }
     
     private void showProcessingToast(final String message) {
         Handler mainHandler = new Handler(Looper.getMainLooper());
@@ -442,7 +457,8 @@ public class NotificationListener extends NotificationListenerService {
         });
     }
 
-    private void showOverlayPopup(String title, String text, String packageName) {
+    private void showOverlayPopup(String title, String text, String packageName, ParsedTransaction parsed,
+                                  long eventAtNanos) {
         // Check if overlay permission is granted
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
             boolean canDraw = Settings.canDrawOverlays(this);
@@ -455,10 +471,9 @@ public class NotificationListener extends NotificationListenerService {
         
         try {
             Log.d(TAG, "Starting OverlayService...");
-            Intent intent = new Intent(this, OverlayService.class);
-            intent.putExtra("title", title != null ? title : "Notification");
-            intent.putExtra("text", text != null ? text : "");
-            intent.putExtra("package", packageName != null ? packageName : "");
+            Intent intent = OverlayService.createIntent(this, "notification",
+                    title != null ? title : "Notification", text != null ? text : "",
+                    packageName != null ? packageName : "", parsed, eventAtNanos);
             
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                 startForegroundService(intent);
@@ -476,94 +491,13 @@ public class NotificationListener extends NotificationListenerService {
         // Handle notification removal if needed
     }
 
-    private boolean isFinancialApp(String packageName) {
-        if (packageName == null) return false;
-        String pkg = packageName.toLowerCase();
-        
-        boolean isFinancial = pkg.contains("paytm") ||
-               pkg.contains("phonepe") ||
-               pkg.contains("googlepay") ||
-               pkg.contains("gpay") ||
-               pkg.contains("tez") ||
-               pkg.contains("whatsapp") ||
-               pkg.contains("bank") ||
-               pkg.contains("upi") ||
-               pkg.contains("amazonpay") ||
-               pkg.contains("bhim") ||
-               pkg.contains("cred") ||
-               pkg.contains("mobikwik") ||
-               pkg.contains("freecharge") ||
-               pkg.contains("sbi") ||
-               pkg.contains("hdfc") ||
-               pkg.contains("icici") ||
-               pkg.contains("axis") ||
-               pkg.contains("kotak");
-        
-        return isFinancial;
-    }
-
-    private boolean isFinancialNotification(String title, String text) {
-        if (title == null) title = "";
-        if (text == null) text = "";
-
-        String combined = (title + " " + text).toLowerCase();
-
-        // Check for common financial keywords
-        return combined.contains("debited") ||
-                combined.contains("credited") ||
-                combined.contains("paid") ||
-                combined.contains("received") ||
-                combined.contains("sent") ||
-                combined.contains("payment") ||
-                combined.contains("transaction") ||
-                combined.contains("balance") ||
-                combined.contains("rs.") ||
-                combined.contains("rs ") ||
-                combined.contains("inr") ||
-                combined.contains("₹") ||
-                combined.contains("rupee") ||
-                combined.matches(".*\\d+\\.\\d{2}.*");
-    }
-
-    private boolean matchesSMSFormat(String text) {
-        if (text == null) return false;
-        // Check for Rs. amount and timestamp format
-        return text.matches(".*Rs\\.\\d+\\.\\d{2}.*") &&
-               text.matches(".*\\(\\d{4}:\\d{2}:\\d{2} \\d{2}:\\d{2}:\\d{2}\\).*");
-    }
-
     private boolean isAppSelected(String packageName) {
-        try {
-            String selectedAppsJson = getSharedPreferences("MoneyManager", MODE_PRIVATE)
-                    .getString("selectedApps", null);
-            if (selectedAppsJson == null) {
-                // Default apps if not set
-                selectedAppsJson = "[\"com.whatsapp\", \"com.google.android.apps.messaging\"]";
-            }
-            JSONArray selectedApps = new JSONArray(selectedAppsJson);
-            for (int i = 0; i < selectedApps.length(); i++) {
-                if (selectedApps.getString(i).equals(packageName)) {
-                    return true;
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error checking selected apps: " + e.getMessage());
-        }
-        return false;
+        // Snapshot is rebuilt only when the selection changes
+        return SelectedApps.contains(packageName);
     }
     
     private void broadcastNotification(String packageName, String title, String text) {
-        try {
-            Intent intent = new Intent(NOTIFICATION_BROADCAST);
-            intent.putExtra("package", packageName);
-            intent.putExtra("title", title);
-            intent.putExtra("text", text);
-            intent.putExtra("timestamp", System.currentTimeMillis());
-
-            LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
-            Log.d(TAG, "Broadcast sent successfully");
-        } catch (Exception e) {
-            Log.e(TAG, "Error broadcasting notification: " + e.getMessage(), e);
-        }
+        AppEventBus.get().post(new NotificationEvent(null, packageName, title, text, null,
+                System.currentTimeMillis(), false));
     }
 }
@@ -1,15 +1,15 @@
 package com.moneymanager.app;
 
-import android.content.BroadcastReceiver;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.net.Uri;
 import android.os.Build;
 import android.provider.Settings;
 import android.text.TextUtils;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
@@ -20,8 +20,8 @@ import com.getcapacitor.annotation.CapacitorPlugin;
 
 @CapacitorPlugin(name = "NotificationListenerPlugin")
 public class NotificationListenerPlugin extends Plugin {
-    private BroadcastReceiver notificationReceiver;
-    private BroadcastReceiver expenseSavedReceiver;
+    private AppEventBus.Subscription<NotificationEvent> notificationSubscription;
+    private AppEventBus.Subscription<ExpenseSavedEvent> expenseSavedSubscription;
     private boolean isListening = false;
 
     @PluginMethod
@@ -43,60 +43,22 @@ public class NotificationListenerPlugin extends Plugin {
         }
         
         try {
-            notificationReceiver = new BroadcastReceiver() {
-                @Override
-                public void onReceive(Context context, Intent intent) {
-                    String packageName = intent.getStringExtra("package");
-                    String title = intent.getStringExtra("title");
-                    String text = intent.getStringExtra("text");
-                    long timestamp = intent.getLongExtra("timestamp", System.currentTimeMillis());
-
-                    JSObject notification = new JSObject();
-                    notification.put("package", packageName);
-                    notification.put("title", title);
-                    notification.put("text", text);
-                    notification.put("timestamp", timestamp);
-
-                    notifyListeners("notificationReceived", notification);
-                }
-            };
-
-            expenseSavedReceiver = new BroadcastReceiver() {
-                @Override
-                public void onReceive(Context context, Intent intent) {
-                    android.util.Log.d("NotificationListenerPlugin", "=== EXPENSE_SAVED broadcast received ===");
-                    
-                    String packageName = intent.getStringExtra("package");
-                    String title = intent.getStringExtra("title");
-                    String text = intent.getStringExtra("text");
-                    String category = intent.getStringExtra("category");
-                    double amount = intent.getDoubleExtra("amount", 0.0);
-                    String type = intent.getStringExtra("type");
-                    long transactionTimestamp = intent.getLongExtra("transactionTimestamp", System.currentTimeMillis());
-                    long notificationTimestamp = intent.getLongExtra("notificationTimestamp", System.currentTimeMillis());
-
-                    android.util.Log.d("NotificationListenerPlugin", "Expense data: amount=" + amount + ", category=" + category + ", type=" + type);
-
-                    JSObject expenseData = new JSObject();
-                    expenseData.put("package", packageName);
-                    expenseData.put("title", title);
-                    expenseData.put("text", text);
-                    expenseData.put("category", category);
-                    expenseData.put("amount", amount);
-                    expenseData.put("type", type);
-                    expenseData.put("transactionTimestamp", transactionTimestamp);
-                    expenseData.put("notificationTimestamp", notificationTimestamp);
-
-                    android.util.Log.d("NotificationListenerPlugin", "Notifying listeners with expenseSaved event");
-                    notifyListeners("expenseSaved", expenseData);
-                }
-            };
+            // Delivered on the publishing thread; notifyListeners hands off to the bridge
+            notificationSubscription = AppEventBus.get().subscribe(NotificationEvent.class, AppEventBus.DIRECT, false, event -> {
+                JSObject notification = new JSObject();
+                notification.put("package", event.packageName);
+                notification.put("title", event.title);
+                notification.put("text", event.text);
+                notification.put("timestamp", event.postTime);
 
-            IntentFilter filter = new IntentFilter(NotificationListener.NOTIFICATION_BROADCAST);
-            LocalBroadcastManager.getInstance(getContext()).registerReceiver(notificationReceiver, filter);
+                notifyListeners("notificationReceived", notification);
+            });
 
-            IntentFilter expenseFilter = new IntentFilter("com.moneymanager.app.EXPENSE_SAVED");
-            LocalBroadcastManager.getInstance(getContext()).registerReceiver(expenseSavedReceiver, expenseFilter);
+            // Expenses saved while the app was closed are read back from TransactionStore by JS
+            expenseSavedSubscription = AppEventBus.get().subscribe(ExpenseSavedEvent.class, AppEventBus.DIRECT, false, event -> {
+                android.util.Log.d("NotificationListenerPlugin", "=== Expense saved event received: " + event + " ===");
+                notifyListeners("expenseSaved", event.toJSObject());
+            });
 
             isListening = true;
             
@@ -114,22 +76,7 @@ public class NotificationListenerPlugin extends Plugin {
     
     @PluginMethod
     public void stopListening(PluginCall call) {
-        if (notificationReceiver != null) {
-            try {
-                LocalBroadcastManager.getInstance(getContext()).unregisterReceiver(notificationReceiver);
-                notificationReceiver = null;
-            } catch (Exception e) {
-                // Ignore
-            }
-        }
-        if (expenseSavedReceiver != null) {
-            try {
-                LocalBroadcastManager.getInstance(getContext()).unregisterReceiver(expenseSavedReceiver);
-                expenseSavedReceiver = null;
-            } catch (Exception e) {
-                // Ignore
-            }
-        }
+        cancelSubscriptions();
         isListening = false;
         
         JSObject ret = new JSObject();
@@ -185,10 +132,11 @@ public class NotificationListenerPlugin extends Plugin {
     public void testOverlay(PluginCall call) {
         // Test method to manually trigger an overlay popup
         try {
-            Intent intent = new Intent(getContext(), OverlayService.class);
-            intent.putExtra("title", "Test Notification");
-            intent.putExtra("text", "This is a test popup! If you see this, the overlay is working correctly.");
-            intent.putExtra("package", "com.test.app");
+            long eventAtNanos = System.nanoTime();
+            String title = "Test Notification";
+            String text = "This is a test popup! If you see this, the overlay is working correctly.";
+            Intent intent = OverlayService.createIntent(getContext(), "notification", title, text, "com.test.app",
+                    TransactionParser.parseNotification("com.test.app", title, text), eventAtNanos);
             
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                 getContext().startForegroundService(intent);
@@ -218,6 +166,7 @@ public class NotificationListenerPlugin extends Plugin {
                     .edit()
                     .putString("selectedApps", appsJson)
                     .apply();
+                SelectedApps.rebuild(appsJson);
                 JSObject ret = new JSObject();
                 ret.put("success", true);
                 call.resolve(ret);
@@ -235,6 +184,30 @@ public class NotificationListenerPlugin extends Plugin {
         }
     }
 
+    @PluginMethod
+    public void openListenerFilterSettings(PluginCall call) {
+        // Android 11+ lets the user exclude apps from our listener at the system level,
+        // so unselected apps never wake the process. Apps cannot set this themselves.
+        try {
+            Intent intent;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                intent = new Intent(Settings.ACTION_NOTIFICATION_LISTENER_DETAIL_SETTINGS);
+                intent.putExtra(Settings.EXTRA_NOTIFICATION_LISTENER_COMPONENT_NAME,
+                        new ComponentName(getContext(), NotificationListener.class).flattenToString());
+            } else {
+                intent = new Intent(Settings.ACTION_NOTIFICATION_LISTENER_SETTINGS);
+            }
+            getActivity().startActivity(intent);
+
+            JSObject ret = new JSObject();
+            ret.put("opened", true);
+            ret.put("selectedApps", new JSArray(SelectedApps.get()));
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to open listener filter settings: " + e.getMessage());
+        }
+    }
+
     @PluginMethod
     public void isServiceConnected(PluginCall call) {
         boolean connected = NotificationListener.isServiceConnected();
@@ -243,6 +216,157 @@ public class NotificationListenerPlugin extends Plugin {
         call.resolve(ret);
     }
 
+    @PluginMethod
+    public void setDedupeWindow(PluginCall call) {
+        Long windowMs = call.getLong("windowMs");
+        if (windowMs == null || windowMs < 0) {
+            call.reject("windowMs must be a non-negative number");
+            return;
+        }
+        getContext().getSharedPreferences(SelectedApps.PREFS_NAME, Context.MODE_PRIVATE)
+            .edit()
+            .putLong(NotificationListener.KEY_DEDUPE_WINDOW, windowMs)
+            .apply();
+        NotificationListener.setDedupeWindow(windowMs);
+
+        JSObject ret = new JSObject();
+        ret.put("success", true);
+        ret.put("windowMs", windowMs);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void setTransactionFormats(PluginCall call) {
+        JSArray formats = call.getArray("formats");
+        if (formats == null) {
+            call.reject("No formats array provided");
+            return;
+        }
+        String formatsJson = formats.toString();
+        List<String> errors = new ArrayList<>();
+        int compiled = TransactionFormatRules.rebuild(formatsJson, errors);
+        getContext().getSharedPreferences(SelectedApps.PREFS_NAME, Context.MODE_PRIVATE)
+            .edit()
+            .putString(TransactionFormatRules.KEY_TRANSACTION_FORMATS, formatsJson)
+            .apply();
+
+        JSObject ret = new JSObject();
+        ret.put("success", errors.isEmpty());
+        ret.put("compiled", compiled);
+        ret.put("errors", new JSArray(errors));
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void getTransactionFormats(PluginCall call) {
+        String formatsJson = getContext().getSharedPreferences(SelectedApps.PREFS_NAME, Context.MODE_PRIVATE)
+            .getString(TransactionFormatRules.KEY_TRANSACTION_FORMATS, "[]");
+        JSObject ret = new JSObject();
+        try {
+            ret.put("formats", new JSArray(formatsJson));
+        } catch (Exception e) {
+            ret.put("formats", new JSArray());
+        }
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void startNotificationRecording(PluginCall call) {
+        try {
+            NotificationRecorder.start(getRecordingFile());
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Could not start recording: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void stopNotificationRecording(PluginCall call) {
+        int events = NotificationRecorder.stop();
+        JSObject ret = new JSObject();
+        ret.put("success", events >= 0);
+        ret.put("events", Math.max(0, events));
+        ret.put("bytes", getRecordingFile().length());
+        call.resolve(ret);
+    }
+
+    /**
+     * Replay the last recording through a fresh pipeline and processor. Nothing is
+     * shown or stored; only the report is returned. speed: 1, 10 or 0 for unlimited.
+     */
+    @PluginMethod
+    public void replayNotifications(PluginCall call) {
+        double speed = call.getDouble("speed", 1.0);
+        int capacity = call.getInt("capacity", NotificationPipeline.DEFAULT_CAPACITY);
+        File file = getRecordingFile();
+        if (!file.exists()) {
+            call.reject("No recording found");
+            return;
+        }
+
+        new Thread(() -> {
+            try {
+                List<NotificationReplayer.Entry> entries = NotificationReplayer.load(file);
+                NotificationProcessor processor = new NotificationProcessor(new NotificationDedupeIndex(), null);
+                processor.setVerbose(false);
+                NotificationReplayer.Report report = NotificationReplayer.replay(entries, speed, processor::process, capacity);
+
+                JSObject ret = new JSObject();
+                ret.put("events", report.events);
+                ret.put("durationMs", report.durationMs);
+                ret.put("eventsPerSecond", report.eventsPerSecond);
+                ret.put("maxDepth", report.maxDepth);
+                ret.put("coalesced", report.coalesced);
+                ret.put("rateLimited", report.rateLimited);
+                ret.put("dropped", report.dropped);
+                ret.put("processed", report.processed);
+                ret.put("failed", report.failed);
+                ret.put("matched", report.matched);
+                ret.put("latencyP50Micros", report.latencyP50Micros);
+                ret.put("latencyP90Micros", report.latencyP90Micros);
+                ret.put("latencyP99Micros", report.latencyP99Micros);
+                ret.put("latencyMaxMicros", report.latencyMaxMicros);
+                ret.put("timedOut", report.timedOut);
+                call.resolve(ret);
+            } catch (Exception e) {
+                call.reject("Replay failed: " + e.getMessage());
+            }
+        }, "NotificationReplay").start();
+    }
+
+    private File getRecordingFile() {
+        return new File(getContext().getFilesDir(), "notification_recording.bin");
+    }
+
+    @PluginMethod
+    public void getPipelineStats(PluginCall call) {
+        JSObject ret = new JSObject();
+        PipelineMetrics metrics = NotificationListener.getPipelineMetrics();
+        ret.put("running", metrics != null);
+        if (metrics != null) {
+            ret.put("depth", NotificationListener.getPipelineDepth());
+            ret.put("maxDepth", metrics.getMaxDepth());
+            ret.put("enqueued", metrics.getEnqueued());
+            ret.put("coalesced", metrics.getCoalesced());
+            ret.put("rateLimited", metrics.getRateLimited());
+            ret.put("dropped", metrics.getDropped());
+            ret.put("processed", metrics.getProcessed());
+            ret.put("failed", metrics.getFailed());
+            ret.put("duplicates", NotificationListener.getDedupeHits());
+            ret.put("latencyP50Micros", metrics.latencyPercentile(50));
+            ret.put("latencyP99Micros", metrics.latencyPercentile(99));
+        }
+
+        PipelineMetrics overlay = OverlayService.getMetrics();
+        ret.put("overlayQueued", overlay.getEnqueued());
+        ret.put("overlayShown", overlay.getProcessed());
+        ret.put("overlayTimeToVisibleP50Micros", overlay.latencyPercentile(50));
+        ret.put("overlayTimeToVisibleP99Micros", overlay.latencyPercentile(99));
+        call.resolve(ret);
+    }
+
     @PluginMethod
     public void getPermissionStatus(PluginCall call) {
         boolean notificationAccess = isNotificationServiceEnabled();
@@ -278,20 +402,18 @@ public class NotificationListenerPlugin extends Plugin {
     
     @Override
     protected void handleOnDestroy() {
-        if (notificationReceiver != null) {
-            try {
-                LocalBroadcastManager.getInstance(getContext()).unregisterReceiver(notificationReceiver);
-            } catch (Exception e) {
-                // Ignore
-            }
+        cancelSubscriptions();
+        super.handleOnDestroy();
+    }
+
+    private void cancelSubscriptions() {
+        if (notificationSubscription != null) {
+            notificationSubscription.cancel();
+            notificationSubscription = null;
         }
-        if (expenseSavedReceiver != null) {
-            try {
-                LocalBroadcastManager.getInstance(getContext()).unregisterReceiver(expenseSavedReceiver);
-            } catch (Exception e) {
-                // Ignore
-            }
+        if (expenseSavedSubscription != null) {
+            expenseSavedSubscription.cancel();
+            expenseSavedSubscription = null;
         }
-        super.handleOnDestroy();
     }
 }
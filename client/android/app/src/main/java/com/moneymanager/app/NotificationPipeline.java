@@ -0,0 +1,334 @@
+package com.moneymanager.app;
+
+import android.util.Log;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded, lock-free hand-off from the notification listener callback to a single
+ * worker thread.
+ *
+ * The callback only snapshots the notification and calls {@link #enqueue}, which is a
+ * capacity check and an offer to a {@link ConcurrentLinkedQueue}; the worker is woken
+ * through the executor only when it is idle. Everything that needs ordering or state -
+ * due times, coalescing, rate limits - happens on the worker, in plain collections that
+ * only it touches. The coalescing window is leading-edge: the first event for a key
+ * is processed at once, and follow-ups within the window after it wait for the end of
+ * the window, newer content replacing older, so a burst from one conversation costs
+ * one immediate pass plus one pass over its newest content. Each package also has a
+ * token bucket; once it is empty, further non-financial events from that package fold
+ * into one slot that is processed when the next token is due. Events the
+ * {@link FinancialClassifier} flags keep their own slot, so a burst of distinct bank
+ * alerts is never folded away. When the queue is full the configured {@link DropPolicy} decides
+ * which event is discarded. All of this is counted in {@link PipelineMetrics}.
+ */
+public class NotificationPipeline {
+    private static final String TAG = "NotificationPipeline";
+    public static final int DEFAULT_CAPACITY = 64;
+    public static final long DEFAULT_COALESCE_WINDOW_MS = 200;
+    public static final int DEFAULT_BURST = 8;
+    public static final double DEFAULT_PER_SECOND = 4.0;
+    private static final String RATE_LIMITED_PREFIX = "rate-limited:";
+
+    public enum DropPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST
+    }
+
+    public interface Processor {
+        void process(NotificationEvent event) throws Exception;
+    }
+
+    /**
+     * A waiting key and the time it becomes due.
+     */
+    private static final class Slot implements Comparable<Slot> {
+        final String key;
+        final long dueNanos;
+        final long sequence;
+
+        Slot(String key, long dueNanos, long sequence) {
+            this.key = key;
+            this.dueNanos = dueNanos;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Slot other) {
+            if (dueNanos != other.dueNanos) return dueNanos < other.dueNanos ? -1 : 1;
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Per-package token bucket, worker thread only. Tokens may go negative to reserve a
+     * future slot.
+     */
+    private static final class TokenBucket {
+        private final double burst;
+        private final double perNano;
+        private double tokens;
+        private long refilledAtNanos;
+
+        TokenBucket(int burst, double perSecond, long now) {
+            this.burst = burst;
+            this.perNano = perSecond / 1e9;
+            this.tokens = burst;
+            this.refilledAtNanos = now;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - refilledAtNanos) * perNano);
+            refilledAtNanos = now;
+        }
+
+        boolean tryAcquire(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Take the next token even if it is not there yet.
+         *
+         * @return when that token becomes available
+         */
+        long reserve(long now) {
+            refill(now);
+            tokens -= 1;
+            return tokens >= 0 ? now : now + (long) (-tokens / perNano);
+        }
+    }
+
+    private final Processor processor;
+    private final int capacity;
+    private final DropPolicy dropPolicy;
+    private final long windowNanos;
+    private final int burst;
+    private final double perSecond;
+    private final PipelineMetrics metrics = new PipelineMetrics();
+
+    // Listener thread -> worker. depth counts every event not yet processed or discarded.
+    private final ConcurrentLinkedQueue<NotificationEvent> ingress = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicBoolean wakeScheduled = new AtomicBoolean();
+
+    // Worker thread only: waiting keys ordered by due time, the newest event per key
+    private final PriorityQueue<Slot> queue = new PriorityQueue<>();
+    private final HashMap<String, NotificationEvent> pending = new HashMap<>();
+    private final HashMap<String, TokenBucket> buckets = new HashMap<>();
+    private final HashMap<String, Long> lastProcessedNanos = new HashMap<>();
+    private final FinancialClassifier.Result classification = new FinancialClassifier.Result();
+    private long sequence;
+    private long nextDrainNanos = Long.MAX_VALUE;
+
+    private final ScheduledExecutorService worker;
+    private final Runnable drainTask = this::drain;
+
+    public NotificationPipeline(Processor processor) {
+        this(processor, DEFAULT_CAPACITY, DropPolicy.DROP_OLDEST);
+    }
+
+    public NotificationPipeline(Processor processor, int capacity, DropPolicy dropPolicy) {
+        this(processor, capacity, dropPolicy, DEFAULT_COALESCE_WINDOW_MS, DEFAULT_BURST, DEFAULT_PER_SECOND);
+    }
+
+    /**
+     * @param coalesceWindowMs after a key is processed, how long its follow-ups are held and coalesced
+     * @param burst            events a package may send back to back before rate limiting
+     * @param perSecond        sustained events per second per package
+     */
+    public NotificationPipeline(Processor processor, int capacity, DropPolicy dropPolicy,
+                                long coalesceWindowMs, int burst, double perSecond) {
+        this.processor = processor;
+        this.capacity = capacity;
+        this.dropPolicy = dropPolicy;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(coalesceWindowMs);
+        this.burst = burst;
+        this.perSecond = perSecond;
+        this.worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "NotificationPipeline");
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+    }
+
+    /**
+     * Cheap, non-blocking hand-off. Safe to call from the listener callback thread.
+     *
+     * @return false if the event was dropped because the queue was full
+     */
+    public boolean enqueue(NotificationEvent event) {
+        metrics.enqueued.incrementAndGet();
+        if (depth.get() >= capacity) {
+            if (dropPolicy == DropPolicy.DROP_NEWEST) {
+                metrics.dropped.incrementAndGet();
+                return false;
+            }
+            // The oldest event still waiting for the worker; if the worker has taken them
+            // all, it trims its own queue back to capacity instead
+            if (ingress.poll() != null) {
+                depth.decrementAndGet();
+                metrics.dropped.incrementAndGet();
+            }
+        }
+        ingress.offer(event);
+        metrics.recordDepth(depth.incrementAndGet());
+        if (wakeScheduled.compareAndSet(false, true)) {
+            try {
+                worker.execute(drainTask);
+            } catch (Exception e) {
+                Log.e(TAG, "Worker rejected drain task: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Run a task on the worker thread, in order with queued events.
+     */
+    public void execute(Runnable task) {
+        worker.execute(task);
+    }
+
+    // Worker thread: move an event from ingress into the due-time queue
+    private void admit(NotificationEvent event) {
+        long now = event.enqueuedAtNanos;
+
+        // Key already waiting in the queue; the newer content replaces it
+        if (pending.replace(event.key, event) != null) {
+            discarded();
+            metrics.coalesced.incrementAndGet();
+            return;
+        }
+
+        // A new key costs a token from its package's bucket
+        String key = event.key;
+        TokenBucket bucket = null;
+        if (event.packageName != null && !event.isTest) {
+            bucket = buckets.get(event.packageName);
+            if (bucket == null) {
+                bucket = new TokenBucket(burst, perSecond, now);
+                buckets.put(event.packageName, bucket);
+            }
+            if (bucket.tryAcquire(now)) {
+                bucket = null;
+            } else if (isFinancial(event)) {
+                // A bank's batch of alerts: each one is a separate capture, never folded
+                bucket = null;
+            } else {
+                // Over the package's rate: keep only its newest content until a token is due
+                metrics.rateLimited.incrementAndGet();
+                key = RATE_LIMITED_PREFIX + event.packageName;
+            }
+        }
+
+        if (pending.put(key, event) != null) {
+            discarded();
+            metrics.coalesced.incrementAndGet();
+            return;
+        }
+
+        // Leading edge: due now, unless this key was processed within the window
+        long due = now;
+        Long last = lastProcessedNanos.get(key);
+        if (last != null && now - last < windowNanos) {
+            due = last + windowNanos;
+        }
+        if (bucket != null) {
+            due = Math.max(due, bucket.reserve(now));
+        }
+        queue.offer(new Slot(key, due, sequence++));
+    }
+
+    private boolean isFinancial(NotificationEvent event) {
+        FinancialClassifier.getInstance().classify(event.title, event.fullText(), classification);
+        return classification.isFinancial();
+    }
+
+    private void discarded() {
+        depth.decrementAndGet();
+    }
+
+    // Make sure a drain runs no later than dueNanos
+    private void scheduleDrain(long dueNanos, long now) {
+        if (dueNanos >= nextDrainNanos) return;
+        nextDrainNanos = dueNanos;
+        try {
+            worker.schedule(drainTask, Math.max(0, dueNanos - now), TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            Log.e(TAG, "Worker rejected drain task: " + e.getMessage());
+        }
+    }
+
+    private void drain() {
+        // Cleared first, so an event offered from here on schedules another pass
+        wakeScheduled.set(false);
+        nextDrainNanos = Long.MAX_VALUE;
+        NotificationEvent incoming;
+        while ((incoming = ingress.poll()) != null) {
+            admit(incoming);
+        }
+        while (queue.size() > capacity) {
+            Slot victim = queue.poll();
+            if (pending.remove(victim.key) != null) {
+                discarded();
+                metrics.dropped.incrementAndGet();
+            }
+        }
+
+        Slot slot;
+        while ((slot = queue.peek()) != null) {
+            long now = System.nanoTime();
+            if (slot.dueNanos > now) {
+                scheduleDrain(slot.dueNanos, now);
+                return;
+            }
+            queue.poll();
+            NotificationEvent event = pending.remove(slot.key);
+            if (event == null) continue;
+            discarded();
+            rememberProcessed(slot.key, now);
+
+            try {
+                processor.process(event);
+                metrics.processed.incrementAndGet();
+            } catch (Exception e) {
+                metrics.failed.incrementAndGet();
+                Log.e(TAG, "Error processing notification from " + event.packageName + ": " + e.getMessage(), e);
+            }
+            metrics.recordLatency((System.nanoTime() - event.enqueuedAtNanos) / 1000);
+        }
+    }
+
+    private void rememberProcessed(String key, long now) {
+        if (lastProcessedNanos.size() >= capacity * 4) {
+            lastProcessedNanos.values().removeIf(at -> now - at >= windowNanos);
+        }
+        lastProcessedNanos.put(key, now);
+    }
+
+    public int getDepth() {
+        return depth.get();
+    }
+
+    public PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Stop accepting work. Events already queued are still processed.
+     */
+    public void shutdown() {
+        worker.shutdown();
+    }
+}
@@ -0,0 +1,112 @@
+package com.moneymanager.app;
+
+import android.util.Log;
+
+/**
+ * The decision part of notification handling: dedupe, known-reference check,
+ * classification and template parsing. It has no service or UI dependencies, so the
+ * same code runs inside {@link NotificationListener} and in {@link NotificationReplayer}
+ * on the JVM. Side effects (stores, overlay) stay with the caller.
+ *
+ * Not thread-safe: one instance per pipeline worker.
+ */
+public class NotificationProcessor {
+    private static final String TAG = "NotificationListener";
+
+    private final NotificationDedupeIndex dedupeIndex;
+    private final TransactionReferenceIndex references; // null when replaying
+    private final FinancialClassifier.Result classification = new FinancialClassifier.Result();
+    private boolean verbose = true;
+
+    public NotificationProcessor(NotificationDedupeIndex dedupeIndex, TransactionReferenceIndex references) {
+        this.dedupeIndex = dedupeIndex;
+        this.references = references;
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    public NotificationDedupeIndex getDedupeIndex() {
+        return dedupeIndex;
+    }
+
+    /**
+     * @return the parsed transaction, or null if the notification should be ignored
+     */
+    public ParsedTransaction process(NotificationEvent event) {
+        // Re-posts and re-alerts of content we already handled stop here
+        long fingerprint = NotificationDedupeIndex.fingerprint(event);
+        if (dedupeIndex.checkAndRecord(fingerprint, System.currentTimeMillis())) {
+            if (verbose) Log.d(TAG, "Duplicate notification skipped: " + event.key);
+            return null;
+        }
+
+        String packageName = event.packageName;
+        String title = event.title;
+        String fullText = event.fullText();
+
+        // A payment whose reference was already captured (even months ago) needs no parsing
+        if (references != null && !event.isTest) {
+            String reference = TransactionReferenceIndex.extractReference(fullText);
+            if (reference != null && references.contains(reference)) {
+                if (verbose) Log.d(TAG, "Known transaction reference, skipping: " + reference);
+                return null;
+            }
+        }
+
+        FinancialClassifier.getInstance().classify(title, fullText, classification);
+
+        if (verbose) {
+            // LOG ALL NOTIFICATIONS for debugging
+            Log.d(TAG, "========================================");
+            Log.d(TAG, "NEW NOTIFICATION RECEIVED" + (event.isTest ? " (TEST)" : ""));
+            Log.d(TAG, "Package: " + packageName);
+            Log.d(TAG, "Title: " + title);
+            Log.d(TAG, "Text: " + event.text);
+            Log.d(TAG, "BigText: " + event.bigText);
+            Log.d(TAG, "FullText: " + fullText);
+            Log.d(TAG, "Is Financial App: " + isFinancialApp(packageName));
+            Log.d(TAG, "Is Financial Content: " + classification.isFinancial() + " (" + classification + ")");
+            Log.d(TAG, "========================================");
+        }
+
+        // Only the templates for this source, the user's own formats and the built-in
+        // Rs./timestamp format are tried; the classifier result lets the engine skip
+        // text that cannot match a built-in template
+        ParsedTransaction parsed = SmsTemplateEngine.getInstance()
+                .parseNotification(packageName, title, fullText, false, classification);
+        if (verbose) {
+            if (parsed != null) {
+                Log.d(TAG, "Matched template: " + parsed.templateId);
+            } else {
+                Log.d(TAG, "Skipping notification - doesn't match SMS format");
+            }
+        }
+        return parsed;
+    }
+
+    private static boolean isFinancialApp(String packageName) {
+        if (packageName == null) return false;
+        String pkg = packageName.toLowerCase();
+
+        return pkg.contains("paytm") ||
+               pkg.contains("phonepe") ||
+               pkg.contains("googlepay") ||
+               pkg.contains("gpay") ||
+               pkg.contains("tez") ||
+               pkg.contains("whatsapp") ||
+               pkg.contains("bank") ||
+               pkg.contains("upi") ||
+               pkg.contains("amazonpay") ||
+               pkg.contains("bhim") ||
+               pkg.contains("cred") ||
+               pkg.contains("mobikwik") ||
+               pkg.contains("freecharge") ||
+               pkg.contains("sbi") ||
+               pkg.contains("hdfc") ||
+               pkg.contains("icici") ||
+               pkg.contains("axis") ||
+               pkg.contains("kotak");
+    }
+}
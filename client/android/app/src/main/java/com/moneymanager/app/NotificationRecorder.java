@@ -0,0 +1,174 @@
+package com.moneymanager.app;
+
+import android.util.Log;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the notifications handed to the pipeline to a compact binary file, so
+ * production bursts can be replayed later with {@link NotificationReplayer}.
+ *
+ * Content is sanitized before it is written: digit runs of six or more (account
+ * numbers, references, phone numbers) are replaced by same-length stand-ins with a
+ * per-recording salt, and the local part of VPAs / e-mail addresses is masked.
+ * Amounts, keywords and timing are kept so replays parse like the original.
+ *
+ * File layout: magic, version, then per event a flags byte, the delay since the
+ * previous event in ms, a package index (new packages follow inline) and the
+ * key, title, text and big text as modified UTF-8.
+ */
+public final class NotificationRecorder {
+    private static final String TAG = "NotificationRecorder";
+    static final int MAGIC = 0x4d4d4e52; // "MMNR"
+    static final int VERSION = 1;
+    static final int MAX_FIELD_CHARS = 4000;
+    private static final int MAX_EVENTS = 50000;
+    private static final int SANITIZE_MIN_DIGITS = 6;
+
+    private static volatile NotificationRecorder active;
+
+    private final File file;
+    private final DataOutputStream out;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> new Thread(r, "NotificationRecorder"));
+    private final HashMap<String, Integer> packages = new HashMap<>();
+    private final int[] salt = new int[16];
+    private long lastEventNanos = 0;
+    private int events = 0;
+
+    private NotificationRecorder(File file) throws IOException {
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        SecureRandom random = new SecureRandom();
+        for (int i = 0; i < salt.length; i++) salt[i] = random.nextInt(10);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    /**
+     * Start a new recording, replacing any previous file. Stops a recording in progress.
+     */
+    public static synchronized void start(File file) throws IOException {
+        stop();
+        active = new NotificationRecorder(file);
+        Log.d(TAG, "🔴 Recording notifications to " + file.getName());
+    }
+
+    /**
+     * Stop recording and flush the file.
+     *
+     * @return number of events recorded, or -1 if nothing was recording
+     */
+    public static synchronized int stop() {
+        NotificationRecorder recorder = active;
+        if (recorder == null) return -1;
+        active = null;
+        return recorder.close();
+    }
+
+    /**
+     * The recording in progress, or null. Checked on every posted notification.
+     */
+    public static NotificationRecorder active() {
+        return active;
+    }
+
+    /**
+     * Called on the listener callback thread; the write happens on the recorder thread.
+     */
+    public void record(NotificationEvent event) {
+        long now = System.nanoTime();
+        long delayMs;
+        synchronized (this) {
+            delayMs = lastEventNanos == 0 ? 0 : (now - lastEventNanos) / 1_000_000;
+            lastEventNanos = now;
+        }
+        int delay = (int) Math.min(Integer.MAX_VALUE, delayMs);
+        try {
+            writer.execute(() -> write(event, delay));
+        } catch (Exception e) {
+            // Recording stopped concurrently
+        }
+    }
+
+    private void write(NotificationEvent event, int delayMs) {
+        if (events >= MAX_EVENTS) return;
+        try {
+            out.writeByte(event.isTest ? 1 : 0);
+            out.writeInt(delayMs);
+            Integer index = packages.get(event.packageName);
+            if (index == null) {
+                index = packages.size();
+                packages.put(event.packageName, index);
+                out.writeShort(index);
+                out.writeUTF(event.packageName);
+            } else {
+                out.writeShort(index);
+            }
+            out.writeUTF(sanitize(event.key));
+            out.writeUTF(sanitize(event.title));
+            out.writeUTF(sanitize(event.text));
+            out.writeUTF(sanitize(event.bigText));
+            events++;
+        } catch (IOException e) {
+            Log.e(TAG, "Error recording notification: " + e.getMessage());
+        }
+    }
+
+    private int close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing recording: " + e.getMessage());
+        }
+        Log.d(TAG, "⏹️ Recorded " + events + " notifications (" + file.length() + " bytes)");
+        return events;
+    }
+
+    String sanitize(String value) {
+        if (value == null || value.isEmpty()) return "";
+        int length = Math.min(value.length(), MAX_FIELD_CHARS);
+        char[] chars = value.substring(0, length).toCharArray();
+
+        int i = 0;
+        while (i < length) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                int end = i;
+                while (end < length && chars[end] >= '0' && chars[end] <= '9') end++;
+                if (end - i >= SANITIZE_MIN_DIGITS) {
+                    for (int d = i; d < end; d++) {
+                        chars[d] = (char) ('0' + (chars[d] - '0' + salt[(d - i) % salt.length]) % 10);
+                    }
+                }
+                i = end;
+            } else if (c == '@' && i > 0 && i + 1 < length && Character.isLetter(chars[i + 1])) {
+                // VPA or e-mail: mask the part before '@'
+                for (int d = i - 1; d >= 0 && isHandleChar(chars[d]); d--) {
+                    if (Character.isLetter(chars[d])) chars[d] = 'x';
+                }
+                i++;
+            } else {
+                i++;
+            }
+        }
+        return new String(chars);
+    }
+
+    private static boolean isHandleChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '.' || c == '_' || c == '-';
+    }
+}
@@ -0,0 +1,210 @@
+package com.moneymanager.app;
+
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a {@link NotificationRecorder} file through a real {@link NotificationPipeline}
+ * and reports throughput, queue depth, drops and end-to-end latency.
+ *
+ * Nothing here needs a live NotificationListenerService, so the same replay runs on a
+ * device (see NotificationListenerPlugin.replayNotifications) or on the JVM (see
+ * NotificationReplayerTest), e.g.:
+ * <pre>
+ * List&lt;NotificationReplayer.Entry&gt; entries = NotificationReplayer.load(file);
+ * NotificationProcessor processor = new NotificationProcessor(new NotificationDedupeIndex(), null);
+ * processor.setVerbose(false);
+ * Report report = NotificationReplayer.replay(entries, 10, processor::process, 64);
+ * </pre>
+ */
+public final class NotificationReplayer {
+    private static final String TAG = "NotificationReplayer";
+    public static final double SPEED_UNLIMITED = 0;
+    private static final long DRAIN_TIMEOUT_MS = 60_000;
+
+    private NotificationReplayer() {
+    }
+
+    /**
+     * One recorded notification and its delay after the previous one.
+     */
+    public static final class Entry {
+        public final int delayMs;
+        public final boolean isTest;
+        public final String packageName;
+        public final String key;
+        public final String title;
+        public final String text;
+        public final String bigText;
+
+        Entry(int delayMs, boolean isTest, String packageName, String key, String title,
+              String text, String bigText) {
+            this.delayMs = delayMs;
+            this.isTest = isTest;
+            this.packageName = packageName;
+            this.key = key;
+            this.title = title;
+            this.text = text;
+            this.bigText = bigText;
+        }
+    }
+
+    public static final class Report {
+        public int events;
+        public double speed;
+        public long durationMs;
+        public double eventsPerSecond;
+        public long maxDepth;
+        public long coalesced;
+        public long rateLimited;
+        public long dropped;
+        public long processed;
+        public long failed;
+        public int matched;
+        public long latencyP50Micros;
+        public long latencyP90Micros;
+        public long latencyP99Micros;
+        public long latencyMaxMicros;
+        public boolean timedOut;
+
+        @Override
+        public String toString() {
+            return events + " events at " + (speed == SPEED_UNLIMITED ? "unlimited" : speed + "x") +
+                    ": " + String.format("%.0f", eventsPerSecond) + " ev/s, maxDepth=" + maxDepth +
+                    ", dropped=" + dropped + ", coalesced=" + coalesced + ", rateLimited=" + rateLimited + ", matched=" + matched +
+                    ", p50=" + latencyP50Micros + "us, p99=" + latencyP99Micros + "us";
+        }
+    }
+
+    /**
+     * Read a whole recording into memory, so disk reads do not distort the replay timing.
+     */
+    public static List<Entry> load(File file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        List<String> packages = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != NotificationRecorder.MAGIC || in.readByte() != NotificationRecorder.VERSION) {
+                throw new IOException("Not a notification recording: " + file.getName());
+            }
+            while (true) {
+                int flags;
+                try {
+                    flags = in.readByte();
+                } catch (EOFException eof) {
+                    break;
+                }
+                int delayMs = in.readInt();
+                int packageIndex = in.readShort();
+                if (packageIndex == packages.size()) {
+                    packages.add(in.readUTF());
+                } else if (packageIndex > packages.size()) {
+                    throw new IOException("Corrupt package index " + packageIndex);
+                }
+                entries.add(new Entry(delayMs, (flags & 1) != 0, packages.get(packageIndex),
+                        in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF()));
+            }
+        } catch (EOFException e) {
+            // A recording cut off mid-event: keep what was complete
+            Log.w(TAG, "Recording truncated after " + entries.size() + " events");
+        }
+        return entries;
+    }
+
+    /**
+     * Feed the entries into a fresh pipeline on the calling thread and wait for it to drain.
+     *
+     * @param speed    1 for real time, 10 for ten times faster, {@link #SPEED_UNLIMITED} for no delays
+     * @param parser   the processing stage; a non-null result counts as a match
+     * @param capacity pipeline queue capacity
+     */
+    public static Report replay(List<Entry> entries, double speed, Parser parser, int capacity) {
+        int count = entries.size();
+        long[] latencies = new long[count];
+        AtomicInteger samples = new AtomicInteger();
+        AtomicInteger matched = new AtomicInteger();
+
+        NotificationPipeline pipeline = new NotificationPipeline(event -> {
+            try {
+                if (parser.parse(event) != null) matched.incrementAndGet();
+            } finally {
+                int slot = samples.getAndIncrement();
+                if (slot < latencies.length) {
+                    latencies[slot] = (System.nanoTime() - event.enqueuedAtNanos) / 1000;
+                }
+            }
+        }, capacity, NotificationPipeline.DropPolicy.DROP_OLDEST);
+        PipelineMetrics metrics = pipeline.getMetrics();
+
+        long startNanos = System.nanoTime();
+        long dueNanos = startNanos;
+        for (Entry entry : entries) {
+            if (speed > 0) {
+                dueNanos += (long) (TimeUnit.MILLISECONDS.toNanos(entry.delayMs) / speed);
+                long wait = dueNanos - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+            }
+            pipeline.enqueue(new NotificationEvent(entry.key, entry.packageName, entry.title,
+                    entry.text, entry.bigText, System.currentTimeMillis(), entry.isTest));
+        }
+
+        // Every enqueued event ends up processed, failed, coalesced away or dropped
+        Report report = new Report();
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        while (metrics.getProcessed() + metrics.getFailed() + metrics.getCoalesced() + metrics.getDropped() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                report.timedOut = true;
+                break;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        pipeline.shutdown();
+
+        report.events = count;
+        report.speed = speed;
+        report.durationMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        report.eventsPerSecond = elapsedNanos > 0 ? count * 1e9 / elapsedNanos : 0;
+        report.maxDepth = metrics.getMaxDepth();
+        report.coalesced = metrics.getCoalesced();
+        report.rateLimited = metrics.getRateLimited();
+        report.dropped = metrics.getDropped();
+        report.processed = metrics.getProcessed();
+        report.failed = metrics.getFailed();
+        report.matched = matched.get();
+
+        int n = Math.min(samples.get(), latencies.length);
+        if (n > 0) {
+            long[] sorted = Arrays.copyOf(latencies, n);
+            Arrays.sort(sorted);
+            report.latencyP50Micros = percentile(sorted, 50);
+            report.latencyP90Micros = percentile(sorted, 90);
+            report.latencyP99Micros = percentile(sorted, 99);
+            report.latencyMaxMicros = sorted[n - 1];
+        }
+        Log.d(TAG, "📊 Replay: " + report);
+        return report;
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * The stage under test, e.g. {@code processor::process}.
+     */
+    public interface Parser {
+        ParsedTransaction parse(NotificationEvent event) throws Exception;
+    }
+}
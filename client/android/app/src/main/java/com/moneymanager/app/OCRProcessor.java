@@ -34,6 +34,9 @@ public class OCRProcessor {
     // Server URL for Groq AI parsing
     private static final String SERVER_URL = BuildConfig.SERVER_URL;
 
+    // When set, images whose reference is already indexed are not sent for parsing
+    private boolean skipKnownReferences = false;
+
     public interface OCRCallback {
         void onSuccess(ExpenseData expenseData);
         void onFailure(String error);
@@ -45,6 +48,8 @@ public class OCRProcessor {
         public String type; // "debit" or "credit"
         public long timestamp;
         public String rawText;
+        public String reference; // UPI RRN / transaction ID, may be null
+        public boolean duplicate; // reference already in the index; nothing else was parsed
 
         public ExpenseData() {
             this.amount = 0.0;
@@ -205,8 +210,34 @@ public class OCRProcessor {
                     Log.d(TAG, "========================================");
                 }
 
+                // Keep the transaction reference; the amount parser strips long digit runs
+                String reference = TransactionReferenceIndex.extractReference(extractedText);
+                if (reference != null) {
+                    Log.d(TAG, "🔖 Transaction reference: " + reference);
+                    if (skipKnownReferences && TransactionReferenceIndex.getInstance(context).contains(reference)) {
+                        Log.d(TAG, "⏭️ Reference already captured, skipping parse");
+                        ExpenseData known = new ExpenseData();
+                        known.rawText = enhancedText;
+                        known.reference = reference;
+                        known.duplicate = true;
+                        callback.onSuccess(known);
+                        return;
+                    }
+                }
+
                 // Send text to Groq server for parsing
-                parseWithGroqServer(enhancedText, callback);
+                parseWithGroqServer(enhancedText, reference == null ? callback : new OCRCallback() {
+                    @Override
+                    public void onSuccess(ExpenseData expenseData) {
+                        expenseData.reference = reference;
+                        callback.onSuccess(expenseData);
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        callback.onFailure(error);
+                    }
+                });
             })
             .addOnFailureListener(e -> {
                 Log.e(TAG, "❌ OCR failed: " + e.getMessage());
@@ -753,6 +784,10 @@ public class OCRProcessor {
         return "debit";
     }
 
+    public void setSkipKnownReferences(boolean skip) {
+        this.skipKnownReferences = skip;
+    }
+
     public void close() {
         if (recognizer != null) {
             recognizer.close();
@@ -12,11 +12,12 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
 import android.view.Gravity;
-import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
@@ -25,23 +26,181 @@ import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 import androidx.core.app.NotificationCompat;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
 
 public class OverlayService extends Service {
     private static final String TAG = "OverlayService";
     private static final String CHANNEL_ID = "overlay_service_channel";
     private static final int FOREGROUND_ID = 1002;
 
-    private static boolean isOverlayShowing = false;
+    private static final String[] CATEGORIES = CategoryPredictor.CATEGORIES;
+    // Keep the service (and its warm window) around briefly after the queue drains
+    private static final long IDLE_LINGER_MS = 60 * 1000L;
+    // Reachable because the pipeline's coalescing window is leading-edge: the first
+    // notification for a key is processed at once, not at the end of the window
+    private static final long TIME_TO_VISIBLE_TARGET_MS = 100;
+
+    // enqueued = captures received, processed = windows shown, latency = event to first frame
+    private static final PipelineMetrics METRICS = new PipelineMetrics();
+
+    // Main thread only, like the views it formats for
+    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("MMM d", Locale.getDefault());
+
+    /**
+     * The inflated overlay and its spinner adapter, kept across service instances and
+     * re-bound for each capture. Built from the application context so holding it never
+     * leaks a destroyed service. Main thread only.
+     */
+    private static final class WarmViews {
+        final View root;
+        final TextView merchant;
+        final TextView date;
+        final TextView amount;
+        final Spinner category;
+        final View pager;
+        final TextView pagerLabel;
+        final Button prev;
+        final Button next;
+        final Button dismiss;
+        final Button save;
+        final Button saveAll;
+
+        WarmViews(Context context) {
+            root = View.inflate(context, R.layout.overlay_notification, null);
+            merchant = root.findViewById(R.id.overlay_merchant);
+            date = root.findViewById(R.id.overlay_date);
+            amount = root.findViewById(R.id.overlay_amount);
+            category = root.findViewById(R.id.category_spinner);
+            pager = root.findViewById(R.id.overlay_pager);
+            pagerLabel = root.findViewById(R.id.overlay_pager_label);
+            prev = root.findViewById(R.id.btn_prev);
+            next = root.findViewById(R.id.btn_next);
+            dismiss = root.findViewById(R.id.btn_dismiss);
+            save = root.findViewById(R.id.btn_save);
+            saveAll = root.findViewById(R.id.btn_save_all);
+
+            ArrayAdapter<String> adapter = new ArrayAdapter<>(context, android.R.layout.simple_spinner_item, CATEGORIES);
+            adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+            category.setAdapter(adapter);
+        }
+
+        void attach(OverlayService service) {
+            dismiss.setOnClickListener(v -> service.dismissCurrent());
+            save.setOnClickListener(v -> service.saveCurrent());
+            saveAll.setOnClickListener(v -> service.saveAll());
+            prev.setOnClickListener(v -> service.page(-1));
+            next.setOnClickListener(v -> service.page(1));
+        }
+
+        // Drop the listeners so the cached views do not hold on to the service
+        void detach() {
+            dismiss.setOnClickListener(null);
+            save.setOnClickListener(null);
+            saveAll.setOnClickListener(null);
+            prev.setOnClickListener(null);
+            next.setOnClickListener(null);
+        }
+    }
+
+    private static WarmViews warmViews;
+
+    /**
+     * One transaction waiting in the overlay. Everything is resolved when the event
+     * arrives, so nothing carries over from one event to the next.
+     */
+    private static final class Capture {
+        final String title;
+        final String text;
+        final String packageName;
+        final String source;
+        final double amount;
+        final String type;
+        final long timestamp;
+        final String merchant;       // shown to the user
+        final String parsedMerchant; // keys the category model; null when the text named none
+        final long eventAtNanos; // System.nanoTime() when the event was detected, 0 if unknown
+
+        Capture(String title, String text, String packageName, String source, double amount, String type,
+                long timestamp, String merchant, String parsedMerchant, long eventAtNanos) {
+            this.title = title;
+            this.text = text;
+            this.packageName = packageName;
+            this.source = source;
+            this.amount = amount;
+            this.type = type;
+            this.timestamp = timestamp;
+            this.merchant = merchant;
+            this.parsedMerchant = parsedMerchant;
+            this.eventAtNanos = eventAtNanos;
+        }
+    }
 
     private WindowManager windowManager;
     private View overlayView;
     private Handler mainHandler;
-    private double parsedAmount = 0.0;
-    private long parsedTimestamp = 0;
-    private String parsedType = "debit";
+    private WarmViews views; // null while the programmatic fallback is showing
+    private final Runnable stopWhenIdle = this::stopSelf;
+    private CategoryPredictor predictor;
+    private final CategoryPredictor.Prediction prediction = new CategoryPredictor.Prediction(); // main thread only
+
+    // Queue state, main thread only. One window shows the current capture with a pager.
+    private final ArrayList<Capture> queue = new ArrayList<>();
+    private final HashMap<Capture, String> chosenCategories = new HashMap<>();
+    private int currentIndex = 0;
+
+    /**
+     * Inflate the overlay ahead of the first event, once the main thread is idle.
+     */
+    public static void prewarm(Context context) {
+        Context appContext = context.getApplicationContext();
+        new Handler(Looper.getMainLooper()).post(() -> Looper.myQueue().addIdleHandler(() -> {
+            try {
+                obtainWarmViews(appContext);
+            } catch (Exception e) {
+                Log.w(TAG, "Could not prewarm overlay: " + e.getMessage());
+            }
+            return false;
+        }));
+        // Map the category model off the main thread
+        new Thread(() -> CategoryPredictor.getInstance(appContext).warmUp(), "CategoryModelWarmup").start();
+    }
+
+    private static WarmViews obtainWarmViews(Context context) {
+        if (warmViews == null) {
+            long start = SystemClock.elapsedRealtime();
+            warmViews = new WarmViews(context.getApplicationContext());
+            Log.d(TAG, "🔥 Overlay inflated in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        }
+        return warmViews;
+    }
+
+    /**
+     * Intent for a capture that was already parsed on the caller's thread.
+     *
+     * @param eventAtNanos System.nanoTime() when the event was detected, for time-to-visible
+     */
+    public static Intent createIntent(Context context, String source, String title, String text, String packageName,
+                                      ParsedTransaction parsed, long eventAtNanos) {
+        Intent intent = new Intent(context, OverlayService.class);
+        intent.putExtra("source", source);
+        intent.putExtra("title", title);
+        intent.putExtra("text", text);
+        intent.putExtra("package", packageName);
+        intent.putExtra("amount", parsed.amount);
+        intent.putExtra("type", parsed.type);
+        intent.putExtra("timestamp", parsed.timestamp);
+        intent.putExtra("merchant", parsed.merchant);
+        intent.putExtra("eventAtNanos", eventAtNanos);
+        return intent;
+    }
+
+    public static PipelineMetrics getMetrics() {
+        return METRICS;
+    }
 
     @Override
     public IBinder onBind(Intent intent) {
@@ -52,6 +211,7 @@ public class OverlayService extends Service {
     public void onCreate() {
         super.onCreate();
         mainHandler = new Handler(Looper.getMainLooper());
+        predictor = CategoryPredictor.getInstance(this);
         createNotificationChannel();
         Log.d(TAG, "=== OverlayService CREATED ===");
     }
@@ -80,99 +240,10 @@ public class OverlayService extends Service {
                 .build();
     }
 
-    private double parseAmount(String text) {
-        if (text == null) return 0.0;
-        
-        // Try multiple patterns for amount parsing
-        String[] patterns = {
-            "Rs\\.(\\d+\\.\\d{2})",           // Rs.100.00
-            "Rs\\s+(\\d+\\.\\d{2})",         // Rs 100.00
-            "Rs\\.(\\d+)",                   // Rs.100
-            "Rs\\s+(\\d+)",                  // Rs 100
-            "₹\\s*(\\d+\\.\\d{2})",          // ₹100.00 or ₹ 100.00
-            "₹\\s*(\\d+)",                   // ₹100 or ₹ 100
-            "INR\\s+(\\d+\\.\\d{2})",        // INR 100.00
-            "INR\\s+(\\d+)"                  // INR 100
-        };
-        
-        for (String patternStr : patterns) {
-            Pattern pattern = Pattern.compile(patternStr);
-            Matcher matcher = pattern.matcher(text);
-            if (matcher.find()) {
-                try {
-                    String amountStr = matcher.group(1);
-                    double amount = Double.parseDouble(amountStr);
-                    Log.d(TAG, "Amount parsed successfully: " + amount + " using pattern: " + patternStr);
-                    return amount;
-                } catch (NumberFormatException e) {
-                    Log.w(TAG, "Error parsing amount with pattern " + patternStr + ": " + e.getMessage());
-                }
-            }
-        }
-        
-        Log.w(TAG, "Could not parse amount from text: " + text);
-        return 0.0;
-    }
-
-    private long parseTimestamp(String text) {
-        if (text == null) return 0;
-        Pattern pattern = Pattern.compile("\\((\\d{4}):(\\d{2}):(\\d{2}) (\\d{2}):(\\d{2}):(\\d{2})\\)");
-        Matcher matcher = pattern.matcher(text);
-        if (matcher.find()) {
-            try {
-                int year = Integer.parseInt(matcher.group(1));
-                int month = Integer.parseInt(matcher.group(2)) - 1; // Calendar month is 0-based
-                int day = Integer.parseInt(matcher.group(3));
-                int hour = Integer.parseInt(matcher.group(4));
-                int minute = Integer.parseInt(matcher.group(5));
-                int second = Integer.parseInt(matcher.group(6));
-
-                // Validate year - if it's in the past, use current year
-                java.util.Calendar now = java.util.Calendar.getInstance();
-                int currentYear = now.get(java.util.Calendar.YEAR);
-                if (year < currentYear) {
-                    Log.w(TAG, "Parsed year " + year + " is in the past, using current year " + currentYear);
-                    year = currentYear;
-                }
-
-                java.util.Calendar cal = java.util.Calendar.getInstance();
-                cal.set(year, month, day, hour, minute, second);
-                return cal.getTimeInMillis();
-            } catch (NumberFormatException e) {
-                Log.e(TAG, "Error parsing timestamp: " + e.getMessage());
-            }
-        }
-        return 0;
-    }
-
-    private String parseType(String text) {
-        if (text == null) return "debit";
-        String lowerText = text.toLowerCase();
-        if (lowerText.contains("credited") || lowerText.contains("cr.")) {
-            return "credit";
-        } else if (lowerText.contains("debited") || lowerText.contains("dr.")) {
-            return "debit";
-        }
-        return "debit"; // default
-    }
-
-    private String extractMerchant(String text) {
-        if (text == null) return null;
-        
-        // Try to extract merchant name from common SMS patterns
-        // Pattern: "at MERCHANT_NAME"
-        Pattern pattern = Pattern.compile("at\\s+([A-Za-z0-9\\s&.-]+?)\\s*\\(", Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(text);
-        if (matcher.find()) {
-            return matcher.group(1).trim();
-        }
-        
-        return null;
-    }
-
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.d(TAG, "=== OverlayService onStartCommand called ===");
+        mainHandler.removeCallbacks(stopWhenIdle);
         
         // Start as foreground service for Android 8+
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -185,181 +256,259 @@ public class OverlayService extends Service {
         }
         
         if (intent != null) {
-            String source = intent.getStringExtra("source");
-            
-            if ("screenshot".equals(source) || "shared".equals(source)) {
-                // Handle screenshot-based or shared image expense
-                String title = intent.getStringExtra("title");
-                double amount = intent.getDoubleExtra("amount", 0.0);
-                String type = intent.getStringExtra("type");
-                long timestamp = intent.getLongExtra("timestamp", System.currentTimeMillis());
-                String rawText = intent.getStringExtra("rawText");
-                
-                Log.d(TAG, source + " expense - Title: " + title + ", Amount: " + amount);
-                
-                // Set parsed values
-                parsedAmount = amount;
-                parsedTimestamp = timestamp;
-                parsedType = type != null ? type : "debit";
-                
-                // Run on main thread
-                mainHandler.post(() -> showOverlay(title, rawText, null));
-            } else {
-                // Handle notification-based expense
-                String title = intent.getStringExtra("title");
-                String text = intent.getStringExtra("text");
-                String packageName = intent.getStringExtra("package");
-                
-                Log.d(TAG, "Notification expense - Title: " + title + ", Text: " + text);
-                
-                // Run on main thread
-                mainHandler.post(() -> showOverlay(title, text, packageName));
-            }
+            // onStartCommand runs on the main thread; enqueueing here rather than posting
+            // keeps stopSelf() from racing a capture that has not been queued yet
+            enqueue(resolveCapture(intent));
         } else {
             Log.d(TAG, "Intent is null");
+            if (queue.isEmpty()) stopSelf();
         }
         
         return START_NOT_STICKY;
     }
 
-    private void showOverlay(String title, String text, String packageName) {
-        Log.d(TAG, "=== showOverlay called ===");
+    private Capture resolveCapture(Intent intent) {
+        // Parsed by the sender on its own thread; only unpacked here
+        String source = intent.getStringExtra("source");
+        String title = intent.getStringExtra("title");
+        double amount = intent.getDoubleExtra("amount", 0.0);
+        String merchant = intent.getStringExtra("merchant");
+        String type = intent.getStringExtra("type");
+        Log.d(TAG, source + " expense - Title: " + title + ", Amount: " + amount);
+
+        return new Capture(title, intent.getStringExtra("text"), intent.getStringExtra("package"),
+                source != null ? source : "notification", amount, type != null ? type : "debit",
+                intent.getLongExtra("timestamp", 0), TransactionParser.displayMerchant(merchant, title),
+                TransactionParser.knownMerchant(merchant), intent.getLongExtra("eventAtNanos", 0));
+    }
+
+    private void enqueue(Capture capture) {
+        queue.add(capture);
+        METRICS.enqueued.incrementAndGet();
+        Log.d(TAG, "Queued transaction, " + queue.size() + " pending");
 
-        // Prevent multiple overlays
-        if (isOverlayShowing) {
-            Log.d(TAG, "Overlay already showing, skipping");
+        if (overlayView == null) {
+            currentIndex = 0;
+            if (!showOverlay()) {
+                queue.clear();
+                chosenCategories.clear();
+                stopSelf();
+            }
             return;
         }
+        bindCurrent();
+    }
+
+    /**
+     * Adds the overlay window. It stays up, re-bound for each capture, until the queue is empty.
+     */
+    private boolean showOverlay() {
+        Log.d(TAG, "=== showOverlay called ===");
 
         // Double check overlay permission
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
             if (!Settings.canDrawOverlays(this)) {
                 Log.e(TAG, "!!! Cannot draw overlays - permission denied !!!");
-                stopSelf();
-                return;
+                return false;
             }
         }
 
         try {
-            // Remove existing overlay first
-            if (overlayView != null && windowManager != null) {
-                try {
-                    windowManager.removeView(overlayView);
-                } catch (Exception e) {
-                    Log.w(TAG, "Could not remove existing overlay: " + e.getMessage());
-                }
-                overlayView = null;
-            }
-            
             windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
             if (windowManager == null) {
                 Log.e(TAG, "WindowManager is null!");
-                stopSelf();
-                return;
+                return false;
             }
 
-            int layoutType;
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                layoutType = WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY;
-            } else {
-                layoutType = WindowManager.LayoutParams.TYPE_PHONE;
+            // Re-bind the warm layout, fallback to programmatic view
+            try {
+                views = obtainWarmViews(this);
+                overlayView = views.root;
+                if (overlayView.isAttachedToWindow()) {
+                    // Left attached by a service instance that died without cleaning up
+                    windowManager.removeViewImmediate(overlayView);
+                }
+                views.attach(this);
+                bindCurrent();
+            } catch (Exception e) {
+                Log.w(TAG, "Could not inflate layout, using programmatic view: " + e.getMessage());
+                views = null;
+                Capture capture = queue.get(currentIndex);
+                overlayView = createProgrammaticOverlay(capture.title, capture.text, capture.packageName);
             }
 
-            WindowManager.LayoutParams params = new WindowManager.LayoutParams(
-                    WindowManager.LayoutParams.MATCH_PARENT,
-                    WindowManager.LayoutParams.WRAP_CONTENT,
-                    layoutType,
-                    WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE |
-                    WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL |
-                    WindowManager.LayoutParams.FLAG_SHOW_WHEN_LOCKED |
-                    WindowManager.LayoutParams.FLAG_TURN_SCREEN_ON,
-                    PixelFormat.TRANSLUCENT
-            );
+            windowManager.addView(overlayView, createLayoutParams());
+            METRICS.processed.incrementAndGet();
+            reportTimeToVisible(overlayView, queue.get(currentIndex).eventAtNanos);
+            Log.d(TAG, ">>> OVERLAY VIEW ADDED SUCCESSFULLY <<<");
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "!!! ERROR showing overlay: " + e.getMessage(), e);
+            if (views != null) views.detach();
+            views = null;
+            overlayView = null;
+            return false;
+        }
+    }
 
-            params.gravity = Gravity.TOP | Gravity.CENTER_HORIZONTAL;
-            params.y = 100;
+    private void reportTimeToVisible(View view, long eventAtNanos) {
+        if (eventAtNanos <= 0) return;
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                long micros = (System.nanoTime() - eventAtNanos) / 1000;
+                METRICS.recordLatency(micros);
+                if (micros > TIME_TO_VISIBLE_TARGET_MS * 1000) {
+                    Log.w(TAG, "Overlay visible " + (micros / 1000) + " ms after the event");
+                } else {
+                    Log.d(TAG, "⚡ Overlay visible " + (micros / 1000) + " ms after the event");
+                }
+                return true;
+            }
+        });
+    }
 
-            // Try to use layout file, fallback to programmatic view
+    private WindowManager.LayoutParams createLayoutParams() {
+        int layoutType;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            layoutType = WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY;
+        } else {
+            layoutType = WindowManager.LayoutParams.TYPE_PHONE;
+        }
+
+        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.MATCH_PARENT,
+                WindowManager.LayoutParams.WRAP_CONTENT,
+                layoutType,
+                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE |
+                WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL |
+                WindowManager.LayoutParams.FLAG_SHOW_WHEN_LOCKED |
+                WindowManager.LayoutParams.FLAG_TURN_SCREEN_ON,
+                PixelFormat.TRANSLUCENT
+        );
+        params.gravity = Gravity.TOP | Gravity.CENTER_HORIZONTAL;
+        params.y = 100;
+        return params;
+    }
+
+    private void bindCurrent() {
+        Capture capture = queue.get(currentIndex);
+
+        if (views == null) {
+            // Programmatic fallback has no fields to re-bind; swap it for the current capture
+            View fallback = createProgrammaticOverlay(capture.title, capture.text, capture.packageName);
             try {
-                LayoutInflater inflater = (LayoutInflater) getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-                overlayView = inflater.inflate(R.layout.overlay_notification, null);
-
-                TextView merchantView = overlayView.findViewById(R.id.overlay_merchant);
-                TextView dateView = overlayView.findViewById(R.id.overlay_date);
-                TextView amountView = overlayView.findViewById(R.id.overlay_amount);
-                Spinner categorySpinner = overlayView.findViewById(R.id.category_spinner);
-                Button dismissButton = overlayView.findViewById(R.id.btn_dismiss);
-                Button saveButton = overlayView.findViewById(R.id.btn_save);
-
-                // Parse amount, timestamp, and type (only if not already set from screenshot)
-                if (parsedAmount == 0.0) {
-                    parsedAmount = parseAmount(text);
-                }
-                if (parsedTimestamp == 0) {
-                    parsedTimestamp = parseTimestamp(text);
-                }
-                if (parsedType == null || parsedType.isEmpty()) {
-                    parsedType = parseType(text);
-                }
+                windowManager.removeView(overlayView);
+                windowManager.addView(fallback, createLayoutParams());
+                overlayView = fallback;
+            } catch (Exception e) {
+                Log.w(TAG, "Could not swap fallback overlay: " + e.getMessage());
+            }
+            return;
+        }
 
-                // Extract merchant name
-                String merchant = extractMerchant(text);
-                if (merchant == null || merchant.isEmpty()) {
-                    merchant = title != null && !title.isEmpty() ? title : "Unknown Merchant";
-                }
+        views.merchant.setText(capture.merchant);
+        views.date.setText(DATE_FORMAT.format(new Date(capture.timestamp > 0 ? capture.timestamp : System.currentTimeMillis())));
+        views.amount.setText("₹" + String.format("%.2f", capture.amount));
 
-                // Set merchant and date
-                if (merchantView != null) {
-                    merchantView.setText(merchant);
-                }
-                
-                if (dateView != null) {
-                    java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("MMM d", java.util.Locale.getDefault());
-                    String dateStr = sdf.format(new java.util.Date(parsedTimestamp > 0 ? parsedTimestamp : System.currentTimeMillis()));
-                    dateView.setText(dateStr);
-                }
+        int position = CategoryPredictor.indexOf(categoryFor(capture));
+        views.category.setSelection(Math.max(0, position));
 
-                // Set amount with currency symbol
-                if (amountView != null) {
-                    amountView.setText("₹" + String.format("%.2f", parsedAmount));
-                }
+        int pending = queue.size();
+        views.pager.setVisibility(pending > 1 ? View.VISIBLE : View.GONE);
+        views.pagerLabel.setText((currentIndex + 1) + " of " + pending + " pending");
+        views.prev.setEnabled(currentIndex > 0);
+        views.next.setEnabled(currentIndex < pending - 1);
+        views.saveAll.setVisibility(pending > 1 ? View.VISIBLE : View.GONE);
+        views.saveAll.setText("Save all (" + pending + ")");
+    }
 
-                // Setup category spinner
-                if (categorySpinner != null) {
-                    String[] categories = {"Food & Dining", "Transportation", "Shopping", "Entertainment", "Bills & Utilities", "Healthcare", "Other"};
-                    ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, categories);
-                    adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-                    categorySpinner.setAdapter(adapter);
-                }
+    // Keep the category picked for the current capture while paging
+    private void rememberCategory() {
+        if (views == null || queue.isEmpty()) return;
+        Object selected = views.category.getSelectedItem();
+        if (selected != null) {
+            chosenCategories.put(queue.get(currentIndex), (String) selected);
+        }
+    }
 
-                // Setup buttons
-                if (dismissButton != null) dismissButton.setOnClickListener(v -> removeOverlay());
-                if (saveButton != null) {
-                    saveButton.setOnClickListener(v -> {
-                        if (categorySpinner != null) {
-                            String selectedCategory = (String) categorySpinner.getSelectedItem();
-                            saveExpense(title, text, packageName, selectedCategory);
-                        }
-                        removeOverlay();
-                    });
-                }
-                
-                Log.d(TAG, "Using layout file for overlay");
-            } catch (Exception e) {
-                Log.w(TAG, "Could not inflate layout, using programmatic view: " + e.getMessage());
-                overlayView = createProgrammaticOverlay(title, text, packageName);
+    private void page(int delta) {
+        int target = currentIndex + delta;
+        if (target < 0 || target >= queue.size()) return;
+        rememberCategory();
+        currentIndex = target;
+        bindCurrent();
+    }
+
+    private void saveCurrent() {
+        if (queue.isEmpty()) return;
+        rememberCategory();
+        Capture capture = queue.get(currentIndex);
+        String category = categoryFor(capture);
+        if (saveExpense(capture, category)) {
+            Toast.makeText(this, "Expense saved: Rs." + String.format("%.2f", capture.amount) + " in " + category, Toast.LENGTH_LONG).show();
+            removeCurrent();
+        }
+    }
+
+    private void saveAll() {
+        if (queue.isEmpty()) return;
+        rememberCategory();
+        int saved = 0;
+        double total = 0;
+        // Captures that fail validation stay queued so the user can fix or dismiss them
+        ArrayList<Capture> remaining = new ArrayList<>();
+        for (Capture capture : queue) {
+            if (saveExpense(capture, categoryFor(capture))) {
+                saved++;
+                total += capture.amount;
+                chosenCategories.remove(capture);
+            } else {
+                remaining.add(capture);
             }
+        }
+        queue.clear();
+        queue.addAll(remaining);
+        Log.d(TAG, "✅ Saved " + saved + " queued expense(s), " + remaining.size() + " left");
+        if (saved > 0) {
+            Toast.makeText(this, "Saved " + saved + " expenses: Rs." + String.format("%.2f", total), Toast.LENGTH_LONG).show();
+        }
 
-            windowManager.addView(overlayView, params);
-            Log.d(TAG, ">>> OVERLAY VIEW ADDED SUCCESSFULLY <<<");
-            isOverlayShowing = true;
+        if (queue.isEmpty()) {
+            removeOverlay();
+        } else {
+            currentIndex = 0;
+            bindCurrent();
+        }
+    }
 
-            // No auto-dismiss, user controls
-            
-        } catch (Exception e) {
-            Log.e(TAG, "!!! ERROR showing overlay: " + e.getMessage(), e);
-            stopSelf();
+    private void dismissCurrent() {
+        if (queue.isEmpty()) {
+            removeOverlay();
+            return;
         }
+        removeCurrent();
+    }
+
+    private void removeCurrent() {
+        chosenCategories.remove(queue.remove(currentIndex));
+        if (queue.isEmpty()) {
+            removeOverlay();
+            return;
+        }
+        if (currentIndex >= queue.size()) currentIndex = queue.size() - 1;
+        bindCurrent();
+    }
+
+    // The user's pick while paging, else the model's prediction, else the first category
+    private String categoryFor(Capture capture) {
+        String chosen = chosenCategories.get(capture);
+        if (chosen != null) return chosen;
+        if (predictor.predict(capture.parsedMerchant, capture.text, prediction)) {
+            return CATEGORIES[prediction.category];
+        }
+        return CATEGORIES[0];
     }
 
     private View createProgrammaticOverlay(String title, String text, String packageName) {
@@ -393,64 +542,82 @@ public class OverlayService extends Service {
         closeBtn.setTextColor(Color.BLUE);
         closeBtn.setTextSize(12);
         closeBtn.setPadding(0, 16, 0, 0);
-        closeBtn.setOnClickListener(v -> removeOverlay());
+        closeBtn.setOnClickListener(v -> dismissCurrent());
         layout.addView(closeBtn);
 
-        layout.setOnClickListener(v -> removeOverlay());
+        layout.setOnClickListener(v -> dismissCurrent());
 
         return layout;
     }
 
     private void removeOverlay() {
         Log.d(TAG, "removeOverlay called");
+        detachOverlay();
+        queue.clear();
+        chosenCategories.clear();
+
+        // Stay started a little longer so a follow-up capture skips service creation
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            stopForeground(STOP_FOREGROUND_REMOVE);
+        } else {
+            stopForeground(true);
+        }
+        mainHandler.removeCallbacks(stopWhenIdle);
+        mainHandler.postDelayed(stopWhenIdle, IDLE_LINGER_MS);
+    }
+
+    private void detachOverlay() {
         try {
             if (overlayView != null && windowManager != null) {
-                windowManager.removeView(overlayView);
-                overlayView = null;
+                // Immediate, so the warm view can be re-added right away
+                windowManager.removeViewImmediate(overlayView);
                 Log.d(TAG, "Overlay removed successfully");
             }
         } catch (Exception e) {
             Log.e(TAG, "Error removing overlay: " + e.getMessage());
         }
-        isOverlayShowing = false;
-        stopSelf();
+        if (views != null) views.detach();
+        views = null;
+        overlayView = null;
     }
 
-    private void saveExpense(String title, String text, String packageName, String category) {
-        Log.d(TAG, "saveExpense called - Category: " + category + ", Amount: " + parsedAmount);
+    /**
+     * @return false if the capture is not valid and should stay queued
+     */
+    private boolean saveExpense(Capture capture, String category) {
+        Log.d(TAG, "saveExpense called - Category: " + category + ", Amount: " + capture.amount);
         
         // Validate data before saving
-        if (parsedAmount <= 0) {
-            Log.e(TAG, "Invalid amount: " + parsedAmount);
+        if (capture.amount <= 0) {
+            Log.e(TAG, "Invalid amount: " + capture.amount);
             Toast.makeText(this, "Error: Invalid amount", Toast.LENGTH_SHORT).show();
-            return;
+            return false;
         }
         
         if (category == null || category.trim().isEmpty()) {
             Log.e(TAG, "No category selected");
             Toast.makeText(this, "Error: Please select a category", Toast.LENGTH_SHORT).show();
-            return;
+            return false;
         }
         
         try {
-            Intent intent = new Intent("com.moneymanager.app.EXPENSE_SAVED");
-            intent.putExtra("title", title);
-            intent.putExtra("text", text);
-            intent.putExtra("package", packageName);
-            intent.putExtra("category", category);
-            intent.putExtra("amount", parsedAmount);
-            intent.putExtra("type", parsedType);
-            intent.putExtra("transactionTimestamp", parsedTimestamp > 0 ? parsedTimestamp : System.currentTimeMillis());
-            intent.putExtra("notificationTimestamp", System.currentTimeMillis());
-
-            LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
-            Log.d(TAG, "Expense save broadcast sent successfully");
-            Log.d(TAG, "Broadcast data: amount=" + parsedAmount + ", category=" + category + ", type=" + parsedType);
-
-            Toast.makeText(this, "Expense saved: Rs." + String.format("%.2f", parsedAmount) + " in " + category, Toast.LENGTH_LONG).show();
+            long transactionTimestamp = capture.timestamp > 0 ? capture.timestamp : System.currentTimeMillis();
+
+            // Durable first: the row stays pending until JS has saved it to the server
+            String clientId = TransactionStore.getInstance(this).save(capture.amount, capture.type, category,
+                    capture.title, capture.text, capture.packageName, capture.source, transactionTimestamp);
+            ExpenseSyncJobService.schedule(this);
+            predictor.record(capture.parsedMerchant, capture.text, CategoryPredictor.indexOf(category));
+
+            ExpenseSavedEvent event = new ExpenseSavedEvent(clientId, capture.packageName, capture.title, capture.text,
+                    category, capture.amount, capture.type, transactionTimestamp, System.currentTimeMillis());
+            int delivered = AppEventBus.get().post(event);
+            Log.d(TAG, "Expense saved event posted to " + delivered + " subscriber(s): " + event);
+            return true;
         } catch (Exception e) {
-            Log.e(TAG, "Error broadcasting expense save: " + e.getMessage(), e);
+            Log.e(TAG, "Error publishing expense save: " + e.getMessage(), e);
             Toast.makeText(this, "Error saving expense: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            return false;
         }
     }
 
@@ -474,13 +641,10 @@ public class OverlayService extends Service {
     public void onDestroy() {
         super.onDestroy();
         Log.d(TAG, "OverlayService destroyed");
-        if (overlayView != null && windowManager != null) {
-            try {
-                windowManager.removeView(overlayView);
-            } catch (Exception e) {
-                // Ignore
-            }
+        if (!queue.isEmpty()) {
+            Log.w(TAG, queue.size() + " queued transaction(s) discarded with the service");
         }
-        isOverlayShowing = false;
+        mainHandler.removeCallbacks(stopWhenIdle);
+        detachOverlay();
     }
 }
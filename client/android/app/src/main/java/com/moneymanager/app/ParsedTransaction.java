@@ -0,0 +1,30 @@
+package com.moneymanager.app;
+
+/**
+ * Immutable result of parsing a transaction message.
+ * Produced off the UI thread and handed to whoever displays or stores it.
+ */
+public final class ParsedTransaction {
+    public final double amount;
+    public final String type; // "debit" or "credit"
+    public final String merchant; // null when the template has no merchant field
+    public final long timestamp; // 0 when the message carries no timestamp
+    public final String reference; // UPI RRN / transaction ID, null when absent
+    public final String templateId;
+
+    public ParsedTransaction(double amount, String type, String merchant, long timestamp,
+                             String reference, String templateId) {
+        this.amount = amount;
+        this.type = type != null ? type : "debit";
+        this.merchant = merchant;
+        this.timestamp = timestamp;
+        this.reference = reference;
+        this.templateId = templateId;
+    }
+
+    @Override
+    public String toString() {
+        return "ParsedTransaction{" + templateId + ", amount=" + amount + ", type=" + type +
+                ", merchant=" + merchant + ", ref=" + reference + "}";
+    }
+}
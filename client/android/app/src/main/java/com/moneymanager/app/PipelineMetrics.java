@@ -0,0 +1,94 @@
+package com.moneymanager.app;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency samples for {@link NotificationPipeline}, also used by
+ * {@link OverlayService} for its event-to-frame latency.
+ * All updates are lock-free; percentiles are only computed when a snapshot is read.
+ */
+public final class PipelineMetrics {
+    private static final int LATENCY_SAMPLES = 512;
+
+    final AtomicLong enqueued = new AtomicLong();
+    final AtomicLong coalesced = new AtomicLong();
+    final AtomicLong rateLimited = new AtomicLong();
+    final AtomicLong dropped = new AtomicLong();
+    final AtomicLong processed = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+    final AtomicLong maxDepth = new AtomicLong();
+
+    private final AtomicLongArray latencyMicros = new AtomicLongArray(LATENCY_SAMPLES);
+    private final AtomicLong latencyCursor = new AtomicLong();
+
+    void recordDepth(long depth) {
+        long max;
+        while (depth > (max = maxDepth.get())) {
+            if (maxDepth.compareAndSet(max, depth)) break;
+        }
+    }
+
+    void recordLatency(long micros) {
+        int slot = (int) (latencyCursor.getAndIncrement() % LATENCY_SAMPLES);
+        latencyMicros.set(slot, micros);
+    }
+
+    public long getEnqueued() {
+        return enqueued.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Events that exceeded their package's rate and were folded into one pending slot.
+     */
+    public long getRateLimited() {
+        return rateLimited.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    /**
+     * Latency percentile (0-100) over the most recent samples, in microseconds.
+     */
+    public long latencyPercentile(int percentile) {
+        int count = (int) Math.min(latencyCursor.get(), LATENCY_SAMPLES);
+        if (count == 0) return 0;
+        long[] samples = new long[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = latencyMicros.get(i);
+        }
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return samples[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    public void reset() {
+        enqueued.set(0);
+        coalesced.set(0);
+        rateLimited.set(0);
+        dropped.set(0);
+        processed.set(0);
+        failed.set(0);
+        maxDepth.set(0);
+        latencyCursor.set(0);
+    }
+}
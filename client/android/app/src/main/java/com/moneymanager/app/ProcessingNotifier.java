@@ -0,0 +1,259 @@
+package com.moneymanager.app;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.service.notification.StatusBarNotification;
+import android.util.Log;
+import androidx.core.app.NotificationCompat;
+
+/**
+ * The single "expense processing" status notification shared by the notification
+ * listener and the screenshot listener.
+ *
+ * NotificationManager drops notify() calls above a few per second per package, so
+ * every update goes through one handler thread and at most one notify() is made per
+ * {@link #MIN_UPDATE_INTERVAL_MS}. Updates arriving in between replace each other and
+ * only the newest state is posted. The PendingIntent and builder are created once.
+ *
+ * It alerts (a plain high-priority heads-up, no full-screen intent) only when it
+ * first appears. Whether it is still showing is read back from NotificationManager,
+ * since it can also disappear through its timeout or the user swiping it away.
+ */
+public final class ProcessingNotifier {
+    private static final String TAG = "ProcessingNotifier";
+    static final String CHANNEL_ID = "expense_processing_channel";
+    static final int NOTIFICATION_ID = 2001;
+    static final long MIN_UPDATE_INTERVAL_MS = 250;
+    private static final long ERROR_DISMISS_MS = 3000;
+
+    /** No progress bar. */
+    public static final int PROGRESS_NONE = -1;
+    /** Indeterminate progress bar. */
+    public static final int PROGRESS_INDETERMINATE = 0;
+
+    private static final int KIND_PROGRESS = 0;
+    private static final int KIND_DONE = 1;
+    private static final int KIND_ERROR = 2;
+
+    private static volatile ProcessingNotifier instance;
+
+    private final Context context;
+    private final NotificationManager notificationManager;
+    private final Handler handler;
+    private final PendingIntent contentIntent;
+    private final NotificationCompat.Builder builder;
+
+    // Only touched on the handler thread
+    private State pending;
+    private boolean flushScheduled = false;
+    private boolean visible = false;
+    private long lastNotifyAt = 0;
+    private int coalesced = 0;
+
+    private final Runnable flushTask = this::flush;
+    private final Runnable dismissTask = this::dismissNow;
+
+    private static final class State {
+        final int kind;
+        final int icon;
+        final String title;
+        final String message;
+        final int progress;
+
+        State(int kind, int icon, String title, String message, int progress) {
+            this.kind = kind;
+            this.icon = icon;
+            this.title = title;
+            this.message = message;
+            this.progress = progress;
+        }
+    }
+
+    public static ProcessingNotifier getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ProcessingNotifier.class) {
+                if (instance == null) {
+                    instance = new ProcessingNotifier(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ProcessingNotifier(Context context) {
+        this.context = context;
+        this.notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        createChannel();
+
+        HandlerThread thread = new HandlerThread("ProcessingNotifier");
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            flags |= PendingIntent.FLAG_IMMUTABLE;
+        }
+        this.contentIntent = PendingIntent.getActivity(context, 0, intent, flags);
+
+        this.builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                .setShowWhen(true)
+                .setDefaults(0); // No sound, vibration, or lights
+    }
+
+    private void createChannel() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && notificationManager != null) {
+            NotificationChannel channel = new NotificationChannel(
+                    CHANNEL_ID,
+                    "Expense Processing",
+                    NotificationManager.IMPORTANCE_HIGH
+            );
+            channel.setDescription("Shows real-time status when processing expenses");
+            channel.setSound(null, null); // Silent but visible
+            channel.setShowBadge(true);
+            channel.enableLights(false);
+            channel.enableVibration(false);
+            notificationManager.createNotificationChannel(channel);
+        }
+    }
+
+    /**
+     * Ongoing "working on it" state.
+     *
+     * @param progress 1-99 for a determinate bar, {@link #PROGRESS_INDETERMINATE} or {@link #PROGRESS_NONE}
+     */
+    public void showProgress(int icon, String title, String message, int progress) {
+        submit(new State(KIND_PROGRESS, icon, title, message, progress));
+    }
+
+    /**
+     * Final state; dismissible and times out on its own.
+     */
+    public void showDone(String title, String message, int progress) {
+        submit(new State(KIND_DONE, android.R.drawable.stat_notify_sync, title, message, progress));
+    }
+
+    /**
+     * Error state, dismissed after a few seconds.
+     */
+    public void showError(String title, String message) {
+        submit(new State(KIND_ERROR, android.R.drawable.stat_notify_error, title, message, PROGRESS_NONE));
+        dismissAfter(ERROR_DISMISS_MS);
+    }
+
+    /**
+     * Cancel the notification after a delay, unless a newer state arrives first.
+     */
+    public void dismissAfter(long delayMs) {
+        handler.post(() -> {
+            handler.removeCallbacks(dismissTask);
+            handler.postDelayed(dismissTask, delayMs);
+        });
+    }
+
+    public void dismiss() {
+        handler.post(dismissTask);
+    }
+
+    private void submit(State state) {
+        handler.post(() -> {
+            // A newer state from any source outlives an earlier source's scheduled dismiss
+            handler.removeCallbacks(dismissTask);
+            if (pending != null) coalesced++;
+            pending = state;
+            if (flushScheduled) return;
+
+            long wait = lastNotifyAt + MIN_UPDATE_INTERVAL_MS - SystemClock.uptimeMillis();
+            if (wait <= 0) {
+                flush();
+            } else {
+                flushScheduled = true;
+                handler.postDelayed(flushTask, wait);
+            }
+        });
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        State state = pending;
+        pending = null;
+        if (state == null || notificationManager == null) return;
+
+        builder.setSmallIcon(state.icon)
+                .setContentTitle(state.title)
+                .setContentText(state.message)
+                .setWhen(System.currentTimeMillis());
+
+        if (state.kind == KIND_ERROR) {
+            builder.setPriority(NotificationCompat.PRIORITY_HIGH)
+                    .setCategory(NotificationCompat.CATEGORY_ERROR)
+                    .setContentIntent(null);
+        } else {
+            builder.setPriority(NotificationCompat.PRIORITY_HIGH)
+                    .setCategory(NotificationCompat.CATEGORY_STATUS)
+                    .setContentIntent(contentIntent);
+        }
+
+        boolean ongoing = state.kind == KIND_PROGRESS;
+        builder.setOngoing(ongoing)
+                .setAutoCancel(!ongoing)
+                .setTimeoutAfter(ongoing ? 0 : ERROR_DISMISS_MS);
+
+        // Heads-up only when the notification first appears, not on every update. It may
+        // have timed out or been swiped away since the last post.
+        if (visible && !isShowing()) {
+            visible = false;
+        }
+        builder.setOnlyAlertOnce(visible);
+
+        if (state.progress == PROGRESS_INDETERMINATE && ongoing) {
+            builder.setProgress(100, 0, true);
+        } else if (state.progress > 0 && state.progress <= 100) {
+            builder.setProgress(100, state.progress, false);
+        } else {
+            builder.setProgress(0, 0, false);
+        }
+
+        try {
+            notificationManager.notify(NOTIFICATION_ID, builder.build());
+            visible = true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error posting processing notification: " + e.getMessage());
+        }
+        lastNotifyAt = SystemClock.uptimeMillis();
+    }
+
+    private boolean isShowing() {
+        try {
+            for (StatusBarNotification active : notificationManager.getActiveNotifications()) {
+                if (active.getId() == NOTIFICATION_ID) return true;
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read active notifications: " + e.getMessage());
+        }
+        return false;
+    }
+
+    private void dismissNow() {
+        handler.removeCallbacks(flushTask);
+        flushScheduled = false;
+        pending = null;
+        if (notificationManager != null) {
+            notificationManager.cancel(NOTIFICATION_ID);
+        }
+        if (visible && coalesced > 0) {
+            Log.d(TAG, "📊 Coalesced " + coalesced + " status updates");
+        }
+        visible = false;
+        coalesced = 0;
+    }
+}
@@ -3,9 +3,9 @@ package com.moneymanager.app;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.app.Service;
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -13,7 +13,9 @@ import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
 import android.provider.MediaStore;
@@ -21,20 +23,55 @@ import android.provider.Settings;
 import android.util.Log;
 import android.widget.Toast;
 import androidx.core.app.NotificationCompat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class ScreenshotListenerService extends Service {
     private static final String TAG = "ScreenshotListener";
     private static final String CHANNEL_ID = "screenshot_listener_channel";
-    private static final String PROCESSING_CHANNEL_ID = "expense_processing_channel";
     private static final int FOREGROUND_ID = 1003;
-    private static final int PROCESSING_NOTIFICATION_ID = 2001;
 
     private ContentObserver screenshotObserver;
     private OCRProcessor ocrProcessor;
     private Handler mainHandler;
-    private long lastProcessedTime = 0;
-    private static final long MIN_PROCESS_INTERVAL = 2000; // 2 seconds between processing
-    private NotificationManager notificationManager;
+
+    // Screenshots are OCR'd from a persistent queue, a bounded number at a time
+    private static final int MAX_CONCURRENT_OCR = 2;
+    private static final long OCR_TIMEOUT_MS = 90 * 1000L; // frees the slot if a callback never comes
+    private static final long LIVE_WINDOW_SECONDS = 60;
+
+    // MediaStore fires several onChange calls per image (insert, pending -> published,
+    // thumbnails); they are coalesced into one incremental scan once the burst settles.
+    private static final long CHANGE_DEBOUNCE_MS = 300;
+    private static final long[] PENDING_RETRY_MS = {250, 500, 1000, 2000, 4000};
+    // A row pending for longer than this was abandoned by its writer and is skipped
+    private static final long ABANDONED_PENDING_SECONDS = 60;
+
+    // High-water mark of the last scanned row: the generation on Android 11+, else
+    // (DATE_ADDED, _ID). The MediaStore version invalidates generations on a rebuild.
+    private static final String KEY_SCAN_VERSION = "screenshotScanVersion";
+    private static final String KEY_SCAN_GENERATION = "screenshotScanGeneration";
+    private static final String KEY_SCAN_DATE_ADDED = "screenshotScanDateAdded";
+    private static final String KEY_SCAN_LAST_ID = "screenshotScanLastId";
+
+    // Pushed into the selection so the cursor only ever holds screenshots
+    private static final String[] SCREENSHOT_FOLDER_PATTERNS = {"%screenshot%", "%screen_shot%", "%screencap%"};
+    private static final String[] SCREENSHOT_NAME_PATTERNS = {"%screenshot%", "%screen_shot%", "screen-%"};
+
+    // Observer callbacks, debouncing and MediaStore queries all run on this looper
+    private HandlerThread observerThread;
+    private Handler observerHandler;
+    private final Runnable scanTask = this::scanForNewScreenshots;
+    private int pendingRetries;
+    private long markGeneration;
+    private long markDateAdded;
+    private long markId;
+    private ScreenshotWorkQueue workQueue;
+    // In-flight URI -> its timeout; touched only on the observer looper
+    private final Map<String, Runnable> inFlight = new HashMap<>();
+    private ProcessingNotifier processingNotifier;
 
     @Override
     public IBinder onBind(Intent intent) {
@@ -48,11 +85,15 @@ public class ScreenshotListenerService extends Service {
         Log.d(TAG, "Service will monitor screenshots when enabled in settings");
         
         mainHandler = new Handler(Looper.getMainLooper());
+        observerThread = new HandlerThread("ScreenshotObserver");
+        observerThread.start();
+        observerHandler = new Handler(observerThread.getLooper());
         ocrProcessor = new OCRProcessor(this);
-        notificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        ocrProcessor.setSkipKnownReferences(true);
+        processingNotifier = ProcessingNotifier.getInstance(this);
+        workQueue = ScreenshotWorkQueue.getInstance(this);
         
         createNotificationChannel();
-        createProcessingNotificationChannel();
         startForeground(FOREGROUND_ID, createForegroundNotification());
         
         registerScreenshotObserver();
@@ -60,24 +101,6 @@ public class ScreenshotListenerService extends Service {
         Log.d(TAG, "✅ Screenshot listener ready and monitoring MediaStore");
     }
     
-    private void createProcessingNotificationChannel() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            NotificationChannel channel = new NotificationChannel(
-                    PROCESSING_CHANNEL_ID,
-                    "Expense Processing",
-                    NotificationManager.IMPORTANCE_HIGH
-            );
-            channel.setDescription("Shows real-time status when processing expenses");
-            channel.setSound(null, null); // Silent but visible
-            channel.setShowBadge(true);
-            channel.enableLights(false);
-            channel.enableVibration(false);
-            if (notificationManager != null) {
-                notificationManager.createNotificationChannel(channel);
-            }
-        }
-    }
-
     private void createNotificationChannel() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationChannel channel = new NotificationChannel(
@@ -104,20 +127,13 @@ public class ScreenshotListenerService extends Service {
 
     private void registerScreenshotObserver() {
         try {
-            screenshotObserver = new ContentObserver(mainHandler) {
+            screenshotObserver = new ContentObserver(observerHandler) {
                 @Override
                 public void onChange(boolean selfChange, Uri uri) {
                     super.onChange(selfChange, uri);
                     Log.d(TAG, "MediaStore change detected: " + uri);
-                    
-                    // Throttle processing to avoid multiple triggers
-                    long currentTime = System.currentTimeMillis();
-                    if (currentTime - lastProcessedTime < MIN_PROCESS_INTERVAL) {
-                        Log.d(TAG, "Skipping - too soon after last process");
-                        return;
-                    }
-                    
-                    mainHandler.postDelayed(() -> checkForNewScreenshot(uri), 500);
+                    pendingRetries = 0;
+                    scheduleScan(CHANGE_DEBOUNCE_MS);
                 }
             };
 
@@ -127,6 +143,11 @@ public class ScreenshotListenerService extends Service {
                     true,
                     screenshotObserver
             );
+            observerHandler.post(() -> {
+                workQueue.recover();
+                loadScanMark();
+                drainQueue();
+            });
             
             Log.d(TAG, "Screenshot observer registered successfully");
         } catch (Exception e) {
@@ -134,40 +155,306 @@ public class ScreenshotListenerService extends Service {
         }
     }
 
-    private void checkForNewScreenshot(Uri uri) {
+    // A later change replaces the pending scan instead of adding another
+    private void scheduleScan(long delayMs) {
+        observerHandler.removeCallbacks(scanTask);
+        observerHandler.postDelayed(scanTask, delayMs);
+    }
+
+    private boolean hasImagePermission() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            if (checkSelfPermission(android.Manifest.permission.READ_MEDIA_IMAGES) 
+                    != android.content.pm.PackageManager.PERMISSION_GRANTED) {
+                Log.w(TAG, "No READ_MEDIA_IMAGES permission");
+                return false;
+            }
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            if (checkSelfPermission(android.Manifest.permission.READ_EXTERNAL_STORAGE) 
+                    != android.content.pm.PackageManager.PERMISSION_GRANTED) {
+                Log.w(TAG, "No READ_EXTERNAL_STORAGE permission");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean useGenerations() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R;
+    }
+
+    // Generations are per volume; screenshots are always written to the primary one
+    private static Uri imagesCollection() {
+        return useGenerations()
+                ? MediaStore.Images.Media.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY)
+                : MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
+    }
+
+    private String mediaStoreVersion() {
+        if (useGenerations()) {
+            return MediaStore.getVersion(this, MediaStore.VOLUME_EXTERNAL_PRIMARY);
+        }
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ? MediaStore.getVersion(this) : "legacy";
+    }
+
+    /**
+     * Restore the persisted mark. The first run, or a rebuilt MediaStore, starts from the
+     * newest row instead of treating the whole gallery as new.
+     */
+    private void loadScanMark() {
+        SharedPreferences prefs = getSharedPreferences(SelectedApps.PREFS_NAME, MODE_PRIVATE);
+        if (!mediaStoreVersion().equals(prefs.getString(KEY_SCAN_VERSION, null))) {
+            markToLatest();
+            return;
+        }
+        markGeneration = prefs.getLong(KEY_SCAN_GENERATION, 0);
+        markDateAdded = prefs.getLong(KEY_SCAN_DATE_ADDED, 0);
+        markId = prefs.getLong(KEY_SCAN_LAST_ID, 0);
+        Log.d(TAG, "Resuming screenshot scan after generation " + markGeneration +
+                " / date " + markDateAdded + ", id " + markId);
+        scheduleScan(0); // catch up on screenshots taken while the service was down
+    }
+
+    private void markToLatest() {
+        if (useGenerations()) {
+            markGeneration = MediaStore.getGeneration(this, MediaStore.VOLUME_EXTERNAL_PRIMARY);
+        } else if (hasImagePermission()) {
+            String[] projection = {MediaStore.Images.Media._ID, MediaStore.Images.Media.DATE_ADDED};
+            String sortOrder = MediaStore.Images.Media.DATE_ADDED + " DESC, " + MediaStore.Images.Media._ID + " DESC LIMIT 1";
+            try (Cursor cursor = getContentResolver().query(imagesCollection(), projection, null, null, sortOrder)) {
+                if (cursor != null && cursor.moveToFirst()) {
+                    markId = cursor.getLong(0);
+                    markDateAdded = cursor.getLong(1);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading latest image: " + e.getMessage());
+                markDateAdded = System.currentTimeMillis() / 1000;
+                markId = 0;
+            }
+        } else {
+            markDateAdded = System.currentTimeMillis() / 1000;
+            markId = 0;
+        }
+        saveScanMark();
+    }
+
+    private void saveScanMark() {
+        getSharedPreferences(SelectedApps.PREFS_NAME, MODE_PRIVATE).edit()
+                .putString(KEY_SCAN_VERSION, mediaStoreVersion())
+                .putLong(KEY_SCAN_GENERATION, markGeneration)
+                .putLong(KEY_SCAN_DATE_ADDED, markDateAdded)
+                .putLong(KEY_SCAN_LAST_ID, markId)
+                .apply();
+    }
+
+    /**
+     * Read every screenshot row past the mark, oldest first, and advance the mark over it.
+     * The scan stops at a row that is still being written, so its position is not skipped;
+     * the publish notification (or a backoff retry) picks it up from there.
+     */
+    private void scanForNewScreenshots() {
         try {
+            if (!hasImagePermission()) {
+                return;
+            }
             // Check if screenshot monitoring is enabled in settings
             if (!isScreenshotMonitoringEnabled()) {
                 Log.d(TAG, "Screenshot monitoring is disabled in settings");
+                markToLatest(); // nothing taken meanwhile is processed once re-enabled
                 return;
             }
-            
-            // Check if we have permission
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-                if (checkSelfPermission(android.Manifest.permission.READ_MEDIA_IMAGES) 
-                        != android.content.pm.PackageManager.PERMISSION_GRANTED) {
-                    Log.w(TAG, "No READ_MEDIA_IMAGES permission");
-                    return;
-                }
-            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                if (checkSelfPermission(android.Manifest.permission.READ_EXTERNAL_STORAGE) 
-                        != android.content.pm.PackageManager.PERMISSION_GRANTED) {
-                    Log.w(TAG, "No READ_EXTERNAL_STORAGE permission");
-                    return;
-                }
+            if (!mediaStoreVersion().equals(getSharedPreferences(SelectedApps.PREFS_NAME, MODE_PRIVATE)
+                    .getString(KEY_SCAN_VERSION, null))) {
+                Log.d(TAG, "MediaStore was rebuilt, restarting scan from the newest image");
+                markToLatest();
+                return;
             }
 
-            Uri latestImageUri = getLatestScreenshot();
-            
-            if (latestImageUri != null) {
-                Log.d(TAG, "New screenshot detected: " + latestImageUri);
-                lastProcessedTime = System.currentTimeMillis();
-                processScreenshot(latestImageUri);
+            List<ScreenshotWorkQueue.Item> fresh = new ArrayList<>();
+            boolean waiting = false;
+            long startGeneration = markGeneration;
+            long startDateAdded = markDateAdded;
+            long startId = markId;
+            Uri collection = imagesCollection();
+            try (Cursor cursor = queryAfterMark(collection)) {
+                if (cursor == null) return;
+                long now = System.currentTimeMillis() / 1000;
+                int pendingColumn = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ? cursor.getColumnCount() - 1 : -1;
+                while (cursor.moveToNext()) {
+                    long id = cursor.getLong(0);
+                    long dateAdded = cursor.getLong(1);
+                    boolean pending = pendingColumn >= 0 && cursor.getInt(pendingColumn) != 0;
+                    if (pending && dateAdded > now - ABANDONED_PENDING_SECONDS) {
+                        waiting = true;
+                        break;
+                    }
+                    if (!pending) {
+                        fresh.add(new ScreenshotWorkQueue.Item(ContentUris.withAppendedId(collection, id).toString(),
+                                dateAdded, dateAdded >= now - LIVE_WINDOW_SECONDS
+                                        ? ScreenshotWorkQueue.PRIORITY_LIVE : ScreenshotWorkQueue.PRIORITY_BACKLOG));
+                    }
+                    if (useGenerations()) {
+                        markGeneration = cursor.getLong(2);
+                    } else {
+                        markDateAdded = dateAdded;
+                        markId = id;
+                    }
+                }
+            }
+            // Queued before the mark moves past them, so a crash in between re-scans instead of losing them
+            workQueue.enqueueAll(fresh);
+            if (markGeneration != startGeneration || markDateAdded != startDateAdded || markId != startId) {
+                saveScanMark();
+            }
+            if (waiting) {
+                if (pendingRetries < PENDING_RETRY_MS.length) {
+                    Log.d(TAG, "Screenshot still being written, scanning again shortly");
+                    scheduleScan(PENDING_RETRY_MS[pendingRetries++]);
+                }
             }
+            drainQueue();
         } catch (Exception e) {
             Log.e(TAG, "Error checking for screenshot: " + e.getMessage());
         }
     }
+
+    /**
+     * Start queued screenshots until {@link #MAX_CONCURRENT_OCR} are in flight.
+     */
+    private void drainQueue() {
+        while (inFlight.size() < MAX_CONCURRENT_OCR) {
+            ScreenshotWorkQueue.Item item;
+            try {
+                item = workQueue.claimNext();
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading screenshot queue: " + e.getMessage());
+                return;
+            }
+            if (item == null) return;
+
+            String uri = item.uri;
+            Runnable timeout = () -> {
+                Log.w(TAG, "OCR did not finish in time: " + uri);
+                finishScreenshot(uri, false);
+            };
+            inFlight.put(uri, timeout);
+            observerHandler.postDelayed(timeout, OCR_TIMEOUT_MS);
+            Log.d(TAG, "New screenshot detected: " + uri + " (" + workQueue.count() + " in queue)");
+            showQueueProgress();
+            try {
+                processScreenshot(Uri.parse(uri), () -> observerHandler.post(() -> finishScreenshot(uri, true)));
+            } catch (Exception e) {
+                Log.e(TAG, "Error processing screenshot: " + e.getMessage());
+                finishScreenshot(uri, false);
+            }
+        }
+    }
+
+    /**
+     * Idempotent: the OCR callback and the timeout can both arrive, in either order.
+     *
+     * @param processed false when OCR timed out or never started; the row then goes back
+     *                  on the queue until it has been tried {@link ScreenshotWorkQueue#MAX_ATTEMPTS} times
+     */
+    private void finishScreenshot(String uri, boolean processed) {
+        Runnable timeout = inFlight.remove(uri);
+        if (timeout == null) {
+            // A callback arriving after its timeout still did the work
+            if (processed) workQueue.complete(uri);
+            return;
+        }
+        observerHandler.removeCallbacks(timeout);
+        if (processed) {
+            workQueue.complete(uri);
+        } else if (!workQueue.retry(uri)) {
+            Log.w(TAG, "Giving up on screenshot after " + ScreenshotWorkQueue.MAX_ATTEMPTS + " attempts: " + uri);
+            showStatus(() -> processingNotifier.showError("❌ Processing failed",
+                    "Could not extract expense from screenshot"));
+        }
+        drainQueue();
+    }
+
+    /**
+     * There is one processing notification for all screenshots. While more than one is
+     * in flight or queued it shows how many are left, rather than each job's own text.
+     */
+    private void showQueueProgress() {
+        long left = workQueue.count();
+        if (left > 1) {
+            processingNotifier.showProgress(android.R.drawable.ic_menu_camera, "📸 Processing screenshots",
+                    left + " left • extracting text...", ProcessingNotifier.PROGRESS_INDETERMINATE);
+        } else {
+            processingNotifier.showProgress(android.R.drawable.ic_menu_camera, "📸 Detected screenshot",
+                    "Extracting text...", ProcessingNotifier.PROGRESS_INDETERMINATE);
+        }
+    }
+
+    /**
+     * Post a single screenshot's outcome only when it is the last one being worked on;
+     * otherwise refresh the count. The overlay or auto-commit notification still reports
+     * each expense on its own. Runs before the job's finishScreenshot, which is posted later.
+     */
+    private void showStatus(Runnable update) {
+        observerHandler.post(() -> {
+            if (inFlight.size() <= 1 && workQueue.count() <= 1) {
+                update.run();
+            } else {
+                showQueueProgress();
+            }
+        });
+    }
+
+    /**
+     * Screenshot rows past the mark, oldest first: _ID, DATE_ADDED, then GENERATION_ADDED
+     * (Android 11+) and IS_PENDING (Android 10+, always last). Pending rows are included
+     * so the scan can tell "not written yet" from "not there".
+     */
+    private Cursor queryAfterMark(Uri collection) {
+        String folderColumn = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                ? MediaStore.MediaColumns.RELATIVE_PATH
+                : MediaStore.Images.Media.BUCKET_DISPLAY_NAME;
+        StringBuilder filter = new StringBuilder("(");
+        List<String> args = new ArrayList<>();
+        for (String pattern : SCREENSHOT_FOLDER_PATTERNS) {
+            filter.append(args.isEmpty() ? "" : " OR ").append(folderColumn).append(" LIKE ?");
+            args.add(pattern);
+        }
+        for (String pattern : SCREENSHOT_NAME_PATTERNS) {
+            filter.append(" OR ").append(MediaStore.Images.Media.DISPLAY_NAME).append(" LIKE ?");
+            args.add(pattern);
+        }
+        filter.append(')');
+
+        if (useGenerations()) {
+            String[] projection = {
+                MediaStore.Images.Media._ID,
+                MediaStore.Images.Media.DATE_ADDED,
+                MediaStore.MediaColumns.GENERATION_ADDED,
+                MediaStore.MediaColumns.IS_PENDING
+            };
+            args.add(0, String.valueOf(markGeneration));
+            Bundle queryArgs = new Bundle();
+            queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                    MediaStore.MediaColumns.GENERATION_ADDED + " > ? AND " + filter);
+            queryArgs.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, args.toArray(new String[0]));
+            queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER,
+                    MediaStore.MediaColumns.GENERATION_ADDED + " ASC");
+            queryArgs.putInt(MediaStore.QUERY_ARG_MATCH_PENDING, MediaStore.MATCH_INCLUDE);
+            return getContentResolver().query(collection, projection, queryArgs, null);
+        }
+
+        String[] projection = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                ? new String[]{MediaStore.Images.Media._ID, MediaStore.Images.Media.DATE_ADDED,
+                        MediaStore.MediaColumns.IS_PENDING}
+                : new String[]{MediaStore.Images.Media._ID, MediaStore.Images.Media.DATE_ADDED};
+        String selection = "(" + MediaStore.Images.Media.DATE_ADDED + " > ? OR (" +
+                MediaStore.Images.Media.DATE_ADDED + " = ? AND " + MediaStore.Images.Media._ID + " > ?)) AND " + filter;
+        args.add(0, String.valueOf(markId));
+        args.add(0, String.valueOf(markDateAdded));
+        args.add(0, String.valueOf(markDateAdded));
+        String sortOrder = MediaStore.Images.Media.DATE_ADDED + " ASC, " + MediaStore.Images.Media._ID + " ASC";
+        Uri queryUri = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ? MediaStore.setIncludePending(collection) : collection;
+        return getContentResolver().query(queryUri, projection, selection, args.toArray(new String[0]), sortOrder);
+    }
     
     private boolean isScreenshotMonitoringEnabled() {
         try {
@@ -184,220 +471,65 @@ public class ScreenshotListenerService extends Service {
         }
     }
 
-    private Uri getLatestScreenshot() {
-        Uri latestUri = null;
-        
-        try {
-            String[] projection = {
-                MediaStore.Images.Media._ID,
-                MediaStore.Images.Media.DATA,
-                MediaStore.Images.Media.DATE_ADDED,
-                MediaStore.Images.Media.DISPLAY_NAME
-            };
-
-            String selection = MediaStore.Images.Media.DATE_ADDED + " > ?";
-            String[] selectionArgs = {String.valueOf((System.currentTimeMillis() / 1000) - 10)}; // Last 10 seconds
-
-            String sortOrder = MediaStore.Images.Media.DATE_ADDED + " DESC";
-
-            Cursor cursor = getContentResolver().query(
-                    MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                    projection,
-                    selection,
-                    selectionArgs,
-                    sortOrder
-            );
-
-            if (cursor != null && cursor.moveToFirst()) {
-                int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
-                int dataColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DATA);
-                int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DISPLAY_NAME);
-
-                do {
-                    String path = cursor.getString(dataColumn);
-                    String name = cursor.getString(nameColumn);
-                    
-                    // Check if it's a screenshot
-                    if (isScreenshot(path, name)) {
-                        long id = cursor.getLong(idColumn);
-                        latestUri = Uri.withAppendedPath(
-                                MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                                String.valueOf(id)
-                        );
-                        Log.d(TAG, "Found screenshot: " + path);
-                        break;
-                    }
-                } while (cursor.moveToNext());
-
-                cursor.close();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error querying for screenshots: " + e.getMessage());
-        }
-
-        return latestUri;
-    }
-
-    private boolean isScreenshot(String path, String name) {
-        if (path == null && name == null) return false;
-        
-        String lowerPath = path != null ? path.toLowerCase() : "";
-        String lowerName = name != null ? name.toLowerCase() : "";
-        
-        // Check common screenshot patterns
-        return lowerPath.contains("screenshot") || 
-               lowerPath.contains("screen_shot") ||
-               lowerPath.contains("screencap") ||
-               lowerName.contains("screenshot") ||
-               lowerName.contains("screen_shot") ||
-               lowerName.startsWith("screenshot_") ||
-               lowerName.startsWith("screen-");
-    }
-
-    private void processScreenshot(Uri imageUri) {
+    /**
+     * @param onDone run exactly once when OCR and the overlay hand-off are finished
+     */
+    private void processScreenshot(Uri imageUri, Runnable onDone) {
         Log.d(TAG, "Processing screenshot with OCR...");
         
-        // Show processing notification
-        showProcessingNotification("📸 Detected screenshot", "Extracting text...", 0);
-        
         ocrProcessor.processImage(imageUri, new OCRProcessor.OCRCallback() {
             @Override
             public void onSuccess(OCRProcessor.ExpenseData expenseData) {
-                Log.d(TAG, "OCR Success - Amount: " + expenseData.amount + ", Merchant: " + expenseData.merchant);
+                try {
+                    Log.d(TAG, "OCR Success - Amount: " + expenseData.amount + ", Merchant: " + expenseData.merchant);
+
+                    // The same payment may already have arrived as an SMS or notification
+                    if (expenseData.duplicate || TransactionFingerprintStore.getInstance(ScreenshotListenerService.this).attachOrRecord(
+                            expenseData.amount, expenseData.timestamp, expenseData.merchant, expenseData.reference,
+                            TransactionFingerprintStore.SOURCE_SCREENSHOT) != null) {
+                        Log.d(TAG, "Screenshot matches an already captured transaction, skipping overlay");
+                        showStatus(() -> processingNotifier.showDone("✅ Already captured",
+                            "This payment was already detected", 100));
+                        return;
+                    }
+                    if (expenseData.reference != null) {
+                        TransactionReferenceIndex.getInstance(ScreenshotListenerService.this).add(expenseData.reference);
+                    }
                 
-                // Update notification
-                updateProcessingNotification("✅ Expense extracted", 
-                    "Amount: ₹" + expenseData.amount + " • " + expenseData.merchant, 100);
+                    // Update notification
+                    showStatus(() -> processingNotifier.showDone("✅ Expense extracted", 
+                        "Amount: ₹" + expenseData.amount + " • " + expenseData.merchant, 100));
                 
-                // Check if overlay permission is granted
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                    if (!Settings.canDrawOverlays(ScreenshotListenerService.this)) {
-                        Log.w(TAG, "No overlay permission, cannot show popup");
-                        showErrorNotification("⚠️ Permission needed", 
-                            "Enable 'Display over other apps' to see expense popup");
-                        return;
+                    // Check if overlay permission is granted
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                        if (!Settings.canDrawOverlays(ScreenshotListenerService.this)) {
+                            Log.w(TAG, "No overlay permission, cannot show popup");
+                            showStatus(() -> processingNotifier.showError("⚠️ Permission needed", 
+                                "Enable 'Display over other apps' to see expense popup"));
+                            return;
+                        }
                     }
-                }
                 
-                // Dismiss processing notification after a short delay
-                mainHandler.postDelayed(() -> dismissProcessingNotification(), 1000);
+                    // Dismiss processing notification after a short delay
+                    showStatus(() -> processingNotifier.dismissAfter(1000));
                 
-                // Show overlay with parsed expense data
-                showExpenseOverlay(expenseData);
+                    // Show overlay with parsed expense data
+                    showExpenseOverlay(expenseData);
+                } finally {
+                    onDone.run();
+                }
             }
 
             @Override
             public void onFailure(String error) {
                 Log.w(TAG, "OCR failed: " + error);
-                showErrorNotification("❌ Processing failed", 
-                    "Could not extract expense from screenshot");
+                showStatus(() -> processingNotifier.showError("❌ Processing failed", 
+                    "Could not extract expense from screenshot"));
+                onDone.run();
             }
         });
     }
     
-    private void showProcessingNotification(String title, String message, int progress) {
-        // Create a dummy intent for heads-up display
-        Intent intent = new Intent(this, MainActivity.class);
-        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-        
-        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            flags |= PendingIntent.FLAG_IMMUTABLE;
-        }
-        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, intent, flags);
-        
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, PROCESSING_CHANNEL_ID)
-                .setSmallIcon(android.R.drawable.ic_menu_camera)
-                .setContentTitle(title)
-                .setContentText(message)
-                .setPriority(NotificationCompat.PRIORITY_MAX)
-                .setCategory(NotificationCompat.CATEGORY_STATUS)
-                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
-                .setContentIntent(pendingIntent)
-                .setFullScreenIntent(pendingIntent, true)
-                .setOngoing(true)
-                .setAutoCancel(false)
-                .setShowWhen(true)
-                .setWhen(System.currentTimeMillis())
-                .setDefaults(0)
-                .setOnlyAlertOnce(true);
-        
-        if (progress > 0 && progress < 100) {
-            builder.setProgress(100, progress, false);
-        } else if (progress == 0) {
-            builder.setProgress(100, 0, true);
-        }
-        
-        if (notificationManager != null) {
-            notificationManager.notify(PROCESSING_NOTIFICATION_ID, builder.build());
-        }
-    }
-    
-    private void updateProcessingNotification(String title, String message, int progress) {
-        // Create a dummy intent for heads-up display
-        Intent intent = new Intent(this, MainActivity.class);
-        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-        
-        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            flags |= PendingIntent.FLAG_IMMUTABLE;
-        }
-        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, intent, flags);
-        
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, PROCESSING_CHANNEL_ID)
-                .setSmallIcon(android.R.drawable.stat_notify_sync)
-                .setContentTitle(title)
-                .setContentText(message)
-                .setPriority(NotificationCompat.PRIORITY_MAX)
-                .setCategory(NotificationCompat.CATEGORY_STATUS)
-                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
-                .setContentIntent(pendingIntent)
-                .setFullScreenIntent(pendingIntent, true)
-                .setOngoing(false)
-                .setAutoCancel(true)
-                .setShowWhen(true)
-                .setWhen(System.currentTimeMillis())
-                .setDefaults(0)
-                .setTimeoutAfter(3000);
-        
-        if (progress > 0 && progress <= 100) {
-            builder.setProgress(100, progress, false);
-        }
-        
-        if (notificationManager != null) {
-            notificationManager.notify(PROCESSING_NOTIFICATION_ID, builder.build());
-        }
-    }
-    
-    private void showErrorNotification(String title, String message) {
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, PROCESSING_CHANNEL_ID)
-                .setSmallIcon(android.R.drawable.stat_notify_error)
-                .setContentTitle(title)
-                .setContentText(message)
-                .setPriority(NotificationCompat.PRIORITY_HIGH)
-                .setCategory(NotificationCompat.CATEGORY_ERROR)
-                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
-                .setOngoing(false)
-                .setAutoCancel(true)
-                .setShowWhen(true)
-                .setWhen(System.currentTimeMillis())
-                .setDefaults(0) // No sound, vibration, or lights
-                .setTimeoutAfter(3000); // Auto-dismiss after 3 seconds
-        
-        if (notificationManager != null) {
-            notificationManager.notify(PROCESSING_NOTIFICATION_ID, builder.build());
-        }
-        
-        // Auto-dismiss after 3 seconds
-        mainHandler.postDelayed(() -> dismissProcessingNotification(), 3000);
-    }
-    
-    private void dismissProcessingNotification() {
-        if (notificationManager != null) {
-            notificationManager.cancel(PROCESSING_NOTIFICATION_ID);
-        }
-    }
-    
     private void showProcessingToast(final String message) {
         mainHandler.post(() -> {
             Toast.makeText(ScreenshotListenerService.this, message, Toast.LENGTH_SHORT).show();
@@ -412,18 +544,21 @@ public class ScreenshotListenerService extends Service {
             
             if (!screenshotMonitoringEnabled) {
                 Log.d(TAG, "Screenshot monitoring is disabled, skipping overlay");
-                showErrorNotification("📸 Screenshot monitoring disabled", 
-                    "Enable it in Settings → AI API Keys to process screenshots");
+                showStatus(() -> processingNotifier.showError("📸 Screenshot monitoring disabled", 
+                    "Enable it in Settings → AI API Keys to process screenshots"));
                 return;
             }
             
-            Intent intent = new Intent(this, OverlayService.class);
-            intent.putExtra("source", "screenshot");
-            intent.putExtra("title", expenseData.merchant);
-            intent.putExtra("amount", expenseData.amount);
-            intent.putExtra("type", expenseData.type);
-            intent.putExtra("timestamp", expenseData.timestamp);
-            intent.putExtra("rawText", expenseData.rawText);
+            String merchant = TransactionParser.knownMerchant(expenseData.merchant);
+            ParsedTransaction parsed = new ParsedTransaction(expenseData.amount, expenseData.type,
+                    merchant != null ? merchant : TransactionParser.extractMerchant(expenseData.rawText),
+                    expenseData.timestamp, null, "ocr");
+            if (AutoCommitter.tryCommit(this, "screenshot", expenseData.merchant, expenseData.rawText, null, parsed)) {
+                showStatus(processingNotifier::dismiss);
+                return;
+            }
+            Intent intent = OverlayService.createIntent(this, "screenshot", expenseData.merchant,
+                    expenseData.rawText, null, parsed, System.nanoTime());
             
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                 startForegroundService(intent);
@@ -455,6 +590,11 @@ public class ScreenshotListenerService extends Service {
                 Log.e(TAG, "Error unregistering observer: " + e.getMessage());
             }
         }
+
+        if (observerThread != null) {
+            observerHandler.removeCallbacksAndMessages(null);
+            observerThread.quitSafely();
+        }
         
         if (ocrProcessor != null) {
             ocrProcessor.close();
@@ -0,0 +1,162 @@
+package com.moneymanager.app;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+import java.util.List;
+
+/**
+ * Durable queue of screenshots waiting for OCR.
+ *
+ * The scanner enqueues every new screenshot before it advances its high-water mark, and
+ * a row is deleted only once OCR has finished with it, so a screenshot is never dropped
+ * because another one was being processed or because the service was killed. Rows that
+ * were running when the process died, or whose OCR timed out, are queued again; one that
+ * keeps failing that way is given up after {@link #MAX_ATTEMPTS}.
+ *
+ * Not thread-safe by design: {@link ScreenshotListenerService} only touches it from its
+ * observer looper.
+ */
+public class ScreenshotWorkQueue extends SQLiteOpenHelper {
+    private static final String TAG = "ScreenshotWorkQueue";
+    private static final String DB_NAME = "screenshot_queue.db";
+    private static final int DB_VERSION = 1;
+    private static final String TABLE = "screenshots";
+    private static final int STATE_QUEUED = 0;
+    private static final int STATE_RUNNING = 1;
+    static final int MAX_ATTEMPTS = 3;
+
+    // Higher runs first; within a priority the newest screenshot runs first
+    public static final int PRIORITY_BACKLOG = 0; // taken while the service was down
+    public static final int PRIORITY_LIVE = 1;    // just taken, the user is waiting
+
+    private static volatile ScreenshotWorkQueue instance;
+
+    public static final class Item {
+        public final String uri;
+        public final long dateAdded; // seconds, as MediaStore reports it
+        public final int priority;
+
+        public Item(String uri, long dateAdded, int priority) {
+            this.uri = uri;
+            this.dateAdded = dateAdded;
+            this.priority = priority;
+        }
+    }
+
+    public static ScreenshotWorkQueue getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ScreenshotWorkQueue.class) {
+                if (instance == null) {
+                    instance = new ScreenshotWorkQueue(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ScreenshotWorkQueue(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " (" +
+                "uri TEXT PRIMARY KEY, " +
+                "date_added INTEGER NOT NULL, " +
+                "priority INTEGER NOT NULL, " +
+                "attempts INTEGER NOT NULL DEFAULT 0, " +
+                "state INTEGER NOT NULL DEFAULT " + STATE_QUEUED + ")");
+        db.execSQL("CREATE INDEX idx_screenshots_next ON " + TABLE + " (state, priority, date_added)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    }
+
+    /**
+     * Add screenshots in one transaction; a URI that is already queued is left as it is.
+     */
+    public void enqueueAll(List<Item> items) {
+        if (items.isEmpty()) return;
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (Item item : items) {
+                values.put("uri", item.uri);
+                values.put("date_added", item.dateAdded);
+                values.put("priority", item.priority);
+                db.insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(TAG, "📥 Queued " + items.size() + " screenshot(s)");
+    }
+
+    /**
+     * Mark the highest-priority, newest queued screenshot running and return it.
+     *
+     * @return null when nothing is queued
+     */
+    public Item claimNext() {
+        SQLiteDatabase db = getWritableDatabase();
+        Item item = null;
+        try (Cursor cursor = db.query(TABLE, new String[]{"uri", "date_added", "priority"},
+                "state = " + STATE_QUEUED, null, null, null, "priority DESC, date_added DESC", "1")) {
+            if (cursor.moveToFirst()) {
+                item = new Item(cursor.getString(0), cursor.getLong(1), cursor.getInt(2));
+            }
+        }
+        if (item != null) {
+            db.execSQL("UPDATE " + TABLE + " SET state = " + STATE_RUNNING + ", attempts = attempts + 1 WHERE uri = ?",
+                    new Object[]{item.uri});
+        }
+        return item;
+    }
+
+    public void complete(String uri) {
+        getWritableDatabase().delete(TABLE, "uri = ?", new String[]{uri});
+    }
+
+    /**
+     * Put a running screenshot that did not finish (e.g. OCR timed out) back on the queue.
+     *
+     * @return false if it has already been tried {@link #MAX_ATTEMPTS} times and was dropped
+     */
+    public boolean retry(String uri) {
+        SQLiteDatabase db = getWritableDatabase();
+        if (db.delete(TABLE, "uri = ? AND attempts >= " + MAX_ATTEMPTS, new String[]{uri}) > 0) {
+            return false;
+        }
+        ContentValues values = new ContentValues();
+        values.put("state", STATE_QUEUED);
+        db.update(TABLE, values, "uri = ?", new String[]{uri});
+        return true;
+    }
+
+    /**
+     * On start: requeue what was running when the process died, and drop rows that have
+     * already been started {@link #MAX_ATTEMPTS} times.
+     */
+    public void recover() {
+        SQLiteDatabase db = getWritableDatabase();
+        int dropped = db.delete(TABLE, "attempts >= " + MAX_ATTEMPTS, null);
+        ContentValues values = new ContentValues();
+        values.put("state", STATE_QUEUED);
+        int requeued = db.update(TABLE, values, "state = " + STATE_RUNNING, null);
+        if (dropped > 0 || requeued > 0) {
+            Log.d(TAG, "Recovered screenshot queue: " + requeued + " requeued, " + dropped + " given up");
+        }
+    }
+
+    public long count() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE);
+    }
+}
@@ -0,0 +1,81 @@
+package com.moneymanager.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.json.JSONArray;
+
+/**
+ * Immutable in-memory snapshot of the packages the user chose to listen to.
+ *
+ * The listener checks every notification posted on the device against this set, so
+ * the lookup must not touch SharedPreferences or parse JSON. The snapshot is rebuilt
+ * only when {@link NotificationListenerPlugin#setSelectedApps} writes a new list or
+ * the preference changes underneath us.
+ */
+public final class SelectedApps {
+    private static final String TAG = "SelectedApps";
+    static final String PREFS_NAME = "MoneyManager";
+    static final String KEY_SELECTED_APPS = "selectedApps";
+    private static final String DEFAULT_APPS = "[\"com.whatsapp\", \"com.google.android.apps.messaging\"]";
+
+    private static volatile Set<String> snapshot = Collections.emptySet();
+    private static volatile boolean initialized = false;
+
+    // Held strongly: SharedPreferences only keeps a weak reference to its listeners
+    private static final SharedPreferences.OnSharedPreferenceChangeListener prefsListener =
+            (prefs, key) -> {
+                if (KEY_SELECTED_APPS.equals(key)) {
+                    rebuild(prefs.getString(KEY_SELECTED_APPS, null));
+                }
+            };
+
+    private SelectedApps() {
+    }
+
+    /**
+     * Load the initial snapshot and start watching for changes. Safe to call repeatedly.
+     */
+    public static synchronized void init(Context context) {
+        if (initialized) return;
+        SharedPreferences prefs = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        prefs.registerOnSharedPreferenceChangeListener(prefsListener);
+        rebuild(prefs.getString(KEY_SELECTED_APPS, null));
+        initialized = true;
+    }
+
+    /**
+     * Hot path: a single hash lookup against the current snapshot.
+     */
+    public static boolean contains(String packageName) {
+        return packageName != null && snapshot.contains(packageName);
+    }
+
+    public static Set<String> get() {
+        return snapshot;
+    }
+
+    /**
+     * Replace the snapshot from the JSON array string stored in preferences.
+     */
+    static void rebuild(String selectedAppsJson) {
+        if (selectedAppsJson == null) {
+            selectedAppsJson = DEFAULT_APPS;
+        }
+        try {
+            JSONArray apps = new JSONArray(selectedAppsJson);
+            Set<String> next = new HashSet<>(apps.length() * 2);
+            for (int i = 0; i < apps.length(); i++) {
+                next.add(apps.getString(i));
+            }
+            snapshot = Collections.unmodifiableSet(next);
+            Log.d(TAG, "Selected apps snapshot rebuilt: " + next.size() + " apps");
+        } catch (Exception e) {
+            Log.e(TAG, "Error parsing selected apps: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.moneymanager.app;
+
+import android.util.Log;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Per-bank SMS / notification templates compiled once and dispatched by sender.
+ *
+ * Each bank or wallet format is declared a single time below. Templates are indexed
+ * by SMS sender header (e.g. "HDFCBK" from "VM-HDFCBK-S") and by source package, so a
+ * message is only tried against the one or two templates registered for its source
+ * plus the legacy built-in format. Every field is captured by one regex in one pass.
+ */
+public final class SmsTemplateEngine {
+    private static final String TAG = "SmsTemplateEngine";
+
+    // Shared regex fragments
+    private static final String AMT = "(?:Rs\\.?|INR|₹)\\s*([\\d,]+(?:\\.\\d{1,2})?)";
+    private static final String REF_TAIL = "(?:.*?(?:Ref|RRN|UPI|Txn)[^\\d\\n]{0,24}(\\d{12})(?!\\d))?";
+
+    // Messaging apps where the notification title is the SMS sender ID
+    private static final String[] SMS_APPS = {
+            "com.google.android.apps.messaging",
+            "com.samsung.android.messaging",
+            "com.android.mms"
+    };
+
+    private static final SmsTemplateEngine INSTANCE = new SmsTemplateEngine();
+
+    private final Map<String, Template[]> dispatch = new HashMap<>();
+    private final Template builtin;
+    private final Template generic;
+
+    public static SmsTemplateEngine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * A compiled template. Group indexes are 0 when the template does not capture that
+     * field. When there is no direction group, {@code fixedType} is used, or the type is
+     * inferred from keywords if that is null too.
+     */
+    static final class Template {
+        final String id;
+        final Pattern pattern;
+        final int amountGroup;
+        final int directionGroup;
+        final int merchantGroup;
+        final int referenceGroup;
+        final int timestampGroup;
+        final String fixedType;
+
+        Template(String id, String regex, int amountGroup, int directionGroup, int merchantGroup,
+                 int referenceGroup, int timestampGroup, String fixedType) {
+            this.id = id;
+            this.pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+            this.amountGroup = amountGroup;
+            this.directionGroup = directionGroup;
+            this.merchantGroup = merchantGroup;
+            this.referenceGroup = referenceGroup;
+            this.timestampGroup = timestampGroup;
+            this.fixedType = fixedType;
+        }
+    }
+
+    private SmsTemplateEngine() {
+        // Legacy format the listener has always accepted: "Rs.250.00 ... at MERCHANT (2025:01:04 12:30:00)"
+        builtin = new Template("builtin",
+                "Rs\\.(\\d+\\.\\d{2})(?:.*?\\bat\\s+([A-Za-z0-9\\s&.-]+?)\\s*(?=\\())?.*?" +
+                        "\\((\\d{4}:\\d{2}:\\d{2} \\d{2}:\\d{2}:\\d{2})\\)",
+                1, 0, 2, 0, 3, null);
+
+        // Any currency amount; only used when the caller allows a generic fallback
+        generic = new Template("generic", AMT + REF_TAIL, 1, 0, 0, 2, 0, null);
+
+        // HDFC Bank
+        register(new Template("hdfc_upi_sent",
+                "\\bSent\\s+" + AMT + ".*?\\bTo\\s+([^\\n]+?)\\s*(?:\\n|\\s+On\\b)" + REF_TAIL,
+                1, 0, 2, 3, 0, "debit"),
+                "HDFCBK", "HDFCBN", "com.snapwork.hdfc");
+        register(new Template("hdfc_account",
+                AMT + "\\s+(?:has been\\s+)?(debited|credited)\\b.*?\\b(?:to|by|at)\\s+(?:VPA\\s+)?" +
+                        "([^\\n(]+?)\\s*(?:\\(|\\bon\\b|\\.\\s|$)" + REF_TAIL,
+                1, 2, 3, 4, 0, null),
+                "HDFCBK", "HDFCBN", "com.snapwork.hdfc");
+
+        // State Bank of India
+        register(new Template("sbi_upi",
+                "\\b(debited|credited)\\s+by\\s+([\\d,]+(?:\\.\\d{1,2})?).*?\\btrf\\s+(?:to|from)\\s+" +
+                        "([^\\n]+?)\\s+Ref\\s*no\\s*(\\d{12})",
+                2, 1, 3, 4, 0, null),
+                "SBIUPI", "SBIINB", "SBIPSG", "ATMSBI", "com.sbi.lotusintouch", "com.sbi.upi");
+
+        // ICICI Bank
+        register(new Template("icici_upi",
+                "\\b(debited|credited)\\s+(?:for|with)\\s+" + AMT + ".*?;\\s*([^;\\n]+?)\\s+(?:credited|debited)" +
+                        REF_TAIL,
+                2, 1, 3, 4, 0, null),
+                "ICICIB", "ICICIT", "com.csam.icici.bank.imobile");
+
+        // Axis Bank
+        register(new Template("axis_upi",
+                AMT + "\\s+(debited|credited)\\b.*?UPI/[A-Z0-9]+/(\\d{12})/([^\\n/]+?)(?:\\s+Not you|\\s*\\n|$)",
+                1, 2, 4, 3, 0, null),
+                "AXISBK", "AXISMR", "com.axis.mobile");
+
+        // Kotak Mahindra Bank
+        register(new Template("kotak_upi",
+                "\\b(Sent|Received)\\s+" + AMT + "\\s+(?:from|in)\\b.*?\\b(?:to|from)\\s+(\\S+)\\s+on\\b" + REF_TAIL,
+                2, 1, 3, 4, 0, null),
+                "KOTAKB", "KOTAKM", "com.msf.kbank.mobile");
+
+        // Paytm
+        register(new Template("paytm",
+                "\\b(Paid|Received)\\s+" + AMT + "\\s+(?:to|from)\\s+([^\\n.]+?)(?:\\s+from\\b|\\s+on\\b|\\.|\\n|$)" +
+                        REF_TAIL,
+                2, 1, 3, 4, 0, null),
+                "PAYTMB", "iPaytm", "net.one97.paytm");
+
+        // PhonePe / Google Pay app notifications: "₹500 paid to NAME", "You received ₹500 from NAME"
+        Template upiApp = new Template("upi_app",
+                AMT + "\\s+(paid|sent|received)\\s+(?:to|from)\\s+([^\\n.]+?)(?:\\.|\\n|$)" + REF_TAIL,
+                1, 2, 3, 4, 0, null);
+        Template upiAppReceived = new Template("upi_app_received",
+                "\\b(received|paid)\\s+" + AMT + "\\s+(?:from|to)\\s+([^\\n.]+?)(?:\\.|\\n|$)" + REF_TAIL,
+                2, 1, 3, 4, 0, null);
+        register(upiApp, "com.phonepe.app", "com.google.android.apps.nbu.paisa.user");
+        register(upiAppReceived, "com.phonepe.app", "com.google.android.apps.nbu.paisa.user");
+
+        Log.d(TAG, "Compiled templates for " + dispatch.size() + " sources");
+    }
+
+    private void register(Template template, String... keys) {
+        for (String key : keys) {
+            String normalized = key.indexOf('.') >= 0 ? key : key.toUpperCase(Locale.ROOT);
+            Template[] existing = dispatch.get(normalized);
+            Template[] updated;
+            if (existing == null) {
+                updated = new Template[]{template};
+            } else {
+                updated = new Template[existing.length + 1];
+                System.arraycopy(existing, 0, updated, 0, existing.length);
+                updated[existing.length] = template;
+            }
+            dispatch.put(normalized, updated);
+        }
+    }
+
+    /**
+     * Reduce an SMS sender address to its 6-character header.
+     * "VM-HDFCBK", "AD-HDFCBK-S" and "HDFCBK" all map to "HDFCBK".
+     */
+    static String normalizeSender(String sender) {
+        if (sender == null) return null;
+        String trimmed = sender.trim();
+        if (trimmed.isEmpty()) return null;
+
+        int start = 0;
+        int end = trimmed.length();
+        int dash = trimmed.indexOf('-');
+        if (dash == 2) {
+            start = 3; // operator/circle prefix
+        }
+        int lastDash = trimmed.lastIndexOf('-');
+        if (lastDash > start && end - lastDash == 2) {
+            end = lastDash; // TRAI category suffix (-S, -T, -P, -G)
+        }
+        return trimmed.substring(start, end).toUpperCase(Locale.ROOT);
+    }
+
+    private static boolean isSmsApp(String packageName) {
+        if (packageName == null) return false;
+        for (String app : SMS_APPS) {
+            if (app.equals(packageName)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Parse a posted notification. For SMS apps the title is the sender ID; for
+     * bank and wallet apps the package picks the templates.
+     *
+     * @param allowGeneric fall back to a plain currency-amount match when no
+     *                     source template applies
+     */
+    public ParsedTransaction parseNotification(String packageName, String title, String text,
+                                               boolean allowGeneric) {
+        return parseNotification(packageName, title, text, allowGeneric, null);
+    }
+
+    /**
+     * Same as above, reusing a {@link FinancialClassifier} pass over the same text:
+     * text without a direction keyword or currency marker skips the built-in templates,
+     * which start matching at the first such offset. User formats always run.
+     */
+    public ParsedTransaction parseNotification(String packageName, String title, String text,
+                                               boolean allowGeneric, FinancialClassifier.Result hint) {
+        String source = isSmsApp(packageName) ? normalizeSender(title) : packageName;
+        Template[] candidates = source != null ? dispatch.get(source) : null;
+        return match(candidates, source, text, allowGeneric, hint);
+    }
+
+    private ParsedTransaction match(Template[] candidates, String source, String text, boolean allowGeneric,
+                                    FinancialClassifier.Result hint) {
+        if (text == null || text.isEmpty()) return null;
+
+        // Every built-in template starts at a direction keyword or a currency marker
+        int start = 0;
+        if (hint != null) {
+            start = hint.parseStart();
+        }
+
+        if (candidates != null && start >= 0) {
+            for (Template template : candidates) {
+                ParsedTransaction result = apply(template, text, start);
+                if (result != null) return result;
+            }
+        }
+
+        // User-defined formats, all matched in one pass over the text
+        ParsedTransaction custom = TransactionFormatRules.get().match(source, text);
+        if (custom != null) return custom;
+        if (start < 0) return null;
+
+        if (hint == null || hint.mayMatchBuiltin()) {
+            ParsedTransaction result = apply(builtin, text, start);
+            if (result != null) return result;
+        }
+
+        return allowGeneric ? apply(generic, text, start) : null;
+    }
+
+    private ParsedTransaction apply(Template template, String text, int start) {
+        Matcher m = template.pattern.matcher(text);
+        if (start > 0) {
+            // Word boundaries and lookbehinds still see the text before the region
+            m.useTransparentBounds(true);
+            m.useAnchoringBounds(false);
+            m.region(start, text.length());
+        }
+        if (!m.find()) return null;
+
+        double amount;
+        try {
+            amount = Double.parseDouble(m.group(template.amountGroup).replace(",", ""));
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Template " + template.id + " matched an unparseable amount");
+            return null;
+        }
+        if (amount <= 0) return null;
+
+        String type = template.fixedType;
+        if (template.directionGroup > 0) {
+            type = directionOf(m.group(template.directionGroup));
+        }
+        if (type == null) {
+            type = inferType(text);
+        }
+
+        String merchant = null;
+        if (template.merchantGroup > 0) {
+            String raw = m.group(template.merchantGroup);
+            if (raw != null) {
+                merchant = raw.trim();
+                if (merchant.endsWith(".")) {
+                    merchant = merchant.substring(0, merchant.length() - 1).trim();
+                }
+                if (merchant.isEmpty()) merchant = null;
+            }
+        }
+
+        String reference = template.referenceGroup > 0 ? m.group(template.referenceGroup) : null;
+        long timestamp = template.timestampGroup > 0 ? parseTimestamp(m.group(template.timestampGroup)) : 0;
+
+        return new ParsedTransaction(amount, type, merchant, timestamp, reference, template.id);
+    }
+
+    private static String directionOf(String word) {
+        if (word == null) return null;
+        switch (word.toLowerCase(Locale.ROOT)) {
+            case "credited":
+            case "received":
+                return "credit";
+            case "debited":
+            case "sent":
+            case "paid":
+            case "spent":
+                return "debit";
+            default:
+                return null;
+        }
+    }
+
+    static String inferType(String text) {
+        String lowerText = text.toLowerCase(Locale.ROOT);
+        if (lowerText.contains("credited") || lowerText.contains("cr.")) {
+            return "credit";
+        }
+        return "debit";
+    }
+
+    /**
+     * Parse "yyyy:MM:dd HH:mm:ss". A year in the past is replaced with the current year,
+     * matching what the overlay has always done.
+     */
+    private static long parseTimestamp(String value) {
+        if (value == null || value.length() != 19) return 0;
+        try {
+            int year = Integer.parseInt(value.substring(0, 4));
+            int month = Integer.parseInt(value.substring(5, 7)) - 1; // Calendar month is 0-based
+            int day = Integer.parseInt(value.substring(8, 10));
+            int hour = Integer.parseInt(value.substring(11, 13));
+            int minute = Integer.parseInt(value.substring(14, 16));
+            int second = Integer.parseInt(value.substring(17, 19));
+
+            Calendar cal = Calendar.getInstance();
+            int currentYear = cal.get(Calendar.YEAR);
+            if (year < currentYear) {
+                year = currentYear;
+            }
+            cal.set(year, month, day, hour, minute, second);
+            return cal.getTimeInMillis();
+        } catch (NumberFormatException e) {
+            Log.e(TAG, "Error parsing timestamp: " + e.getMessage());
+            return 0;
+        }
+    }
+}
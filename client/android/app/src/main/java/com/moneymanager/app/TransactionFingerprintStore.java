@@ -0,0 +1,258 @@
+package com.moneymanager.app;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Cross-source record of captured transactions.
+ *
+ * One UPI payment typically shows up as a bank SMS, as a messaging-app notification
+ * and as a screenshot. Each capture is reduced to a fingerprint (amount in paise,
+ * time, normalized merchant, reference number) and matched against recent ones.
+ * A later source that matches attaches to the first capture instead of prompting
+ * the user again. Without a reference number, a match needs the same amount within
+ * the window, a merchant on at least one side, and a source the capture does not
+ * have yet. The store is an append-only file so matches survive restarts.
+ */
+public class TransactionFingerprintStore {
+    private static final String TAG = "FingerprintStore";
+    private static final String FILE_NAME = "transaction_fingerprints.bin";
+    private static final int MAX_ENTRIES = 500;
+    public static final long DEFAULT_WINDOW_MS = 5 * 60 * 1000L; // 5 minutes
+
+    public static final int SOURCE_SMS = 1;
+    public static final int SOURCE_NOTIFICATION = 1 << 1;
+    public static final int SOURCE_SCREENSHOT = 1 << 2;
+    public static final int SOURCE_SHARE = 1 << 3;
+
+    private static TransactionFingerprintStore instance;
+
+    private final File file;
+    private final long windowMs;
+    // Oldest first, for eviction; indexed by amount for lookups
+    private final ArrayDeque<Fingerprint> entries = new ArrayDeque<>();
+    private final HashMap<Long, List<Fingerprint>> byAmount = new HashMap<>();
+    private boolean loaded = false;
+    private int recordsOnDisk = 0;
+
+    public static final class Fingerprint {
+        public final long amountPaise;
+        public final long timestamp;
+        public final String merchant; // normalized, may be empty
+        public final String reference; // may be null
+        int sources;
+
+        Fingerprint(long amountPaise, long timestamp, String merchant, String reference, int sources) {
+            this.amountPaise = amountPaise;
+            this.timestamp = timestamp;
+            this.merchant = merchant != null ? merchant : "";
+            this.reference = reference;
+            this.sources = sources;
+        }
+
+        public int getSources() {
+            return sources;
+        }
+    }
+
+    public static synchronized TransactionFingerprintStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new TransactionFingerprintStore(
+                    new File(context.getApplicationContext().getFilesDir(), FILE_NAME), DEFAULT_WINDOW_MS);
+        }
+        return instance;
+    }
+
+    TransactionFingerprintStore(File file, long windowMs) {
+        this.file = file;
+        this.windowMs = windowMs;
+    }
+
+    public static long toPaise(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Lowercase alphanumerics only, VPA handle domain dropped ("zomato@hdfc" -> "zomato").
+     */
+    public static String normalizeMerchant(String merchant) {
+        if (merchant == null) return "";
+        String lower = merchant.toLowerCase(Locale.ROOT);
+        int at = lower.indexOf('@');
+        if (at > 0) lower = lower.substring(0, at);
+        StringBuilder sb = new StringBuilder(Math.min(lower.length(), 24));
+        for (int i = 0; i < lower.length() && sb.length() < 24; i++) {
+            char c = lower.charAt(i);
+            if (Character.isLetterOrDigit(c)) sb.append(c);
+        }
+        String normalized = sb.toString();
+        return "unknownmerchant".equals(normalized) || "unknown".equals(normalized) ? "" : normalized;
+    }
+
+    /**
+     * Match a capture against recent ones from any source. If one matches, this source
+     * is attached to it and it is returned; otherwise the capture is recorded as a new
+     * transaction and null is returned.
+     */
+    public synchronized Fingerprint attachOrRecord(double amount, long timestamp, String merchant,
+                                                   String reference, int source) {
+        ensureLoaded();
+        long paise = toPaise(amount);
+        if (paise <= 0) return null;
+        if (timestamp <= 0) timestamp = System.currentTimeMillis();
+        String normalized = normalizeMerchant(merchant);
+
+        Fingerprint match = findMatch(paise, timestamp, normalized, reference, source);
+        if (match != null) {
+            if ((match.sources & source) == 0) {
+                match.sources |= source;
+                append(match);
+            }
+            Log.d(TAG, "Capture attached to existing transaction (sources=" + match.sources + ")");
+            return match;
+        }
+
+        Fingerprint fp = new Fingerprint(paise, timestamp, normalized, reference, source);
+        add(fp);
+        append(fp);
+        return null;
+    }
+
+    private Fingerprint findMatch(long paise, long timestamp, String merchant, String reference, int source) {
+        List<Fingerprint> candidates = byAmount.get(paise);
+        if (candidates == null) return null;
+
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            Fingerprint fp = candidates.get(i);
+            if (reference != null && fp.reference != null) {
+                // Reference numbers are exact; no time window needed
+                if (reference.equals(fp.reference)) return fp;
+                continue;
+            }
+            if (Math.abs(timestamp - fp.timestamp) > windowMs) continue;
+            // Without a reference only another source can confirm a capture; a second
+            // post from the same source is a second payment (reposts are deduped upstream)
+            if ((fp.sources & source) != 0) continue;
+            if (merchant.isEmpty() && fp.merchant.isEmpty()) continue;
+            if (merchantsCompatible(merchant, fp.merchant)) return fp;
+        }
+        return null;
+    }
+
+    private static boolean merchantsCompatible(String a, String b) {
+        if (a.isEmpty() || b.isEmpty()) return true;
+        if (a.contains(b) || b.contains(a)) return true;
+        int prefix = Math.min(4, Math.min(a.length(), b.length()));
+        return a.regionMatches(0, b, 0, prefix) && prefix >= 4;
+    }
+
+    private void add(Fingerprint fp) {
+        entries.addLast(fp);
+        List<Fingerprint> list = byAmount.get(fp.amountPaise);
+        if (list == null) {
+            list = new ArrayList<>(2);
+            byAmount.put(fp.amountPaise, list);
+        }
+        list.add(fp);
+
+        while (entries.size() > MAX_ENTRIES) {
+            Fingerprint evicted = entries.removeFirst();
+            List<Fingerprint> evictedList = byAmount.get(evicted.amountPaise);
+            if (evictedList != null) {
+                evictedList.remove(evicted);
+                if (evictedList.isEmpty()) byAmount.remove(evicted.amountPaise);
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        if (!file.exists()) return;
+
+        // Later records for the same (amount, timestamp) carry updated sources
+        HashMap<String, Fingerprint> latest = new HashMap<>();
+        List<String> order = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                Fingerprint fp;
+                try {
+                    long paise = in.readLong();
+                    long timestamp = in.readLong();
+                    String merchant = in.readUTF();
+                    String reference = in.readUTF();
+                    int sources = in.readInt();
+                    fp = new Fingerprint(paise, timestamp, merchant, reference.isEmpty() ? null : reference, sources);
+                } catch (EOFException eof) {
+                    break;
+                }
+                recordsOnDisk++;
+                String id = fp.amountPaise + ":" + fp.timestamp;
+                if (latest.put(id, fp) == null) order.add(id);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error loading fingerprints: " + e.getMessage());
+        }
+
+        for (String id : order) {
+            add(latest.get(id));
+        }
+        Log.d(TAG, "Loaded " + entries.size() + " fingerprints (" + recordsOnDisk + " records)");
+
+        if (recordsOnDisk > MAX_ENTRIES * 2) {
+            compact();
+        }
+    }
+
+    private void append(Fingerprint fp) {
+        if (recordsOnDisk >= MAX_ENTRIES * 2) {
+            compact();
+            return; // compaction rewrote every live entry, including this one
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            write(out, fp);
+            recordsOnDisk++;
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving fingerprint: " + e.getMessage());
+        }
+    }
+
+    private void compact() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            Iterator<Fingerprint> it = entries.iterator();
+            while (it.hasNext()) {
+                write(out, it.next());
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error compacting fingerprints: " + e.getMessage());
+            return;
+        }
+        if (tmp.renameTo(file)) {
+            recordsOnDisk = entries.size();
+        }
+    }
+
+    private static void write(DataOutputStream out, Fingerprint fp) throws IOException {
+        out.writeLong(fp.amountPaise);
+        out.writeLong(fp.timestamp);
+        out.writeUTF(fp.merchant);
+        out.writeUTF(fp.reference != null ? fp.reference : "");
+        out.writeInt(fp.sources);
+    }
+}
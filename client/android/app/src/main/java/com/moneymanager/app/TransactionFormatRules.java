@@ -0,0 +1,811 @@
+package com.moneymanager.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * User-defined transaction formats, compiled into one automaton.
+ *
+ * A rule is a pattern such as {@code "Rs.{amount} debited from A/c {*} to {merchant} on {timestamp}"}.
+ * Placeholders are typed fields: {@code {amount}}, {@code {merchant}}, {@code {timestamp}},
+ * {@code {direction}}, {@code {ref}} and {@code {*}} (anything). The literal text between
+ * them, from every rule, goes into a single Aho-Corasick automaton. Matching walks the
+ * text once; each literal hit advances the rules that expect it, and only the short spans
+ * between a rule's literals are checked by the field scanners. More rules add automaton
+ * states, not passes over the text. A run of whitespace in the pattern or the text,
+ * line breaks included, matches as one space.
+ *
+ * Rules are stored as a JSON array in preferences and compiled when they change.
+ */
+public final class TransactionFormatRules {
+    private static final String TAG = "TransactionFormatRules";
+    static final String KEY_TRANSACTION_FORMATS = "transactionFormats";
+
+    static final int FIELD_NONE = 0;
+    static final int FIELD_AMOUNT = 1;
+    static final int FIELD_MERCHANT = 2;
+    static final int FIELD_TIMESTAMP = 3;
+    static final int FIELD_DIRECTION = 4;
+    static final int FIELD_REF = 5;
+    static final int FIELD_SKIP = 6;
+
+    private static final int MAX_MERCHANT = 60;
+    private static final int MAX_TIMESTAMP = 32;
+    private static final int MAX_TOKEN = 24;
+
+    private static final String[] DEFAULT_DEBIT_WORDS = {"debited", "debit", "paid", "sent", "spent", "withdrawn"};
+    private static final String[] DEFAULT_CREDIT_WORDS = {"credited", "credit", "received", "deposited", "refund", "refunded"};
+
+    private static final TransactionFormatRules EMPTY = new TransactionFormatRules(new Rule[0]);
+    private static volatile TransactionFormatRules current = EMPTY;
+    private static volatile boolean initialized = false;
+
+    private static final SharedPreferences.OnSharedPreferenceChangeListener prefsListener =
+            (prefs, key) -> {
+                if (KEY_TRANSACTION_FORMATS.equals(key)) {
+                    rebuild(prefs.getString(KEY_TRANSACTION_FORMATS, null), null);
+                }
+            };
+
+    /**
+     * One compiled rule. {@code fields[k]} is the field in front of {@code literals[k]};
+     * {@code fields[literals.length]} is the field after the last literal.
+     */
+    static final class Rule {
+        final String id;
+        final String[] literals;
+        final int[] fields;
+        final String fixedType;
+        final String timestampFormat;
+        final String[] debitWords;
+        final String[] creditWords;
+        final Set<String> sources; // null = any source
+
+        Rule(String id, String[] literals, int[] fields, String fixedType, String timestampFormat,
+             String[] debitWords, String[] creditWords, Set<String> sources) {
+            this.id = id;
+            this.literals = literals;
+            this.fields = fields;
+            this.fixedType = fixedType;
+            this.timestampFormat = timestampFormat;
+            this.debitWords = debitWords;
+            this.creditWords = creditWords;
+            this.sources = sources;
+        }
+    }
+
+    private final Rule[] rules;
+    // Alphabet: folded literal chars get symbols 1..n, everything else is 0
+    private final int[] asciiSymbols = new int[128];
+    private final char[] extraChars;
+    private final int[] extraSymbols;
+    private final int[][] next;
+    private final int[] outputLink;
+    // Literals ending at each state, flattened: outFirst[s] .. outFirst[s] + outCount[s]
+    private final int[] outFirst;
+    private final int[] outCount;
+    private final int[] outRule;
+    private final int[] outSegment;
+    private final int maxLiteral;
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch(rules.length, maxLiteral);
+        }
+    };
+
+    /**
+     * Per-thread match state, reused across calls so matching allocates nothing.
+     */
+    private static final class Scratch {
+        final int[] progress;  // next literal each rule expects
+        final int[] lastEnd;   // end of that rule's previous literal
+        final int[][] spans;   // field start/end pairs per rule
+        final int[] fedAt;     // text offsets of the last characters fed to the automaton
+
+        Scratch(int rules, int maxLiteral) {
+            progress = new int[rules];
+            lastEnd = new int[rules];
+            spans = new int[rules][];
+            fedAt = new int[Math.max(1, maxLiteral)];
+        }
+    }
+
+    private TransactionFormatRules(Rule[] rules) {
+        this.rules = rules;
+
+        // Symbol table
+        List<Character> extras = new ArrayList<>();
+        int symbols = 1;
+        int longest = 0;
+        for (Rule rule : rules) {
+            for (String literal : rule.literals) {
+                longest = Math.max(longest, literal.length());
+                for (int i = 0; i < literal.length(); i++) {
+                    char c = literal.charAt(i);
+                    if (c < 128) {
+                        if (asciiSymbols[c] == 0) asciiSymbols[c] = symbols++;
+                    } else if (!extras.contains(c)) {
+                        extras.add(c);
+                    }
+                }
+            }
+        }
+        maxLiteral = longest;
+        extraChars = new char[extras.size()];
+        for (int i = 0; i < extraChars.length; i++) extraChars[i] = extras.get(i);
+        Arrays.sort(extraChars);
+        extraSymbols = new int[extraChars.length];
+        for (int i = 0; i < extraChars.length; i++) extraSymbols[i] = symbols++;
+        int alphabet = symbols;
+
+        // Trie of every literal of every rule
+        List<int[]> gotoTable = new ArrayList<>();
+        List<List<int[]>> outputs = new ArrayList<>();
+        gotoTable.add(newRow(alphabet));
+        outputs.add(new ArrayList<>());
+        for (int r = 0; r < rules.length; r++) {
+            String[] literals = rules[r].literals;
+            for (int k = 0; k < literals.length; k++) {
+                int state = 0;
+                for (int i = 0; i < literals[k].length(); i++) {
+                    int symbol = symbolOf(literals[k].charAt(i));
+                    if (gotoTable.get(state)[symbol] < 0) {
+                        gotoTable.get(state)[symbol] = gotoTable.size();
+                        gotoTable.add(newRow(alphabet));
+                        outputs.add(new ArrayList<>());
+                    }
+                    state = gotoTable.get(state)[symbol];
+                }
+                outputs.get(state).add(new int[]{r, k});
+            }
+        }
+
+        int states = gotoTable.size();
+        next = gotoTable.toArray(new int[states][]);
+        outputLink = new int[states];
+        outFirst = new int[states];
+        outCount = new int[states];
+        int total = 0;
+        for (int s = 0; s < states; s++) {
+            outFirst[s] = total;
+            outCount[s] = outputs.get(s).size();
+            total += outCount[s];
+        }
+        outRule = new int[total];
+        outSegment = new int[total];
+        for (int s = 0; s < states; s++) {
+            for (int i = 0; i < outCount[s]; i++) {
+                int[] out = outputs.get(s).get(i);
+                outRule[outFirst[s] + i] = out[0];
+                outSegment[outFirst[s] + i] = out[1];
+            }
+        }
+
+        // Failure links folded into a full DFA
+        int[] fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < alphabet; c++) {
+            int child = next[0][c];
+            if (child < 0) {
+                next[0][c] = 0;
+            } else {
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int f = fail[state];
+            outputLink[state] = outCount[f] > 0 ? f : outputLink[f];
+            for (int c = 0; c < alphabet; c++) {
+                int child = next[state][c];
+                if (child < 0) {
+                    next[state][c] = next[f][c];
+                } else {
+                    fail[child] = next[f][c];
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    private static int[] newRow(int alphabet) {
+        int[] row = new int[alphabet];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static char fold(char c) {
+        if (c >= 'A' && c <= 'Z') return (char) (c + 32);
+        if (Character.isWhitespace(c)) return ' ';
+        return c;
+    }
+
+    private int symbolOf(char c) {
+        c = fold(c);
+        if (c < 128) return asciiSymbols[c];
+        int i = Arrays.binarySearch(extraChars, c);
+        return i >= 0 ? extraSymbols[i] : 0;
+    }
+
+    // ---------------------------------------------------------------------------------
+    // Snapshot management
+    // ---------------------------------------------------------------------------------
+
+    /**
+     * Load the stored rules and watch for changes. Safe to call repeatedly.
+     */
+    public static synchronized void init(Context context) {
+        if (initialized) return;
+        SharedPreferences prefs = context.getApplicationContext()
+                .getSharedPreferences(SelectedApps.PREFS_NAME, Context.MODE_PRIVATE);
+        prefs.registerOnSharedPreferenceChangeListener(prefsListener);
+        rebuild(prefs.getString(KEY_TRANSACTION_FORMATS, null), null);
+        initialized = true;
+    }
+
+    public static TransactionFormatRules get() {
+        return current;
+    }
+
+    /**
+     * Compile the rules in a JSON array string and swap them in. Invalid rules are
+     * skipped and described in {@code errors} when it is non-null.
+     *
+     * @return the number of rules compiled
+     */
+    static int rebuild(String formatsJson, List<String> errors) {
+        if (formatsJson == null || formatsJson.isEmpty()) {
+            current = EMPTY;
+            return 0;
+        }
+        List<Rule> compiled = new ArrayList<>();
+        try {
+            JSONArray formats = new JSONArray(formatsJson);
+            for (int i = 0; i < formats.length(); i++) {
+                JSONObject format = formats.optJSONObject(i);
+                try {
+                    compiled.add(compile(format, i));
+                } catch (IllegalArgumentException e) {
+                    Log.w(TAG, "Skipping format " + i + ": " + e.getMessage());
+                    if (errors != null) errors.add("Format " + i + ": " + e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error parsing transaction formats: " + e.getMessage());
+            if (errors != null) errors.add(e.getMessage());
+            return 0;
+        }
+        current = new TransactionFormatRules(compiled.toArray(new Rule[0]));
+        Log.d(TAG, "Compiled " + compiled.size() + " transaction formats");
+        return compiled.size();
+    }
+
+    static Rule compile(JSONObject format, int index) {
+        if (format == null) throw new IllegalArgumentException("not an object");
+        String pattern = format.optString("pattern", "");
+        if (pattern.isEmpty()) throw new IllegalArgumentException("missing pattern");
+
+        List<String> literals = new ArrayList<>();
+        List<Integer> fields = new ArrayList<>();
+        int pendingField = FIELD_NONE;
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '{') {
+                int close = pattern.indexOf('}', i);
+                if (close < 0) throw new IllegalArgumentException("unclosed placeholder");
+                int field = fieldOf(pattern.substring(i + 1, close).trim());
+                if (literal.length() > 0) {
+                    literals.add(literal.toString());
+                    fields.add(pendingField);
+                    literal.setLength(0);
+                    pendingField = FIELD_NONE;
+                }
+                if (pendingField != FIELD_NONE) {
+                    throw new IllegalArgumentException("placeholders need literal text between them");
+                }
+                pendingField = field;
+                i = close + 1;
+            } else {
+                char folded = fold(c);
+                // Collapse runs of whitespace into one space
+                if (folded != ' ' || literal.length() == 0 || literal.charAt(literal.length() - 1) != ' ') {
+                    literal.append(folded);
+                }
+                i++;
+            }
+        }
+        if (literal.length() > 0) {
+            literals.add(literal.toString());
+            fields.add(pendingField);
+            pendingField = FIELD_NONE;
+        }
+        fields.add(pendingField);
+
+        if (literals.isEmpty()) throw new IllegalArgumentException("pattern has no literal text");
+        if (!fields.contains(FIELD_AMOUNT)) throw new IllegalArgumentException("pattern has no {amount}");
+
+        int[] fieldArray = new int[fields.size()];
+        for (int f = 0; f < fieldArray.length; f++) fieldArray[f] = fields.get(f);
+
+        String type = format.optString("type", "");
+        String fixedType = "debit".equals(type) || "credit".equals(type) ? type : null;
+        String timestampFormat = format.optString("timestampFormat", "");
+        if (!timestampFormat.isEmpty()) {
+            try {
+                new SimpleDateFormat(timestampFormat, Locale.ENGLISH);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("bad timestampFormat");
+            }
+        }
+
+        return new Rule(format.optString("id", "format_" + index),
+                literals.toArray(new String[0]), fieldArray, fixedType,
+                timestampFormat.isEmpty() ? null : timestampFormat,
+                words(format.optJSONArray("debitWords"), DEFAULT_DEBIT_WORDS),
+                words(format.optJSONArray("creditWords"), DEFAULT_CREDIT_WORDS),
+                sources(format.optJSONArray("sources")));
+    }
+
+    private static int fieldOf(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "amount":
+                return FIELD_AMOUNT;
+            case "merchant":
+                return FIELD_MERCHANT;
+            case "timestamp":
+            case "date":
+                return FIELD_TIMESTAMP;
+            case "direction":
+                return FIELD_DIRECTION;
+            case "ref":
+                return FIELD_REF;
+            case "*":
+                return FIELD_SKIP;
+            default:
+                throw new IllegalArgumentException("unknown placeholder {" + name + "}");
+        }
+    }
+
+    private static String[] words(JSONArray array, String[] defaults) {
+        if (array == null || array.length() == 0) return defaults;
+        String[] words = new String[array.length()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = array.optString(i, "").toLowerCase(Locale.ROOT);
+        }
+        return words;
+    }
+
+    private static Set<String> sources(JSONArray array) {
+        if (array == null || array.length() == 0) return null;
+        Set<String> sources = new HashSet<>();
+        for (int i = 0; i < array.length(); i++) {
+            String source = array.optString(i, "");
+            if (source.isEmpty()) continue;
+            // Sender IDs are compared in their normalized form; package names as-is
+            sources.add(source.indexOf('.') >= 0 ? source : SmsTemplateEngine.normalizeSender(source));
+        }
+        return sources.isEmpty() ? null : sources;
+    }
+
+    public int size() {
+        return rules.length;
+    }
+
+    // ---------------------------------------------------------------------------------
+    // Matching
+    // ---------------------------------------------------------------------------------
+
+    /**
+     * Match the text against every rule in one pass.
+     *
+     * @param source normalized SMS sender or package name, used for rules limited to sources
+     * @return the first rule to complete, or null
+     */
+    public ParsedTransaction match(String source, String text) {
+        if (rules.length == 0 || text == null || text.isEmpty()) return null;
+
+        Scratch scratch = this.scratch.get();
+        int[] progress = scratch.progress;
+        int[] lastEnd = scratch.lastEnd;
+        int[][] spans = scratch.spans;
+        int[] fedAt = scratch.fedAt;
+        Arrays.fill(progress, 0);
+
+        int state = 0;
+        int fed = 0;
+        boolean afterSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            // A whitespace run is one space, as in the compiled literals
+            boolean space = Character.isWhitespace(c);
+            if (space && afterSpace) continue;
+            afterSpace = space;
+            fedAt[fed % fedAt.length] = i;
+            fed++;
+
+            state = next[state][symbolOf(c)];
+            for (int s = outCount[state] > 0 ? state : outputLink[state]; s > 0; s = outputLink[s]) {
+                for (int o = outFirst[s]; o < outFirst[s] + outCount[s]; o++) {
+                    int r = outRule[o];
+                    Rule rule = rules[r];
+                    if (rule.sources != null && (source == null || !rule.sources.contains(source))) continue;
+
+                    int segment = outSegment[o];
+                    // Where the literal really starts, counting the whitespace that was skipped
+                    int start = fedAt[(fed - rule.literals[segment].length()) % fedAt.length];
+                    if (!advance(rule, r, segment, start, i + 1, text, progress, lastEnd, spans)) continue;
+
+                    if (progress[r] == rule.literals.length) {
+                        ParsedTransaction parsed = complete(rule, spans[r], lastEnd[r], text);
+                        if (parsed != null) return parsed;
+                        progress[r] = 0;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean advance(Rule rule, int r, int segment, int start, int end, String text,
+                                   int[] progress, int[] lastEnd, int[][] spans) {
+        int expected = progress[r];
+        if (segment == expected && expected > 0) {
+            if (start < lastEnd[r]) return false;
+            int[] span = spans[r];
+            if (fieldValid(rule.fields[segment], text, lastEnd[r], start, span, segment)) {
+                progress[r] = segment + 1;
+                lastEnd[r] = end;
+                return true;
+            }
+            progress[r] = 0;
+            expected = 0;
+        }
+        if (segment != 0) return false;
+        // Restart at this occurrence of the first literal unless the match in progress can still finish
+        if (expected > 0 && canContinue(rule.fields[expected], text, lastEnd[r], start)) return false;
+
+        int[] span = spans[r];
+        if (span == null) {
+            span = new int[rule.fields.length * 2];
+            spans[r] = span;
+        }
+        Arrays.fill(span, -1);
+        if (rule.fields[0] != FIELD_NONE) {
+            int fieldStart = scanBackward(rule.fields[0], text, start);
+            if (fieldStart < 0) return false;
+            span[0] = fieldStart;
+            span[1] = start;
+        }
+        progress[r] = 1;
+        lastEnd[r] = end;
+        return true;
+    }
+
+    // -- field scanners ------------------------------------------------------------------
+
+    private static boolean fieldValid(int field, String text, int from, int to, int[] span, int slot) {
+        int s = from;
+        int e = to;
+        if (field != FIELD_NONE) {
+            while (s < e && Character.isWhitespace(text.charAt(s))) s++;
+            while (e > s && Character.isWhitespace(text.charAt(e - 1))) e--;
+        }
+        boolean valid;
+        switch (field) {
+            case FIELD_NONE:
+                valid = isBlank(text, from, to);
+                break;
+            case FIELD_AMOUNT:
+                valid = amountEnd(text, s, e) == e && s < e;
+                break;
+            case FIELD_MERCHANT:
+                valid = s < e && e - s <= MAX_MERCHANT && !hasNewline(text, s, e);
+                break;
+            case FIELD_TIMESTAMP:
+                valid = s < e && e - s <= MAX_TIMESTAMP && !hasNewline(text, s, e);
+                break;
+            case FIELD_DIRECTION:
+                valid = s < e && e - s <= MAX_TOKEN && isLetters(text, s, e);
+                break;
+            case FIELD_REF:
+                valid = s < e && e - s <= MAX_TOKEN && isAlphanumeric(text, s, e);
+                break;
+            default:
+                valid = true;
+                break;
+        }
+        if (valid && field != FIELD_NONE) {
+            span[slot * 2] = s;
+            span[slot * 2 + 1] = e;
+        }
+        return valid;
+    }
+
+    // Whether a field that started at from could still be open at to: the text so far must
+    // fit the field's character class, so a false start ("Rs." inside "Mrs.") gives way to
+    // a later occurrence of the literal
+    private static boolean canContinue(int field, String text, int from, int to) {
+        int length = to - from;
+        switch (field) {
+            case FIELD_NONE:
+                return isBlank(text, from, to);
+            case FIELD_AMOUNT:
+                return length <= MAX_TOKEN + 2 && isAmountPrefix(text, from, to);
+            case FIELD_DIRECTION:
+                return length <= MAX_TOKEN + 2 && fitsToken(text, from, to, false);
+            case FIELD_REF:
+                return length <= MAX_TOKEN + 2 && fitsToken(text, from, to, true);
+            case FIELD_MERCHANT:
+                return length <= MAX_MERCHANT + 2 && !hasNewline(text, from, to);
+            case FIELD_TIMESTAMP:
+                return length <= MAX_TIMESTAMP + 2 && !hasNewline(text, from, to);
+            default:
+                return true;
+        }
+    }
+
+    // Start of a field that ends at end, or -1
+    private static int scanBackward(int field, String text, int end) {
+        int s = end;
+        switch (field) {
+            case FIELD_AMOUNT:
+                while (s > 0 && isAmountChar(text.charAt(s - 1))) s--;
+                while (s < end && !Character.isDigit(text.charAt(s))) s++; // leading '.' or ','
+                if (s == end) return -1;
+                int digitsStart = s;
+                // Optional currency marker in front of the number
+                int c = s;
+                while (c > 0 && text.charAt(c - 1) == ' ') c--;
+                if (c > 0 && text.charAt(c - 1) == '₹') return c - 1;
+                if (c >= 3 && text.regionMatches(true, c - 3, "Rs.", 0, 3)) return c - 3;
+                if (c >= 3 && text.regionMatches(true, c - 3, "INR", 0, 3)) return c - 3;
+                if (c >= 2 && text.regionMatches(true, c - 2, "Rs", 0, 2)) return c - 2;
+                return digitsStart;
+            case FIELD_DIRECTION:
+                while (s > 0 && Character.isLetter(text.charAt(s - 1)) && end - s < MAX_TOKEN) s--;
+                return s < end ? s : -1;
+            case FIELD_REF:
+                while (s > 0 && Character.isLetterOrDigit(text.charAt(s - 1)) && end - s < MAX_TOKEN) s--;
+                return s < end ? s : -1;
+            case FIELD_MERCHANT:
+            case FIELD_TIMESTAMP:
+                int max = field == FIELD_MERCHANT ? MAX_MERCHANT : MAX_TIMESTAMP;
+                while (s > 0 && text.charAt(s - 1) != '\n' && end - s < max) s--;
+                while (s < end && Character.isWhitespace(text.charAt(s))) s++;
+                return s < end ? s : -1;
+            default:
+                return 0;
+        }
+    }
+
+    // End of a field that starts at start, or -1
+    private static int scanForward(int field, String text, int start) {
+        int length = text.length();
+        int s = start;
+        while (s < length && text.charAt(s) == ' ') s++;
+        int e = s;
+        switch (field) {
+            case FIELD_AMOUNT:
+                e = amountEnd(text, s, Math.min(length, s + MAX_TOKEN));
+                return e > s ? e : -1;
+            case FIELD_DIRECTION:
+                while (e < length && Character.isLetter(text.charAt(e)) && e - s < MAX_TOKEN) e++;
+                return e > s ? e : -1;
+            case FIELD_REF:
+                while (e < length && Character.isLetterOrDigit(text.charAt(e)) && e - s < MAX_TOKEN) e++;
+                return e > s ? e : -1;
+            case FIELD_MERCHANT:
+                while (e < length && e - s < MAX_MERCHANT) {
+                    char c = text.charAt(e);
+                    if (c == '\n' || c == '(' || (c == '.' && (e + 1 == length || text.charAt(e + 1) == ' '))) break;
+                    e++;
+                }
+                while (e > s && Character.isWhitespace(text.charAt(e - 1))) e--;
+                return e > s ? e : -1;
+            case FIELD_TIMESTAMP:
+                while (e < length && text.charAt(e) != '\n' && e - s < MAX_TIMESTAMP) e++;
+                while (e > s && Character.isWhitespace(text.charAt(e - 1))) e--;
+                return e > s ? e : -1;
+            default:
+                return start;
+        }
+    }
+
+    /**
+     * End of an amount starting at s: optional currency marker, digits with commas,
+     * optional decimals. Returns s if there is no number.
+     */
+    private static int amountEnd(String text, int s, int limit) {
+        int i = s;
+        if (i < limit && text.charAt(i) == '₹') {
+            i++;
+        } else if (i + 3 <= limit && text.regionMatches(true, i, "Rs.", 0, 3)) {
+            i += 3;
+        } else if (i + 3 <= limit && text.regionMatches(true, i, "INR", 0, 3)) {
+            i += 3;
+        } else if (i + 2 <= limit && text.regionMatches(true, i, "Rs", 0, 2)) {
+            i += 2;
+        }
+        while (i < limit && text.charAt(i) == ' ') i++;
+
+        int digits = i;
+        while (i < limit && (Character.isDigit(text.charAt(i)) || (text.charAt(i) == ',' && i > digits))) i++;
+        if (i == digits) return s;
+        if (i + 1 < limit && text.charAt(i) == '.' && Character.isDigit(text.charAt(i + 1))) {
+            i += 2;
+            if (i < limit && Character.isDigit(text.charAt(i))) i++;
+        }
+        return i;
+    }
+
+    private static boolean isAmountChar(char c) {
+        return Character.isDigit(c) || c == ',' || c == '.';
+    }
+
+    // Whitespace, an optional currency marker, then only digits and separators
+    private static boolean isAmountPrefix(String text, int from, int to) {
+        int i = from;
+        while (i < to && text.charAt(i) == ' ') i++;
+        if (i < to && text.charAt(i) == '₹') {
+            i++;
+        } else if (i + 3 <= to && text.regionMatches(true, i, "Rs.", 0, 3)) {
+            i += 3;
+        } else if (i + 3 <= to && text.regionMatches(true, i, "INR", 0, 3)) {
+            i += 3;
+        } else if (i + 2 <= to && text.regionMatches(true, i, "Rs", 0, 2)) {
+            i += 2;
+        }
+        for (; i < to; i++) {
+            char c = text.charAt(i);
+            if (!isAmountChar(c) && c != ' ') return false;
+        }
+        return true;
+    }
+
+    private static boolean fitsToken(String text, int from, int to, boolean digits) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == ' ') continue;
+            if (digits ? !Character.isLetterOrDigit(c) : !Character.isLetter(c)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isBlank(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static boolean hasNewline(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\n') return true;
+        }
+        return false;
+    }
+
+    private static boolean isLetters(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isLetter(text.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static boolean isAlphanumeric(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    // -- result --------------------------------------------------------------------------
+
+    private static ParsedTransaction complete(Rule rule, int[] span, int lastEnd, String text) {
+        int trailing = rule.fields[rule.literals.length];
+        if (trailing != FIELD_NONE && trailing != FIELD_SKIP) {
+            int e = scanForward(trailing, text, lastEnd);
+            if (e < 0) return null;
+            int s = lastEnd;
+            while (s < e && text.charAt(s) == ' ') s++;
+            span[rule.literals.length * 2] = s;
+            span[rule.literals.length * 2 + 1] = e;
+        }
+
+        String amountText = null;
+        String merchant = null;
+        String timestampText = null;
+        String direction = null;
+        String reference = null;
+        for (int slot = 0; slot < rule.fields.length; slot++) {
+            int s = span[slot * 2];
+            if (s < 0) continue;
+            String value = text.substring(s, span[slot * 2 + 1]);
+            switch (rule.fields[slot]) {
+                case FIELD_AMOUNT:
+                    amountText = value;
+                    break;
+                case FIELD_MERCHANT:
+                    merchant = value;
+                    break;
+                case FIELD_TIMESTAMP:
+                    timestampText = value;
+                    break;
+                case FIELD_DIRECTION:
+                    direction = value;
+                    break;
+                case FIELD_REF:
+                    reference = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        double amount = parseAmount(amountText);
+        if (amount <= 0) return null;
+
+        String type = rule.fixedType;
+        if (direction != null) {
+            String word = direction.toLowerCase(Locale.ROOT);
+            if (contains(rule.debitWords, word)) {
+                type = "debit";
+            } else if (contains(rule.creditWords, word)) {
+                type = "credit";
+            } else {
+                return null; // {direction} must be one of the rule's words
+            }
+        }
+        if (type == null) {
+            type = SmsTemplateEngine.inferType(text);
+        }
+
+        long timestamp = 0;
+        if (timestampText != null && rule.timestampFormat != null) {
+            SimpleDateFormat format = new SimpleDateFormat(rule.timestampFormat, Locale.ENGLISH);
+            Date date = format.parse(timestampText, new ParsePosition(0));
+            if (date != null) timestamp = date.getTime();
+        }
+
+        return new ParsedTransaction(amount, type, merchant, timestamp, reference, "rule:" + rule.id);
+    }
+
+    private static double parseAmount(String value) {
+        if (value == null) return 0;
+        StringBuilder digits = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isDigit(c) || c == '.') digits.append(c);
+        }
+        // A currency marker like "Rs." leaves a leading '.'
+        while (digits.length() > 0 && digits.charAt(0) == '.') digits.deleteCharAt(0);
+        try {
+            return digits.length() > 0 ? Double.parseDouble(digits.toString()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean contains(String[] words, String word) {
+        for (String w : words) {
+            if (w.equals(word)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,168 @@
+package com.moneymanager.app;
+
+import android.util.Log;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fallback field extraction for transactions the bank templates only partly cover.
+ *
+ * Every pattern is compiled once; Pattern is immutable and each call gets its own
+ * Matcher, so this is safe on any thread. Callers run it on their worker thread
+ * before the overlay is scheduled and hand the finished {@link ParsedTransaction}
+ * over, so the UI thread only binds views.
+ */
+public final class TransactionParser {
+    private static final String TAG = "TransactionParser";
+
+    // Tried in order; the first pattern that matches anywhere in the text wins
+    private static final Pattern[] AMOUNT_PATTERNS = {
+            Pattern.compile("Rs\\.(\\d+\\.\\d{2})"),           // Rs.100.00
+            Pattern.compile("Rs\\s+(\\d+\\.\\d{2})"),         // Rs 100.00
+            Pattern.compile("Rs\\.(\\d+)"),                   // Rs.100
+            Pattern.compile("Rs\\s+(\\d+)"),                  // Rs 100
+            Pattern.compile("₹\\s*(\\d+\\.\\d{2})"),          // ₹100.00 or ₹ 100.00
+            Pattern.compile("₹\\s*(\\d+)"),                   // ₹100 or ₹ 100
+            Pattern.compile("INR\\s+(\\d+\\.\\d{2})"),        // INR 100.00
+            Pattern.compile("INR\\s+(\\d+)")                  // INR 100
+    };
+
+    // (2025:01:04 13:45:10)
+    private static final Pattern TIMESTAMP_PATTERN =
+            Pattern.compile("\\((\\d{4}):(\\d{2}):(\\d{2}) (\\d{2}):(\\d{2}):(\\d{2})\\)");
+
+    // "at MERCHANT_NAME ("
+    private static final Pattern MERCHANT_PATTERN =
+            Pattern.compile("at\\s+([A-Za-z0-9\\s&.-]+?)\\s*\\(", Pattern.CASE_INSENSITIVE);
+
+    private TransactionParser() {
+    }
+
+    /**
+     * Bank templates first, then the fallbacks for whatever they left empty.
+     * Never returns null; amount is 0 when nothing matched.
+     */
+    public static ParsedTransaction parseNotification(String packageName, String title, String text) {
+        ParsedTransaction template = SmsTemplateEngine.getInstance().parseNotification(packageName, title, text, false);
+        return complete(template, text);
+    }
+
+    /**
+     * Fill the fields a template result (possibly null) is missing from the raw text.
+     */
+    public static ParsedTransaction complete(ParsedTransaction template, String text) {
+        if (template != null && template.amount != 0.0 && template.timestamp != 0 && template.merchant != null) {
+            return template;
+        }
+        double amount = template != null && template.amount != 0.0 ? template.amount : parseAmount(text);
+        String type = template != null ? template.type : parseType(text);
+        long timestamp = template != null && template.timestamp != 0 ? template.timestamp : parseTimestamp(text);
+        String merchant = template != null && template.merchant != null ? template.merchant : extractMerchant(text);
+        return new ParsedTransaction(amount, type, merchant, timestamp,
+                template != null ? template.reference : null,
+                template != null ? template.templateId : "fallback");
+    }
+
+    /**
+     * How far a result can be trusted without the user looking at it, 0..1.
+     * The user's own formats and bank templates are exact; the fallbacks and OCR guess.
+     */
+    public static float confidence(ParsedTransaction parsed) {
+        if (parsed == null || parsed.amount <= 0) return 0f;
+        String id = parsed.templateId != null ? parsed.templateId : "";
+        if (id.startsWith("rule:")) return 1f;
+        switch (id) {
+            case "builtin":
+                return 0.8f;
+            case "generic":
+            case "fallback":
+                return 0.5f;
+            case "ocr":
+                return 0.4f;
+            default:
+                return parsed.reference != null ? 1f : 0.9f;
+        }
+    }
+
+    /**
+     * The parsed merchant, or null when there is none or it is a placeholder such as OCR's
+     * "Unknown". This is what merchant history is keyed on; the fallbacks of
+     * {@link #displayMerchant} (the title, "Unknown Merchant") are shared by unrelated
+     * captures and must not be.
+     */
+    public static String knownMerchant(String merchant) {
+        if (merchant == null) return null;
+        String trimmed = merchant.trim();
+        if (trimmed.isEmpty() || trimmed.equalsIgnoreCase("unknown") || trimmed.equalsIgnoreCase("unknown merchant")) {
+            return null;
+        }
+        return trimmed;
+    }
+
+    /**
+     * The name shown for a capture: the parsed merchant, else the title.
+     */
+    public static String displayMerchant(String merchant, String title) {
+        if (merchant != null && !merchant.isEmpty()) return merchant;
+        return title != null && !title.isEmpty() ? title : "Unknown Merchant";
+    }
+
+    public static double parseAmount(String text) {
+        if (text == null) return 0.0;
+        for (Pattern pattern : AMOUNT_PATTERNS) {
+            Matcher matcher = pattern.matcher(text);
+            if (matcher.find()) {
+                try {
+                    return Double.parseDouble(matcher.group(1));
+                } catch (NumberFormatException e) {
+                    Log.w(TAG, "Error parsing amount with pattern " + pattern.pattern() + ": " + e.getMessage());
+                }
+            }
+        }
+        return 0.0;
+    }
+
+    public static long parseTimestamp(String text) {
+        if (text == null) return 0;
+        Matcher matcher = TIMESTAMP_PATTERN.matcher(text);
+        if (!matcher.find()) return 0;
+        try {
+            int year = Integer.parseInt(matcher.group(1));
+            int month = Integer.parseInt(matcher.group(2)) - 1; // Calendar month is 0-based
+            int day = Integer.parseInt(matcher.group(3));
+            int hour = Integer.parseInt(matcher.group(4));
+            int minute = Integer.parseInt(matcher.group(5));
+            int second = Integer.parseInt(matcher.group(6));
+
+            Calendar cal = Calendar.getInstance();
+            // Validate year - if it's in the past, use current year
+            int currentYear = cal.get(Calendar.YEAR);
+            if (year < currentYear) {
+                year = currentYear;
+            }
+            cal.set(year, month, day, hour, minute, second);
+            cal.set(Calendar.MILLISECOND, 0);
+            return cal.getTimeInMillis();
+        } catch (NumberFormatException e) {
+            Log.e(TAG, "Error parsing timestamp: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    public static String parseType(String text) {
+        if (text == null) return "debit";
+        String lowerText = text.toLowerCase(Locale.ROOT);
+        if (lowerText.contains("credited") || lowerText.contains("cr.")) {
+            return "credit";
+        }
+        return "debit";
+    }
+
+    public static String extractMerchant(String text) {
+        if (text == null) return null;
+        Matcher matcher = MERCHANT_PATTERN.matcher(text);
+        return matcher.find() ? matcher.group(1).trim() : null;
+    }
+}
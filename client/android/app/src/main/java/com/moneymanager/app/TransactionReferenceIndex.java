@@ -0,0 +1,217 @@
+package com.moneymanager.app;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent index of every UPI RRN / transaction reference seen on this device.
+ *
+ * A Bloom filter in a memory-mapped file answers "never seen" without touching the
+ * exact set. Only on a Bloom hit is the exact set (an append-only file of longs,
+ * loaded lazily into a sorted array) consulted. A payment seen months ago is
+ * therefore recognised before any parsing, OCR upload or overlay.
+ */
+public class TransactionReferenceIndex {
+    private static final String TAG = "ReferenceIndex";
+    private static final String BLOOM_FILE = "reference_bloom.bin";
+    private static final String EXACT_FILE = "reference_index.bin";
+
+    private static final int BLOOM_HEADER_BYTES = 8; // magic + version
+    private static final int BLOOM_MAGIC = 0x52454649; // "REFI"
+    private static final int BLOOM_VERSION = 1;
+    private static final int BLOOM_BITS = 1 << 20; // 128 KB, ~1% false positives at 100k refs
+    private static final int BLOOM_HASHES = 7;
+
+    // A 12-digit reference after a reference keyword, e.g. "UPI Ref No 412345678901".
+    // OCR text often puts the value on the line below its label, so newlines are allowed.
+    private static final Pattern REFERENCE_PATTERN = Pattern.compile(
+            "(?i)(?:ref|rrn|utr|upi|txn|transaction)[^\\d]{0,30}(\\d{12})(?!\\d)");
+
+    private static TransactionReferenceIndex instance;
+
+    private final File bloomFile;
+    private final File exactFile;
+    private MappedByteBuffer bloom;
+    private long[] sortedOnDisk; // loaded on the first Bloom hit
+    private final HashSet<Long> addedSinceLoad = new HashSet<>();
+    private long bloomHits = 0;
+    private long bloomMisses = 0;
+
+    public static synchronized TransactionReferenceIndex getInstance(Context context) {
+        if (instance == null) {
+            File dir = context.getApplicationContext().getFilesDir();
+            instance = new TransactionReferenceIndex(new File(dir, BLOOM_FILE), new File(dir, EXACT_FILE));
+        }
+        return instance;
+    }
+
+    TransactionReferenceIndex(File bloomFile, File exactFile) {
+        this.bloomFile = bloomFile;
+        this.exactFile = exactFile;
+    }
+
+    /**
+     * First keyword-anchored 12-digit reference in the text, or null.
+     */
+    public static String extractReference(String text) {
+        if (text == null || text.length() < 12) return null;
+        Matcher m = REFERENCE_PATTERN.matcher(text);
+        return m.find() ? m.group(1) : null;
+    }
+
+    public synchronized boolean contains(String reference) {
+        long value = toLong(reference);
+        if (value < 0 || !openBloom()) return false;
+
+        if (!bloomMightContain(value)) {
+            bloomMisses++;
+            return false;
+        }
+        bloomHits++;
+        return exactContains(value);
+    }
+
+    /**
+     * Record a reference.
+     *
+     * @return false if it was already present
+     */
+    public synchronized boolean add(String reference) {
+        long value = toLong(reference);
+        if (value < 0 || !openBloom()) return false;
+
+        if (bloomMightContain(value) && exactContains(value)) {
+            return false;
+        }
+
+        bloomAdd(value);
+        addedSinceLoad.add(value);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(exactFile, true)))) {
+            out.writeLong(value);
+        } catch (IOException e) {
+            Log.e(TAG, "Error appending reference: " + e.getMessage());
+        }
+        return true;
+    }
+
+    public synchronized long getBloomHits() {
+        return bloomHits;
+    }
+
+    public synchronized long getBloomMisses() {
+        return bloomMisses;
+    }
+
+    private static long toLong(String reference) {
+        if (reference == null || reference.isEmpty() || reference.length() > 18) return -1;
+        long value = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private boolean openBloom() {
+        if (bloom != null) return true;
+        boolean fresh = !bloomFile.exists();
+        long size = BLOOM_HEADER_BYTES + BLOOM_BITS / 8;
+        try (RandomAccessFile raf = new RandomAccessFile(bloomFile, "rw")) {
+            raf.setLength(size);
+            bloom = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            Log.e(TAG, "Error mapping Bloom filter: " + e.getMessage());
+            return false;
+        }
+
+        if (fresh || bloom.getInt(0) != BLOOM_MAGIC || bloom.getInt(4) != BLOOM_VERSION) {
+            rebuildBloom();
+        }
+        return true;
+    }
+
+    private void rebuildBloom() {
+        for (int i = BLOOM_HEADER_BYTES; i < bloom.capacity(); i++) {
+            bloom.put(i, (byte) 0);
+        }
+        long[] existing = loadExact();
+        for (long value : existing) {
+            bloomAdd(value);
+        }
+        bloom.putInt(0, BLOOM_MAGIC);
+        bloom.putInt(4, BLOOM_VERSION);
+        Log.d(TAG, "Bloom filter rebuilt from " + existing.length + " references");
+    }
+
+    private boolean bloomMightContain(long value) {
+        long h1 = mix(value);
+        long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = (int) ((h1 + i * h2) & (BLOOM_BITS - 1));
+            int index = BLOOM_HEADER_BYTES + (bit >>> 3);
+            if ((bloom.get(index) & (1 << (bit & 7))) == 0) return false;
+        }
+        return true;
+    }
+
+    private void bloomAdd(long value) {
+        long h1 = mix(value);
+        long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = (int) ((h1 + i * h2) & (BLOOM_BITS - 1));
+            int index = BLOOM_HEADER_BYTES + (bit >>> 3);
+            bloom.put(index, (byte) (bloom.get(index) | (1 << (bit & 7))));
+        }
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private boolean exactContains(long value) {
+        if (addedSinceLoad.contains(value)) return true;
+        if (sortedOnDisk == null) {
+            sortedOnDisk = loadExact();
+            Arrays.sort(sortedOnDisk);
+            addedSinceLoad.clear();
+        }
+        return Arrays.binarySearch(sortedOnDisk, value) >= 0;
+    }
+
+    private long[] loadExact() {
+        if (!exactFile.exists()) return new long[0];
+        long[] values = new long[(int) (exactFile.length() / 8)];
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(exactFile)))) {
+            while (count < values.length) {
+                values[count++] = in.readLong();
+            }
+        } catch (EOFException e) {
+            count--;
+        } catch (IOException e) {
+            Log.e(TAG, "Error loading references: " + e.getMessage());
+        }
+        return count == values.length ? values : Arrays.copyOf(values, Math.max(0, count));
+    }
+}
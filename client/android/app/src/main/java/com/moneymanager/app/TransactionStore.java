@@ -0,0 +1,510 @@
+package com.moneymanager.app;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable native store for expenses confirmed in the overlay.
+ *
+ * Saves no longer depend on the WebView being alive: a row is written here first and
+ * stays "pending" until JS has saved it to the server and calls {@link #markSynced}.
+ * Writes are queued and a single writer thread inserts everything queued so far in
+ * one transaction; the database runs in WAL mode so reads from the plugin never wait
+ * for the writer. A batch that fails to commit is kept in memory and retried with
+ * backoff, ahead of anything queued after it, rather than dropped; it is only lost if
+ * the process dies before a retry succeeds.
+ *
+ * The same database mirrors the user's server-side expenses ({@link ExpenseDeltaSync}),
+ * with a per-user watermark so only changed rows are fetched.
+ */
+public class TransactionStore extends SQLiteOpenHelper {
+    private static final String TAG = "TransactionStore";
+    private static final String DB_NAME = "transactions.db";
+    private static final int DB_VERSION = 2;
+    static final String TABLE = "transactions";
+    static final String SERVER_TABLE = "server_expenses";
+    static final String WATERMARK_TABLE = "sync_watermarks";
+    public static final int STATE_PENDING = 0;
+    public static final int STATE_SYNCED = 1;
+    public static final int STATE_REJECTED = 2; // refused by the server, never resent
+    public static final int STATE_HELD = 3; // auto-committed, not sent until its undo window passes
+    private static final int MAX_BATCH = 64;
+    private static final long RETRY_MIN_MS = 1000;
+    private static final long RETRY_MAX_MS = 60 * 1000L;
+
+    private static volatile TransactionStore instance;
+
+    private final LinkedBlockingQueue<Record> writes = new LinkedBlockingQueue<>();
+    private final ScheduledExecutorService writer =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "TransactionStore"));
+    private final Runnable writeTask = this::writeQueued;
+    // Writer thread only: a batch whose commit failed, retried before the queue
+    private final List<Record> unwritten = new ArrayList<>();
+    private long retryDelayMs;
+    private boolean retryScheduled;
+
+    /**
+     * An expense as the server has it, mirrored by {@link ExpenseDeltaSync}.
+     */
+    public static final class ServerExpense {
+        public final long id;
+        public final String clientId;
+        public final double amount;
+        public final String description;
+        public final long date;
+        public final long categoryId; // 0 when uncategorised
+        public final String category;
+        public final String source;
+        public final String updatedAt; // ISO-8601, as the server sent it
+
+        public ServerExpense(long id, String clientId, double amount, String description, long date,
+                             long categoryId, String category, String source, String updatedAt) {
+            this.id = id;
+            this.clientId = clientId;
+            this.amount = amount;
+            this.description = description;
+            this.date = date;
+            this.categoryId = categoryId;
+            this.category = category;
+            this.source = source;
+            this.updatedAt = updatedAt;
+        }
+    }
+
+    /**
+     * Position in the server's (updatedAt, id) change order.
+     */
+    public static final class Watermark {
+        public final String since;
+        public final long afterId;
+
+        public Watermark(String since, long afterId) {
+            this.since = since;
+            this.afterId = afterId;
+        }
+    }
+
+    /**
+     * One stored transaction. Immutable; {@link #id} is 0 until it has been written.
+     */
+    public static final class Record {
+        public final long id;
+        public final String clientId;
+        public final double amount;
+        public final String type;
+        public final String category;
+        public final String title;
+        public final String text;
+        public final String packageName;
+        public final String source;
+        public final long transactionTime;
+        public final long createdAt;
+        public final int syncState;
+
+        public Record(long id, String clientId, double amount, String type, String category, String title,
+                      String text, String packageName, String source, long transactionTime, long createdAt,
+                      int syncState) {
+            this.id = id;
+            this.clientId = clientId;
+            this.amount = amount;
+            this.type = type;
+            this.category = category;
+            this.title = title;
+            this.text = text;
+            this.packageName = packageName;
+            this.source = source;
+            this.transactionTime = transactionTime;
+            this.createdAt = createdAt;
+            this.syncState = syncState;
+        }
+    }
+
+    public static TransactionStore getInstance(Context context) {
+        if (instance == null) {
+            synchronized (TransactionStore.class) {
+                if (instance == null) {
+                    instance = new TransactionStore(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private TransactionStore(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "client_id TEXT NOT NULL UNIQUE, " +
+                "amount REAL NOT NULL, " +
+                "type TEXT NOT NULL, " +
+                "category TEXT, " +
+                "title TEXT, " +
+                "text TEXT, " +
+                "package TEXT, " +
+                "source TEXT, " +
+                "transaction_time INTEGER NOT NULL, " +
+                "created_at INTEGER NOT NULL, " +
+                "sync_state INTEGER NOT NULL DEFAULT " + STATE_PENDING + ")");
+        db.execSQL("CREATE INDEX idx_transactions_pending ON " + TABLE + " (sync_state, id)");
+        createServerTables(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createServerTables(db);
+        }
+    }
+
+    private static void createServerTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + SERVER_TABLE + " (" +
+                "user_id TEXT NOT NULL, " +
+                "id INTEGER NOT NULL, " +
+                "client_id TEXT, " +
+                "amount REAL NOT NULL, " +
+                "description TEXT, " +
+                "date INTEGER NOT NULL, " +
+                "category_id INTEGER, " +
+                "category TEXT, " +
+                "source TEXT, " +
+                "updated_at TEXT NOT NULL, " +
+                "PRIMARY KEY (user_id, id))");
+        db.execSQL("CREATE INDEX idx_server_expenses_date ON " + SERVER_TABLE + " (user_id, date, id)");
+        db.execSQL("CREATE TABLE " + WATERMARK_TABLE + " (" +
+                "user_id TEXT PRIMARY KEY, " +
+                "since TEXT NOT NULL, " +
+                "after_id INTEGER NOT NULL)");
+    }
+
+    /**
+     * Queue a confirmed expense for writing.
+     *
+     * @return the client id the row will have, which identifies it across JS and the server
+     */
+    public String save(double amount, String type, String category, String title, String text,
+                       String packageName, String source, long transactionTime) {
+        return save(amount, type, category, title, text, packageName, source, transactionTime, STATE_PENDING);
+    }
+
+    /**
+     * @param state {@link #STATE_PENDING}, or {@link #STATE_HELD} to keep the row back from sync
+     */
+    public String save(double amount, String type, String category, String title, String text,
+                       String packageName, String source, long transactionTime, int state) {
+        String clientId = UUID.randomUUID().toString();
+        writes.offer(new Record(0, clientId, amount, type != null ? type : "debit", category, title, text,
+                packageName, source, transactionTime, System.currentTimeMillis(), state));
+        writer.execute(writeTask);
+        return clientId;
+    }
+
+    /**
+     * Block until everything queued so far is on disk.
+     */
+    public void flush() {
+        try {
+            writer.submit(writeTask).get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            Log.e(TAG, "Error flushing transaction store: " + e.getMessage());
+        }
+    }
+
+    // Writer thread: drain the queue into as few transactions as possible
+    private void writeQueued() {
+        List<Record> batch = new ArrayList<>(unwritten);
+        unwritten.clear();
+        while (!batch.isEmpty() || writes.drainTo(batch, MAX_BATCH) > 0) {
+            if (!insert(batch)) {
+                unwritten.addAll(batch);
+                scheduleRetry();
+                return;
+            }
+            retryDelayMs = 0;
+            batch.clear();
+        }
+    }
+
+    private void scheduleRetry() {
+        if (retryScheduled) return;
+        retryScheduled = true;
+        retryDelayMs = retryDelayMs == 0 ? RETRY_MIN_MS : Math.min(RETRY_MAX_MS, retryDelayMs * 2);
+        Log.w(TAG, "Retrying " + unwritten.size() + " unsaved transaction(s) in " + retryDelayMs + "ms");
+        writer.schedule(() -> {
+            retryScheduled = false;
+            writeQueued();
+        }, retryDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return false if the batch was not committed
+     */
+    private boolean insert(List<Record> batch) {
+        SQLiteDatabase db;
+        try {
+            db = getWritableDatabase();
+        } catch (Exception e) {
+            Log.e(TAG, "Cannot open transaction store: " + e.getMessage(), e);
+            return false;
+        }
+        boolean committed = false;
+        db.beginTransactionNonExclusive();
+        try (SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO " + TABLE +
+                " (client_id, amount, type, category, title, text, package, source, transaction_time, created_at, sync_state)" +
+                " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (Record record : batch) {
+                insert.clearBindings();
+                insert.bindString(1, record.clientId);
+                insert.bindDouble(2, record.amount);
+                insert.bindString(3, record.type);
+                bindNullable(insert, 4, record.category);
+                bindNullable(insert, 5, record.title);
+                bindNullable(insert, 6, record.text);
+                bindNullable(insert, 7, record.packageName);
+                bindNullable(insert, 8, record.source);
+                insert.bindLong(9, record.transactionTime);
+                insert.bindLong(10, record.createdAt);
+                insert.bindLong(11, record.syncState);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+            committed = true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error storing transactions: " + e.getMessage(), e);
+        } finally {
+            try {
+                db.endTransaction();
+            } catch (Exception e) {
+                Log.e(TAG, "Error committing transactions: " + e.getMessage(), e);
+                committed = false;
+            }
+        }
+        if (committed) {
+            Log.d(TAG, "💾 Stored " + batch.size() + " transaction(s)");
+        }
+        return committed;
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Newest first. Pass the last id of the previous page as {@code beforeId}, or 0 for the first page.
+     */
+    public List<Record> query(long beforeId, int limit, boolean pendingOnly) {
+        StringBuilder where = new StringBuilder();
+        List<String> args = new ArrayList<>();
+        if (beforeId > 0) {
+            where.append("id < ?");
+            args.add(String.valueOf(beforeId));
+        }
+        if (pendingOnly) {
+            if (where.length() > 0) where.append(" AND ");
+            where.append("sync_state = ").append(STATE_PENDING);
+        }
+
+        return read(where.length() > 0 ? where.toString() : null, args.toArray(new String[0]), "id DESC", limit);
+    }
+
+    private List<Record> read(String where, String[] args, String orderBy, int limit) {
+        List<Record> records = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE, null, where, args,
+                null, null, orderBy, String.valueOf(limit))) {
+            int id = cursor.getColumnIndexOrThrow("id");
+            int clientId = cursor.getColumnIndexOrThrow("client_id");
+            int amount = cursor.getColumnIndexOrThrow("amount");
+            int type = cursor.getColumnIndexOrThrow("type");
+            int category = cursor.getColumnIndexOrThrow("category");
+            int title = cursor.getColumnIndexOrThrow("title");
+            int text = cursor.getColumnIndexOrThrow("text");
+            int packageName = cursor.getColumnIndexOrThrow("package");
+            int source = cursor.getColumnIndexOrThrow("source");
+            int transactionTime = cursor.getColumnIndexOrThrow("transaction_time");
+            int createdAt = cursor.getColumnIndexOrThrow("created_at");
+            int syncState = cursor.getColumnIndexOrThrow("sync_state");
+            while (cursor.moveToNext()) {
+                records.add(new Record(cursor.getLong(id), cursor.getString(clientId), cursor.getDouble(amount),
+                        cursor.getString(type), cursor.getString(category), cursor.getString(title),
+                        cursor.getString(text), cursor.getString(packageName), cursor.getString(source),
+                        cursor.getLong(transactionTime), cursor.getLong(createdAt), cursor.getInt(syncState)));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Pending rows oldest first, for the sync job. Pass the last id of the previous batch as {@code afterId}.
+     */
+    public List<Record> queryPending(long afterId, int limit) {
+        return read("sync_state = " + STATE_PENDING + " AND id > ?", new String[]{String.valueOf(afterId)},
+                "id ASC", limit);
+    }
+
+    public int markSynced(List<String> clientIds) {
+        return markState(clientIds, STATE_SYNCED);
+    }
+
+    /**
+     * @return number of rows that changed state
+     */
+    public int markState(List<String> clientIds, int state) {
+        if (clientIds.isEmpty()) return 0;
+        // Pending inserts for these ids must land first
+        flush();
+        SQLiteDatabase db = getWritableDatabase();
+        int updated = 0;
+        db.beginTransactionNonExclusive();
+        try {
+            ContentValues values = new ContentValues();
+            values.put("sync_state", state);
+            for (String clientId : clientIds) {
+                updated += db.update(TABLE, values, "client_id = ?", new String[]{clientId});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return updated;
+    }
+
+    public Watermark getWatermark(String userId) {
+        try (Cursor cursor = getReadableDatabase().query(WATERMARK_TABLE, new String[]{"since", "after_id"},
+                "user_id = ?", new String[]{userId}, null, null, null)) {
+            if (cursor.moveToNext()) {
+                return new Watermark(cursor.getString(0), cursor.getLong(1));
+            }
+        }
+        return new Watermark("1970-01-01T00:00:00.000Z", 0);
+    }
+
+    /**
+     * Apply one page of server changes and advance the watermark in a single transaction,
+     * so a crash never leaves the watermark ahead of the rows.
+     */
+    public void applyServerChanges(String userId, List<ServerExpense> expenses, Watermark watermark) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try (SQLiteStatement upsert = db.compileStatement("INSERT OR REPLACE INTO " + SERVER_TABLE +
+                " (user_id, id, client_id, amount, description, date, category_id, category, source, updated_at)" +
+                " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+             SQLiteStatement confirm = db.compileStatement("UPDATE " + TABLE + " SET sync_state = " + STATE_SYNCED +
+                     " WHERE client_id = ? AND sync_state = " + STATE_PENDING)) {
+            for (ServerExpense expense : expenses) {
+                upsert.clearBindings();
+                upsert.bindString(1, userId);
+                upsert.bindLong(2, expense.id);
+                bindNullable(upsert, 3, expense.clientId);
+                upsert.bindDouble(4, expense.amount);
+                bindNullable(upsert, 5, expense.description);
+                upsert.bindLong(6, expense.date);
+                if (expense.categoryId > 0) {
+                    upsert.bindLong(7, expense.categoryId);
+                } else {
+                    upsert.bindNull(7);
+                }
+                bindNullable(upsert, 8, expense.category);
+                bindNullable(upsert, 9, expense.source);
+                upsert.bindString(10, expense.updatedAt);
+                upsert.executeInsert();
+
+                // A capture the server already has needs no upload
+                if (expense.clientId != null) {
+                    confirm.bindString(1, expense.clientId);
+                    confirm.executeUpdateDelete();
+                }
+            }
+            ContentValues values = new ContentValues();
+            values.put("user_id", userId);
+            values.put("since", watermark.since);
+            values.put("after_id", watermark.afterId);
+            db.insertWithOnConflict(WATERMARK_TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Mirrored server expenses, newest first. Pass the date and id of the last row of the
+     * previous page, or 0 and 0 for the first page.
+     */
+    public List<ServerExpense> queryServerExpenses(String userId, long beforeDate, long beforeId, int limit) {
+        String where = "user_id = ?";
+        String[] args;
+        if (beforeDate > 0) {
+            where += " AND (date < ? OR (date = ? AND id < ?))";
+            args = new String[]{userId, String.valueOf(beforeDate), String.valueOf(beforeDate), String.valueOf(beforeId)};
+        } else {
+            args = new String[]{userId};
+        }
+
+        List<ServerExpense> expenses = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(SERVER_TABLE,
+                new String[]{"id", "client_id", "amount", "description", "date", "category_id", "category", "source", "updated_at"},
+                where, args, null, null, "date DESC, id DESC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                expenses.add(new ServerExpense(cursor.getLong(0), cursor.getString(1), cursor.getDouble(2),
+                        cursor.getString(3), cursor.getLong(4), cursor.getLong(5), cursor.getString(6),
+                        cursor.getString(7), cursor.getString(8)));
+            }
+        }
+        return expenses;
+    }
+
+    public long countPending() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE,
+                "sync_state = " + STATE_PENDING);
+    }
+
+    public long countHeld() {
+        flush();
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE,
+                "sync_state = " + STATE_HELD);
+    }
+
+    /**
+     * Make held rows created before {@code createdBefore} pending so the next sync sends them.
+     *
+     * @return number of rows released
+     */
+    public int releaseHeld(long createdBefore) {
+        flush();
+        ContentValues values = new ContentValues();
+        values.put("sync_state", STATE_PENDING);
+        return getWritableDatabase().update(TABLE, values, "sync_state = " + STATE_HELD + " AND created_at < ?",
+                new String[]{String.valueOf(createdBefore)});
+    }
+
+    /**
+     * Undo an auto-commit.
+     *
+     * @return false if the row is gone or was already released for sync
+     */
+    public boolean discardHeld(String clientId) {
+        flush();
+        return getWritableDatabase().delete(TABLE, "client_id = ? AND sync_state = " + STATE_HELD,
+                new String[]{clientId}) > 0;
+    }
+}
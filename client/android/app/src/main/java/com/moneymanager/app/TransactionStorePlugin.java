@@ -0,0 +1,322 @@
+package com.moneymanager.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Read side of {@link TransactionStore} for JS, with keyset pagination, the settings
+ * for {@link ExpenseSyncJobService} and on-demand delta sync. Fires "expensesChanged"
+ * with the changed rows whenever server changes were applied.
+ */
+@CapacitorPlugin(name = "TransactionStore")
+public class TransactionStorePlugin extends Plugin {
+    private static final String TAG = "TransactionStorePlugin";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private AppEventBus.Subscription<ExpensesChangedEvent> changesSubscription;
+
+    @Override
+    public void load() {
+        // Replays changes applied by the background job before the plugin loaded
+        changesSubscription = AppEventBus.get().subscribe(ExpensesChangedEvent.class, AppEventBus.DIRECT, true, event -> {
+            JSObject data = new JSObject();
+            data.put("changed", event.changed);
+            if (event.expenses != null) {
+                JSArray expenses = new JSArray();
+                for (TransactionStore.ServerExpense row : event.expenses) {
+                    expenses.put(toJSObject(row));
+                }
+                data.put("expenses", expenses);
+            }
+            // Retained until JS adds its listener, which happens after load()
+            notifyListeners("expensesChanged", data, true);
+        });
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        if (changesSubscription != null) {
+            changesSubscription.cancel();
+            changesSubscription = null;
+        }
+        executor.shutdown();
+        super.handleOnDestroy();
+    }
+
+    /**
+     * Options: beforeId (cursor from the previous page), limit, pendingOnly.
+     * Resolves { transactions, nextCursor } where nextCursor is null on the last page.
+     */
+    @PluginMethod
+    public void getTransactions(PluginCall call) {
+        long beforeId = call.getLong("beforeId", 0L);
+        int limit = Math.max(1, Math.min(MAX_PAGE_SIZE, call.getInt("limit", DEFAULT_PAGE_SIZE)));
+        boolean pendingOnly = call.getBoolean("pendingOnly", false);
+
+        try {
+            List<TransactionStore.Record> records = TransactionStore.getInstance(getContext())
+                    .query(beforeId, limit, pendingOnly);
+            JSArray transactions = new JSArray();
+            for (TransactionStore.Record record : records) {
+                transactions.put(toJSObject(record));
+            }
+
+            JSObject ret = new JSObject();
+            ret.put("transactions", transactions);
+            if (records.size() == limit) {
+                ret.put("nextCursor", records.get(records.size() - 1).id);
+            } else {
+                ret.put("nextCursor", (Object) null);
+            }
+            call.resolve(ret);
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading transactions: " + e.getMessage(), e);
+            call.reject("Failed to read transactions: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Options: clientIds, the rows JS has saved to the server.
+     */
+    @PluginMethod
+    public void markSynced(PluginCall call) {
+        JSArray clientIdsArray = call.getArray("clientIds");
+        if (clientIdsArray == null) {
+            call.reject("clientIds is required");
+            return;
+        }
+
+        try {
+            List<String> clientIds = new ArrayList<>();
+            for (int i = 0; i < clientIdsArray.length(); i++) {
+                clientIds.add(clientIdsArray.getString(i));
+            }
+            int updated = TransactionStore.getInstance(getContext()).markSynced(clientIds);
+            Log.d(TAG, "✅ Marked " + updated + " transaction(s) synced");
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("updated", updated);
+            call.resolve(ret);
+        } catch (Exception e) {
+            Log.e(TAG, "Error marking transactions synced: " + e.getMessage(), e);
+            call.reject("Failed to mark transactions synced: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Options: apiUrl, accessToken (null on sign-out), userId. Stored for ExpenseSyncJobService.
+     */
+    @PluginMethod
+    public void configureSync(PluginCall call) {
+        String apiUrl = call.getString("apiUrl");
+        String accessToken = call.getString("accessToken");
+        String userId = call.getString("userId");
+
+        SharedPreferences.Editor editor = getContext()
+                .getSharedPreferences(SelectedApps.PREFS_NAME, Context.MODE_PRIVATE).edit();
+        if (apiUrl == null || accessToken == null) {
+            editor.remove(ExpenseSyncJobService.KEY_ACCESS_TOKEN);
+            editor.remove(ExpenseSyncJobService.KEY_USER_ID);
+        } else {
+            editor.putString(ExpenseSyncJobService.KEY_API_URL, apiUrl);
+            editor.putString(ExpenseSyncJobService.KEY_ACCESS_TOKEN, accessToken);
+            if (userId != null) {
+                editor.putString(ExpenseSyncJobService.KEY_USER_ID, userId);
+            }
+        }
+        editor.apply();
+
+        // A fresh token may unblock rows that were waiting on a rejected one
+        if (accessToken != null) {
+            ExpenseSyncJobService.schedule(getContext());
+        }
+
+        JSObject ret = new JSObject();
+        ret.put("success", true);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void requestSync(PluginCall call) {
+        ExpenseSyncJobService.schedule(getContext());
+        JSObject ret = new JSObject();
+        ret.put("success", true);
+        call.resolve(ret);
+    }
+
+    /**
+     * Pull server-side changes now. Resolves { changed }; an "expensesChanged" event
+     * also fires when anything changed.
+     */
+    @PluginMethod
+    public void syncChanges(PluginCall call) {
+        SharedPreferences prefs = getContext().getSharedPreferences(SelectedApps.PREFS_NAME, Context.MODE_PRIVATE);
+        String apiUrl = prefs.getString(ExpenseSyncJobService.KEY_API_URL, null);
+        String accessToken = prefs.getString(ExpenseSyncJobService.KEY_ACCESS_TOKEN, null);
+        String userId = prefs.getString(ExpenseSyncJobService.KEY_USER_ID, null);
+        if (apiUrl == null || accessToken == null || userId == null) {
+            call.reject("Sync is not configured");
+            return;
+        }
+
+        executor.execute(() -> {
+            try {
+                int changed = new ExpenseDeltaSync(apiUrl, accessToken, TransactionStore.getInstance(getContext()))
+                        .run(userId);
+                JSObject ret = new JSObject();
+                ret.put("changed", changed);
+                call.resolve(ret);
+            } catch (Exception e) {
+                Log.e(TAG, "Delta sync failed: " + e.getMessage(), e);
+                call.reject("Delta sync failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Options: beforeDate and beforeId (cursor from the previous page), limit.
+     * Resolves { expenses, nextCursor } from the local mirror of the server's expenses.
+     */
+    @PluginMethod
+    public void getServerExpenses(PluginCall call) {
+        String userId = getContext().getSharedPreferences(SelectedApps.PREFS_NAME, Context.MODE_PRIVATE)
+                .getString(ExpenseSyncJobService.KEY_USER_ID, null);
+        if (userId == null) {
+            call.reject("Sync is not configured");
+            return;
+        }
+        long beforeDate = call.getLong("beforeDate", 0L);
+        long beforeId = call.getLong("beforeId", 0L);
+        int limit = Math.max(1, Math.min(MAX_PAGE_SIZE, call.getInt("limit", DEFAULT_PAGE_SIZE)));
+
+        try {
+            List<TransactionStore.ServerExpense> rows = TransactionStore.getInstance(getContext())
+                    .queryServerExpenses(userId, beforeDate, beforeId, limit);
+            JSArray expenses = new JSArray();
+            for (TransactionStore.ServerExpense row : rows) {
+                expenses.put(toJSObject(row));
+            }
+
+            JSObject ret = new JSObject();
+            ret.put("expenses", expenses);
+            if (rows.size() == limit) {
+                TransactionStore.ServerExpense last = rows.get(rows.size() - 1);
+                JSObject cursor = new JSObject();
+                cursor.put("beforeDate", last.date);
+                cursor.put("beforeId", last.id);
+                ret.put("nextCursor", cursor);
+            } else {
+                ret.put("nextCursor", (Object) null);
+            }
+            call.resolve(ret);
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading server expenses: " + e.getMessage(), e);
+            call.reject("Failed to read server expenses: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Options: enabled, minParseConfidence, minCategoryConfidence (0..1, optional),
+     * minMerchantSamples (saves of a merchant before it can be auto-filed, optional).
+     */
+    @PluginMethod
+    public void setAutoCommit(PluginCall call) {
+        SharedPreferences.Editor editor = getContext()
+                .getSharedPreferences(SelectedApps.PREFS_NAME, Context.MODE_PRIVATE).edit();
+        editor.putBoolean(AutoCommitter.KEY_ENABLED, call.getBoolean("enabled", false));
+        Float minParse = call.getFloat("minParseConfidence");
+        if (minParse != null) {
+            editor.putFloat(AutoCommitter.KEY_MIN_PARSE_CONFIDENCE, Math.max(0f, Math.min(1f, minParse)));
+        }
+        Float minCategory = call.getFloat("minCategoryConfidence");
+        if (minCategory != null) {
+            editor.putFloat(AutoCommitter.KEY_MIN_CATEGORY_CONFIDENCE, Math.max(0f, Math.min(1f, minCategory)));
+        }
+        Integer minSamples = call.getInt("minMerchantSamples");
+        if (minSamples != null) {
+            editor.putInt(AutoCommitter.KEY_MIN_MERCHANT_SAMPLES, Math.max(1, minSamples));
+        }
+        editor.apply();
+        getAutoCommit(call);
+    }
+
+    /**
+     * Resolves the auto-commit settings and, since the process started, how many captures
+     * were committed, undone, or sent to the overlay for missing a threshold.
+     */
+    @PluginMethod
+    public void getAutoCommit(PluginCall call) {
+        SharedPreferences prefs = getContext().getSharedPreferences(SelectedApps.PREFS_NAME, Context.MODE_PRIVATE);
+        JSObject ret = new JSObject();
+        ret.put("enabled", prefs.getBoolean(AutoCommitter.KEY_ENABLED, false));
+        ret.put("minParseConfidence", prefs.getFloat(AutoCommitter.KEY_MIN_PARSE_CONFIDENCE,
+                AutoCommitter.DEFAULT_MIN_PARSE_CONFIDENCE));
+        ret.put("minCategoryConfidence", prefs.getFloat(AutoCommitter.KEY_MIN_CATEGORY_CONFIDENCE,
+                AutoCommitter.DEFAULT_MIN_CATEGORY_CONFIDENCE));
+        ret.put("minMerchantSamples", prefs.getInt(AutoCommitter.KEY_MIN_MERCHANT_SAMPLES,
+                AutoCommitter.DEFAULT_MIN_MERCHANT_SAMPLES));
+        ret.put("committed", AutoCommitter.getCommitted());
+        ret.put("undone", AutoCommitter.getUndone());
+        ret.put("declined", AutoCommitter.getDeclined());
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void getPendingCount(PluginCall call) {
+        try {
+            JSObject ret = new JSObject();
+            ret.put("count", TransactionStore.getInstance(getContext()).countPending());
+            call.resolve(ret);
+        } catch (Exception e) {
+            Log.e(TAG, "Error counting pending transactions: " + e.getMessage(), e);
+            call.reject("Failed to count pending transactions: " + e.getMessage());
+        }
+    }
+
+    static JSObject toJSObject(TransactionStore.Record record) {
+        JSObject item = new JSObject();
+        item.put("id", record.id);
+        item.put("clientId", record.clientId);
+        item.put("amount", record.amount);
+        item.put("type", record.type);
+        item.put("category", record.category);
+        item.put("title", record.title);
+        item.put("text", record.text);
+        item.put("package", record.packageName);
+        item.put("source", record.source);
+        item.put("transactionTimestamp", record.transactionTime);
+        item.put("createdAt", record.createdAt);
+        item.put("synced", record.syncState == TransactionStore.STATE_SYNCED);
+        return item;
+    }
+
+    static JSObject toJSObject(TransactionStore.ServerExpense row) {
+        JSObject item = new JSObject();
+        item.put("id", row.id);
+        item.put("clientId", row.clientId);
+        item.put("amount", row.amount);
+        item.put("description", row.description);
+        item.put("date", row.date);
+        item.put("categoryId", row.categoryId > 0 ? row.categoryId : null);
+        item.put("category", row.category);
+        item.put("source", row.source);
+        item.put("updatedAt", row.updatedAt);
+        return item;
+    }
+}
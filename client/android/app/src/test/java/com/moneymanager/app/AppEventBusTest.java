@@ -0,0 +1,85 @@
+package com.moneymanager.app;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class AppEventBusTest {
+    // The bus is process-wide, so each test uses its own event types
+    private static final class Retained {
+        final int n;
+
+        Retained(int n) {
+            this.n = n;
+        }
+    }
+
+    private static final class Held {
+    }
+
+    private static final class Live {
+    }
+
+    private final AppEventBus bus = AppEventBus.get();
+
+    @Test
+    public void lateSubscriberGetsRetainedEvents() {
+        bus.retainUndelivered(Retained.class, 2);
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(0, bus.post(new Retained(i)));
+        }
+
+        List<Integer> received = new ArrayList<>();
+        AppEventBus.Subscription<Retained> subscription =
+                bus.subscribe(Retained.class, AppEventBus.DIRECT, true, event -> received.add(event.n));
+        // The oldest was pushed out of the buffer
+        assertEquals(Arrays.asList(2, 3), received);
+
+        assertEquals(1, bus.post(new Retained(4)));
+        assertEquals(Arrays.asList(2, 3, 4), received);
+        subscription.cancel();
+    }
+
+    @Test
+    public void retainedEventsWaitForReplay() {
+        bus.retainUndelivered(Held.class, 4);
+        bus.post(new Held());
+
+        List<Held> withoutReplay = new ArrayList<>();
+        AppEventBus.Subscription<Held> first = bus.subscribe(Held.class, AppEventBus.DIRECT, false, withoutReplay::add);
+        assertTrue(withoutReplay.isEmpty());
+        first.cancel();
+
+        List<Held> withReplay = new ArrayList<>();
+        AppEventBus.Subscription<Held> second = bus.subscribe(Held.class, AppEventBus.DIRECT, true, withReplay::add);
+        assertEquals(1, withReplay.size());
+        second.cancel();
+    }
+
+    @Test
+    public void unregisteredTypesAreNotRetained() {
+        assertEquals(0, bus.post(new Live()));
+
+        List<Live> received = new ArrayList<>();
+        AppEventBus.Subscription<Live> subscription = bus.subscribe(Live.class, AppEventBus.DIRECT, true, received::add);
+        assertTrue(received.isEmpty());
+        subscription.cancel();
+    }
+
+    @Test
+    public void expensesChangedIsRetainedForTheStorePlugin() throws Exception {
+        // Registered when the delta sync class loads, before any sync can post
+        Class.forName(ExpenseDeltaSync.class.getName());
+        bus.post(new ExpensesChangedEvent("user-1", 3, null));
+
+        List<ExpensesChangedEvent> received = new ArrayList<>();
+        AppEventBus.Subscription<ExpensesChangedEvent> subscription =
+                bus.subscribe(ExpensesChangedEvent.class, AppEventBus.DIRECT, true, received::add);
+        assertEquals(1, received.size());
+        assertEquals(3, received.get(0).changed);
+        subscription.cancel();
+    }
+}
@@ -0,0 +1,192 @@
+package com.moneymanager.app;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs {@link ExpenseSyncClient} against a local stand-in for POST /api/expenses/sync.
+ */
+public class ExpenseSyncClientTest {
+    private HttpServer server;
+    private ExpenseSyncClient client;
+
+    // What the stand-in answers with, and what it last received
+    private volatile int responseStatus;
+    private volatile String responseBody;
+    private volatile String requestPath;
+    private volatile String requestEncoding;
+    private volatile String requestAuthorization;
+    private volatile String requestIdempotencyKey;
+    private volatile JSONObject requestJson;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/expenses/sync", exchange -> {
+            requestPath = exchange.getRequestURI().getPath();
+            requestEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            requestAuthorization = exchange.getRequestHeaders().getFirst("Authorization");
+            requestIdempotencyKey = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+            try (InputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+                requestJson = new JSONObject(readFully(in));
+            } catch (Exception e) {
+                requestJson = null;
+            }
+
+            byte[] body = responseBody.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(responseStatus, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        client = new ExpenseSyncClient("http://127.0.0.1:" + server.getAddress().getPort() + "/api/", "token-1");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void sendsGzipWithIdempotencyKey() throws Exception {
+        respond(200, results("a", "created", "b", "created"));
+        List<TransactionStore.Record> batch = batch("a", "b");
+        client.send(batch);
+
+        assertEquals("/api/expenses/sync", requestPath);
+        assertEquals("gzip", requestEncoding);
+        assertEquals("Bearer token-1", requestAuthorization);
+        assertEquals(ExpenseSyncClient.idempotencyKey(batch), requestIdempotencyKey);
+        assertEquals(32, requestIdempotencyKey.length());
+
+        assertNotNull("body should be gzip JSON", requestJson);
+        JSONArray messages = requestJson.getJSONArray("messages");
+        assertEquals(2, messages.length());
+        JSONObject first = messages.getJSONObject(0);
+        assertEquals("a", first.getString("clientId"));
+        assertEquals(250.0, first.getDouble("amount"), 0.001);
+        assertEquals("ZOMATO", first.getString("description"));
+
+        // A retry of the same batch carries the same key
+        String key = requestIdempotencyKey;
+        client.send(batch("a", "b"));
+        assertEquals(key, requestIdempotencyKey);
+    }
+
+    @Test
+    public void sortsPerItemResults() throws Exception {
+        // "e" is missing from the response
+        respond(200, results("a", "created", "b", "duplicate", "c", "invalid", "d", "error"));
+        ExpenseSyncClient.Result result = client.send(batch("a", "b", "c", "d", "e"));
+
+        assertEquals(200, result.httpStatus);
+        assertEquals(Arrays.asList("a", "b"), result.synced);
+        assertEquals(Arrays.asList("c"), result.rejected);
+        assertEquals(Arrays.asList("d", "e"), result.failed);
+        assertTrue(result.shouldRetry());
+        assertFalse(result.isUnauthorized());
+    }
+
+    @Test
+    public void allSyncedNeedsNoRetry() throws Exception {
+        respond(200, results("a", "created"));
+        ExpenseSyncClient.Result result = client.send(batch("a"));
+
+        assertEquals(Arrays.asList("a"), result.synced);
+        assertFalse(result.shouldRetry());
+    }
+
+    @Test
+    public void serverBusyIsRetried() throws Exception {
+        for (int status : new int[]{503, 429}) {
+            respond(status, "{}");
+            ExpenseSyncClient.Result result = client.send(batch("a", "b"));
+
+            assertEquals(status, result.httpStatus);
+            assertTrue(result.shouldRetry());
+            assertTrue(result.synced.isEmpty());
+            assertTrue("a busy server must not reject the batch", result.rejected.isEmpty());
+        }
+    }
+
+    @Test
+    public void unauthorizedStops() throws Exception {
+        respond(401, "{\"error\":\"expired\"}");
+        ExpenseSyncClient.Result result = client.send(batch("a"));
+
+        assertTrue(result.isUnauthorized());
+        assertFalse(result.shouldRetry());
+        assertTrue(result.rejected.isEmpty());
+        assertTrue(result.failed.isEmpty());
+    }
+
+    @Test
+    public void malformedBatchIsRejected() throws Exception {
+        respond(400, "{\"error\":\"bad request\"}");
+        ExpenseSyncClient.Result result = client.send(batch("a", "b"));
+
+        assertEquals(Arrays.asList("a", "b"), result.rejected);
+        assertFalse(result.shouldRetry());
+    }
+
+    @Test
+    public void unreachableServerIsRetried() {
+        server.stop(0);
+        ExpenseSyncClient.Result result = client.send(batch("a"));
+
+        assertEquals(0, result.httpStatus);
+        assertTrue(result.shouldRetry());
+        assertTrue(result.synced.isEmpty());
+    }
+
+    private void respond(int status, String body) {
+        responseStatus = status;
+        responseBody = body;
+    }
+
+    private static String results(String... clientIdsAndStatuses) throws Exception {
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < clientIdsAndStatuses.length; i += 2) {
+            results.put(new JSONObject()
+                    .put("clientId", clientIdsAndStatuses[i])
+                    .put("status", clientIdsAndStatuses[i + 1]));
+        }
+        return new JSONObject().put("results", results).toString();
+    }
+
+    private static List<TransactionStore.Record> batch(String... clientIds) {
+        TransactionStore.Record[] records = new TransactionStore.Record[clientIds.length];
+        for (int i = 0; i < clientIds.length; i++) {
+            records[i] = new TransactionStore.Record(i + 1, clientIds[i], 250.0, "debit", "Food", "ZOMATO",
+                    "Rs.250.00 debited", "com.google.android.apps.messaging", "notification",
+                    1_700_000_000_000L, 1_700_000_000_000L, TransactionStore.STATE_PENDING);
+        }
+        return Arrays.asList(records);
+    }
+
+    private static String readFully(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
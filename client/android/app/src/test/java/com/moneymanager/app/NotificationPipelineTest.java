@@ -0,0 +1,78 @@
+package com.moneymanager.app;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NotificationPipelineTest {
+    private static final String BANK = "com.google.android.apps.messaging";
+    private static final String CHAT = "com.whatsapp";
+
+    private final List<String> processed = new CopyOnWriteArrayList<>();
+    private NotificationPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        // Burst of 2, so most of each test runs over the package's rate
+        pipeline = new NotificationPipeline(event -> processed.add(event.text),
+                NotificationPipeline.DEFAULT_CAPACITY, NotificationPipeline.DropPolicy.DROP_OLDEST, 200, 2, 4.0);
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void burstOfDistinctBankAlertsIsNeverFolded() {
+        int alerts = 10;
+        for (int i = 1; i <= alerts; i++) {
+            pipeline.enqueue(new NotificationEvent("0|bank|" + i, BANK, "AD-HDFCBK",
+                    "Rs." + i + "00.00 debited from A/c **1234 on 12-03-24", "", 0, false));
+        }
+        awaitSettled(alerts);
+
+        assertEquals(alerts, processed.size());
+        for (int i = 1; i <= alerts; i++) {
+            assertTrue("Rs." + i + "00 was lost", processed.contains("Rs." + i + "00.00 debited from A/c **1234 on 12-03-24"));
+        }
+        PipelineMetrics metrics = pipeline.getMetrics();
+        assertEquals(0, metrics.getCoalesced());
+        assertEquals(0, metrics.getDropped());
+        assertEquals(0, metrics.getRateLimited());
+        assertEquals(0, pipeline.getDepth());
+    }
+
+    @Test
+    public void chatterOverTheRateStillFolds() {
+        int messages = 10;
+        for (int i = 1; i <= messages; i++) {
+            pipeline.enqueue(new NotificationEvent("0|chat|" + i, CHAT, "Group", "msg " + i, "", 0, false));
+        }
+        awaitSettled(messages);
+
+        // Two within the burst, the rest folded into one slot holding the newest message
+        assertEquals(3, processed.size());
+        assertEquals("msg " + messages, processed.get(2));
+        PipelineMetrics metrics = pipeline.getMetrics();
+        assertEquals(messages - 2, metrics.getRateLimited());
+        assertEquals(messages - 3, metrics.getCoalesced());
+        assertEquals(0, pipeline.getDepth());
+    }
+
+    // Every enqueued event ends up processed, failed, coalesced away or dropped
+    private void awaitSettled(int events) {
+        PipelineMetrics metrics = pipeline.getMetrics();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (metrics.getProcessed() + metrics.getFailed() + metrics.getCoalesced() + metrics.getDropped() < events) {
+            assertTrue("pipeline did not settle", System.currentTimeMillis() < deadline);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.moneymanager.app;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NotificationReplayerTest {
+    private static final String BANK = "com.google.android.apps.messaging";
+    private static final String CHAT = "com.whatsapp";
+    private static final String PAYMENT = "Rs.250.00 debited from account **1234 to VPA zomato@hdfc on 12-03-24. UPI ref 412345678901";
+
+    private File recording;
+
+    @Before
+    public void setUp() throws Exception {
+        recording = File.createTempFile("notifications", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        NotificationRecorder.stop();
+        recording.delete();
+    }
+
+    @Test
+    public void recordingRoundTripsSanitized() throws Exception {
+        NotificationRecorder.start(recording);
+        NotificationRecorder.active().record(new NotificationEvent("0|bank|1", BANK, "AD-HDFCBK", PAYMENT, "", 0, false));
+        NotificationRecorder.active().record(new NotificationEvent("0|chat|1", CHAT, "Group", "hey", "", 0, true));
+        assertEquals(2, NotificationRecorder.stop());
+
+        List<NotificationReplayer.Entry> entries = NotificationReplayer.load(recording);
+        assertEquals(2, entries.size());
+
+        NotificationReplayer.Entry payment = entries.get(0);
+        assertEquals(BANK, payment.packageName);
+        assertEquals("0|bank|1", payment.key);
+        assertEquals("AD-HDFCBK", payment.title);
+        assertFalse(payment.isTest);
+        // Amount kept; reference re-digited, VPA handle masked
+        assertTrue(payment.text.startsWith("Rs.250.00 debited"));
+        assertFalse(payment.text.contains("412345678901"));
+        assertTrue(payment.text.contains("xxxxxx@hdfc"));
+        assertEquals(PAYMENT.length(), payment.text.length());
+
+        NotificationReplayer.Entry chat = entries.get(1);
+        assertEquals(CHAT, chat.packageName);
+        assertEquals("hey", chat.text);
+        assertTrue(chat.isTest);
+    }
+
+    @Test
+    public void replaysAtUnlimitedSpeed() throws Exception {
+        int events = 400;
+        NotificationRecorder.start(recording);
+        for (int i = 0; i < events; i++) {
+            boolean bank = i % 4 == 0;
+            NotificationRecorder.active().record(new NotificationEvent(
+                    bank ? "0|bank|" + i : "0|chat|" + (i % 10),
+                    bank ? BANK : CHAT, bank ? "AD-HDFCBK" : "Group", bank ? PAYMENT : "msg " + i, "", 0, false));
+        }
+        assertEquals(events, NotificationRecorder.stop());
+
+        List<NotificationReplayer.Entry> entries = NotificationReplayer.load(recording);
+        assertEquals(events, entries.size());
+
+        NotificationProcessor processor = new NotificationProcessor(new NotificationDedupeIndex(), null);
+        processor.setVerbose(false);
+        NotificationReplayer.Report report = NotificationReplayer.replay(entries, NotificationReplayer.SPEED_UNLIMITED,
+                processor::process, NotificationPipeline.DEFAULT_CAPACITY);
+
+        assertFalse(report.timedOut);
+        assertEquals(events, report.events);
+        // Every event is accounted for: processed, coalesced away or dropped
+        assertEquals(events, report.processed + report.failed + report.coalesced + report.dropped);
+        assertEquals(0, report.failed);
+        assertTrue(report.processed > 0);
+        assertTrue("the payment notification should parse", report.matched > 0);
+        assertTrue(report.latencyP99Micros >= report.latencyP50Micros);
+    }
+}
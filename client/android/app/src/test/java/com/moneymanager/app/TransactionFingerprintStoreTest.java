@@ -0,0 +1,55 @@
+package com.moneymanager.app;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransactionFingerprintStoreTest {
+    private static final long NOW = 1_700_000_000_000L;
+
+    private File file;
+    private TransactionFingerprintStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("fingerprints", ".bin");
+        file.delete();
+        store = new TransactionFingerprintStore(file, TransactionFingerprintStore.DEFAULT_WINDOW_MS);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void otherSourceAttaches() {
+        assertNull(store.attachOrRecord(20, NOW, "Chai Point", null, TransactionFingerprintStore.SOURCE_NOTIFICATION));
+        TransactionFingerprintStore.Fingerprint match = store.attachOrRecord(20, NOW + 60_000, "chaipoint@ybl", null,
+                TransactionFingerprintStore.SOURCE_SCREENSHOT);
+        assertNotNull(match);
+        assertEquals(TransactionFingerprintStore.SOURCE_NOTIFICATION | TransactionFingerprintStore.SOURCE_SCREENSHOT,
+                match.getSources());
+    }
+
+    @Test
+    public void samePaymentTwiceFromOneSourceIsTwoPayments() {
+        assertNull(store.attachOrRecord(20, NOW, "Chai Point", null, TransactionFingerprintStore.SOURCE_NOTIFICATION));
+        assertNull(store.attachOrRecord(20, NOW + 60_000, "Chai Point", null, TransactionFingerprintStore.SOURCE_NOTIFICATION));
+    }
+
+    @Test
+    public void noMerchantOnEitherSideDoesNotMatch() {
+        assertNull(store.attachOrRecord(20, NOW, null, null, TransactionFingerprintStore.SOURCE_NOTIFICATION));
+        assertNull(store.attachOrRecord(20, NOW + 60_000, "Unknown Merchant", null, TransactionFingerprintStore.SOURCE_SCREENSHOT));
+    }
+
+    @Test
+    public void sameReferenceMatchesFromAnySource() {
+        assertNull(store.attachOrRecord(20, NOW, null, "412345678901", TransactionFingerprintStore.SOURCE_NOTIFICATION));
+        assertNotNull(store.attachOrRecord(20, NOW + 60_000, null, "412345678901", TransactionFingerprintStore.SOURCE_NOTIFICATION));
+    }
+}
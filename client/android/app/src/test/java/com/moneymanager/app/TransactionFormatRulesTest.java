@@ -0,0 +1,73 @@
+package com.moneymanager.app;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransactionFormatRulesTest {
+
+    private TransactionFormatRules rules;
+
+    @Before
+    public void setUp() throws Exception {
+        JSONArray formats = new JSONArray()
+                .put(new JSONObject()
+                        .put("id", "mybank")
+                        .put("pattern", "Rs.{amount} debited from A/c {*} to {merchant} on {timestamp}")
+                        .put("timestampFormat", "dd-MM-yy"))
+                .put(new JSONObject()
+                        .put("id", "lead")
+                        .put("pattern", "{amount} spent on card {ref} at {merchant}"));
+        assertEquals(2, TransactionFormatRules.rebuild(formats.toString(), null));
+        rules = TransactionFormatRules.get();
+    }
+
+    @Test
+    public void matchesRule() {
+        ParsedTransaction parsed = rules.match("MYBANK", "Rs.1,250.50 debited from A/c XX12 to CAFE MOCHA on 12-03-24");
+        assertNotNull(parsed);
+        assertEquals(1250.50, parsed.amount, 0.001);
+        assertEquals("CAFE MOCHA", parsed.merchant);
+    }
+
+    @Test
+    public void restartsAfterFalseStartOfFirstLiteral() {
+        // "Rs." inside "Mrs." must not hold the match open past the real "Rs."
+        ParsedTransaction parsed = rules.match("MYBANK",
+                "Dear Mrs. Rao, Rs.500.00 debited from A/c XX1234 to ZOMATO on 01-02-25");
+        assertNotNull(parsed);
+        assertEquals(500.00, parsed.amount, 0.001);
+        assertEquals("ZOMATO", parsed.merchant);
+    }
+
+    @Test
+    public void whitespaceRunsMatchOneSpace() {
+        ParsedTransaction parsed = rules.match("MYBANK", "Rs.1,250.50 debited  from A/c XX12 to CAFE MOCHA on 12-03-24");
+        assertNotNull(parsed);
+        assertEquals(1250.50, parsed.amount, 0.001);
+        assertEquals("CAFE MOCHA", parsed.merchant);
+    }
+
+    @Test
+    public void lineBreakMatchesOneSpace() {
+        ParsedTransaction parsed = rules.match("MYBANK", "Rs.1,250.50 debited\r\nfrom A/c XX12 to CAFE MOCHA on 12-03-24");
+        assertNotNull(parsed);
+        assertEquals(1250.50, parsed.amount, 0.001);
+        assertEquals("CAFE MOCHA", parsed.merchant);
+    }
+
+    @Test
+    public void leadingAmountField() {
+        ParsedTransaction parsed = rules.match(null, "INR 4,500.00 spent on card XX1234 at AMAZON");
+        assertNotNull(parsed);
+        assertEquals(4500.00, parsed.amount, 0.001);
+    }
+
+    @Test
+    public void noMatch() {
+        assertNull(rules.match("MYBANK", "hello there, nothing to see"));
+    }
+}
@@ -0,0 +1,102 @@
+import { useState, useEffect } from "react";
+import { Zap } from "lucide-react";
+import { Switch } from "../ui/switch";
+import { useToast } from "../ui/use-toast";
+import transactionStore from "../../lib/transactionStore";
+
+/**
+ * AutoCommitSettings Component
+ *
+ * Opt-in for saving confident captures without the popup. Each auto-saved
+ * expense gets a notification with an undo button. Shows how many captures were
+ * saved, undone, or sent to the popup since the app started.
+ */
+const AutoCommitSettings = () => {
+  const [autoCommit, setAutoCommit] = useState(null);
+  const { toast } = useToast();
+
+  useEffect(() => {
+    const loadAutoCommit = async () => {
+      setAutoCommit(await transactionStore.getAutoCommit());
+    };
+    loadAutoCommit();
+  }, []);
+
+  const handleToggle = async (checked) => {
+    const result = await transactionStore.setAutoCommit({ enabled: checked });
+    if (!result) {
+      toast({
+        variant: "error",
+        title: "Error",
+        description: "Failed to update auto-save",
+      });
+      return;
+    }
+    setAutoCommit(result);
+    toast({
+      variant: "success",
+      title: checked ? "Auto-save enabled" : "Auto-save disabled",
+      description: checked
+        ? "Confident captures are saved without the popup"
+        : "Every capture will show the popup",
+    });
+  };
+
+  if (!autoCommit) return null;
+
+  const counters = [
+    { label: "Saved", value: autoCommit.committed },
+    { label: "Undone", value: autoCommit.undone },
+    { label: "Sent to popup", value: autoCommit.declined },
+  ];
+
+  return (
+    <div
+      className="animate-slide-up card-elevated rounded-2xl overflow-hidden bg-white dark:bg-card"
+      style={{ animationDelay: "0.15s" }}
+    >
+      <div className="p-6 border-b border-border">
+        <h3 className="text-lg font-semibold text-foreground flex items-center gap-2">
+          <Zap size={20} />
+          Auto-Save Expenses
+        </h3>
+      </div>
+      <div className="p-6 space-y-4">
+        <div className="flex items-center justify-between gap-4 p-4 rounded-xl bg-secondary/50 border border-border">
+          <div className="flex-1">
+            <p className="font-semibold text-foreground">
+              Skip the popup when confident
+            </p>
+            <p className="text-xs text-muted-foreground mt-1">
+              Saves a capture straight away once a merchant has been
+              categorised {autoCommit.minMerchantSamples} times. You can undo
+              it from the notification.
+            </p>
+          </div>
+          <Switch
+            checked={autoCommit.enabled}
+            onCheckedChange={handleToggle}
+            aria-label="Toggle auto-save"
+          />
+        </div>
+
+        <div className="grid grid-cols-3 gap-3">
+          {counters.map((counter) => (
+            <div
+              key={counter.label}
+              className="p-3 rounded-xl bg-secondary/50 border border-border text-center"
+            >
+              <p className="text-xl font-bold text-foreground">
+                {counter.value}
+              </p>
+              <p className="text-xs text-muted-foreground">{counter.label}</p>
+            </div>
+          ))}
+        </div>
+        <p className="text-xs text-muted-foreground">Since the app started</p>
+      </div>
+    </div>
+  );
+};
+
+export default AutoCommitSettings;
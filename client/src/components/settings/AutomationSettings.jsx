@@ -5,6 +5,8 @@ import * as LucideIcons from "lucide-react";
 import { useData } from "../../context/DataContext";
 import { useToast } from "../ui/use-toast";
 import screenshotService from "../../lib/screenshotService";
+import TransactionFormatSettings from "./TransactionFormatSettings";
+import AutoCommitSettings from "./AutoCommitSettings";
 
 const AutomationSettings = () => {
   const {
@@ -497,6 +499,12 @@ const AutomationSettings = () => {
         </div>
       </div>
 
+      {/* Auto-Save */}
+      <AutoCommitSettings />
+
+      {/* Custom Message Formats */}
+      <TransactionFormatSettings />
+
       {/* Screenshot Monitoring */}
       {screenshotAvailable && (
         <div
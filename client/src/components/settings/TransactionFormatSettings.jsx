@@ -0,0 +1,165 @@
+import { useState, useEffect } from "react";
+import { FileText, Plus, Trash2, Loader } from "lucide-react";
+import { Input } from "../ui/input";
+import { Button } from "../ui/button";
+import { useToast } from "../ui/use-toast";
+import smsService from "../../lib/smsService";
+
+const EXAMPLE_PATTERN =
+  "Rs.{amount} debited from A/c {*} to {merchant} on {timestamp}";
+
+/**
+ * TransactionFormatSettings Component
+ *
+ * Lets the user add their own bank message formats. Patterns use the
+ * placeholders {amount}, {merchant}, {timestamp}, {direction}, {ref} and {*};
+ * they are compiled natively and tried on every notification.
+ */
+const TransactionFormatSettings = () => {
+  const [formats, setFormats] = useState([]);
+  const [pattern, setPattern] = useState("");
+  const [timestampFormat, setTimestampFormat] = useState("");
+  const [loading, setLoading] = useState(true);
+  const [saving, setSaving] = useState(false);
+  const { toast } = useToast();
+
+  useEffect(() => {
+    const loadFormats = async () => {
+      try {
+        setFormats(await smsService.getTransactionFormats());
+      } finally {
+        setLoading(false);
+      }
+    };
+    loadFormats();
+  }, []);
+
+  const saveFormats = async (newFormats) => {
+    setSaving(true);
+    try {
+      const result = await smsService.setTransactionFormats(newFormats);
+      if (!result) {
+        toast({
+          variant: "error",
+          title: "Error",
+          description: "Failed to save transaction formats",
+        });
+        return false;
+      }
+      if (!result.success) {
+        toast({
+          variant: "error",
+          title: "Format not valid",
+          description: (result.errors || []).join("\n"),
+        });
+        return false;
+      }
+      setFormats(newFormats);
+      return true;
+    } finally {
+      setSaving(false);
+    }
+  };
+
+  const handleAdd = async () => {
+    const trimmed = pattern.trim();
+    if (!trimmed) return;
+    const format = { id: `format_${Date.now()}`, pattern: trimmed };
+    if (timestampFormat.trim()) {
+      format.timestampFormat = timestampFormat.trim();
+    }
+    if (await saveFormats([...formats, format])) {
+      setPattern("");
+      setTimestampFormat("");
+      toast({
+        variant: "success",
+        title: "Format added",
+        description: "Matching messages will be captured from now on",
+      });
+    } else {
+      // Keep what was stored before the rejected format
+      await smsService.setTransactionFormats(formats);
+    }
+  };
+
+  const handleRemove = async (id) => {
+    await saveFormats(formats.filter((format) => format.id !== id));
+  };
+
+  return (
+    <div
+      className="animate-slide-up card-elevated rounded-2xl overflow-hidden bg-white dark:bg-card"
+      style={{ animationDelay: "0.15s" }}
+    >
+      <div className="p-6 border-b border-border">
+        <h3 className="text-lg font-semibold text-foreground flex items-center gap-2">
+          <FileText size={20} />
+          Custom Message Formats
+        </h3>
+      </div>
+      <div className="p-6 space-y-4">
+        <p className="text-sm text-muted-foreground">
+          Teach the app your bank's message format. Use {"{amount}"},{" "}
+          {"{merchant}"}, {"{timestamp}"}, {"{direction}"}, {"{ref}"} and{" "}
+          {"{*}"} for the parts that change.
+        </p>
+
+        {loading ? (
+          <div className="flex items-center justify-center">
+            <Loader size={20} className="animate-spin text-primary" />
+          </div>
+        ) : (
+          formats.map((format) => (
+            <div
+              key={format.id}
+              className="flex items-center gap-3 p-3 rounded-xl bg-secondary/50 border border-border"
+            >
+              <div className="flex-1 min-w-0">
+                <p className="text-sm font-mono text-foreground break-all">
+                  {format.pattern}
+                </p>
+                {format.timestampFormat && (
+                  <p className="text-xs text-muted-foreground mt-1">
+                    Date format: {format.timestampFormat}
+                  </p>
+                )}
+              </div>
+              <Button
+                variant="ghost"
+                size="icon"
+                disabled={saving}
+                onClick={() => handleRemove(format.id)}
+                aria-label="Remove format"
+              >
+                <Trash2 />
+              </Button>
+            </div>
+          ))
+        )}
+
+        <div className="space-y-2">
+          <Input
+            value={pattern}
+            onChange={(e) => setPattern(e.target.value)}
+            placeholder={EXAMPLE_PATTERN}
+          />
+          <Input
+            value={timestampFormat}
+            onChange={(e) => setTimestampFormat(e.target.value)}
+            placeholder="Date format, e.g. dd-MM-yy (optional)"
+          />
+          <Button
+            className="w-full"
+            disabled={saving || !pattern.trim()}
+            onClick={handleAdd}
+          >
+            {saving ? <Loader className="animate-spin" /> : <Plus />}
+            Add Format
+          </Button>
+        </div>
+      </div>
+    </div>
+  );
+};
+
+export default TransactionFormatSettings;
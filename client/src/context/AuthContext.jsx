@@ -1,6 +1,8 @@
 import React, { createContext, useContext, useEffect, useState } from "react";
 import { supabase } from "../lib/supabase";
 import { Capacitor } from "@capacitor/core";
+import { API_URL } from "../lib/api";
+import transactionStore from "../lib/transactionStore";
 
 const AuthContext = createContext();
 
@@ -20,6 +22,13 @@ export const AuthProvider = ({ children }) => {
       });
       setUser(session?.user ?? null);
       setLoading(false);
+
+      // Native background sync uses the same token as the API client
+      transactionStore.configureSync(
+        API_URL,
+        session?.access_token ?? null,
+        session?.user?.id ?? null
+      );
     });
 
     // Listen for changes on auth state (logged in, signed out, etc.)
@@ -33,6 +42,11 @@ export const AuthProvider = ({ children }) => {
       );
       console.log("🔄 Full session data:", session);
       setUser(session?.user ?? null);
+      transactionStore.configureSync(
+        API_URL,
+        session?.access_token ?? null,
+        session?.user?.id ?? null
+      );
       setLoading(false);
     });
 
@@ -124,11 +124,48 @@ export const DataProvider = ({ children }) => {
       }
     };
 
+    // Rows from a native delta sync, shaped like transactionStore.getServerExpenses
+    const handleExpensesChanged = (event) => {
+      const changed = new Map(
+        event.detail.map((row) => [
+          row.id,
+          {
+            id: row.id,
+            clientId: row.clientId,
+            userId: user?.id,
+            amount: row.amount,
+            description: row.description,
+            date: new Date(row.date).toISOString(),
+            categoryId: row.categoryId,
+            category:
+              categories.find((cat) => cat.id === row.categoryId) || null,
+            source: row.source,
+            updatedAt: row.updatedAt,
+          },
+        ])
+      );
+      setExpenses((current) => {
+        const known = new Set(current.map((exp) => exp.id));
+        const merged = current.map((exp) =>
+          changed.has(exp.id) ? { ...exp, ...changed.get(exp.id) } : exp
+        );
+        const added = [...changed.values()].filter((exp) => !known.has(exp.id));
+        return [...merged, ...added].sort(
+          (a, b) => new Date(b.date) - new Date(a.date)
+        );
+      });
+      console.log(
+        `✅ DataContext: Applied ${event.detail.length} changed expense(s)`
+      );
+    };
+
     window.addEventListener("refreshExpenses", handleRefreshExpenses);
+    window.addEventListener("expensesChanged", handleExpensesChanged);
     return () => {
       window.removeEventListener("refreshExpenses", handleRefreshExpenses);
+      window.removeEventListener("expensesChanged", handleExpensesChanged);
     };
-  }, [user]);
+  }, [user, categories]);
 
   // Category operations
   const addCategory = async (categoryData) => {
@@ -8,6 +8,10 @@ import {
   getOrCreateUser,
   createExpense,
 } from "../lib/dataService";
+import transactionStore from "../lib/transactionStore";
+
+// Overlay saves currently being written to the server, by native clientId
+const inFlightClientIds = new Set();
 
 const SMSContext = createContext();
 
@@ -67,9 +71,23 @@ export const SMSProvider = ({ children }) => {
 
     window.addEventListener("testNotificationReceived", handleTestNotification);
 
+    // Native delta sync pulled server-side changes
+    const changeListener = transactionStore.addChangeListener(
+      ({ changed, expenses }) => {
+        console.log(`🔄 ${changed} expense(s) changed on the server`);
+        // Apply just the changed rows; only a run too large to list needs a full reload
+        window.dispatchEvent(
+          expenses
+            ? new CustomEvent("expensesChanged", { detail: expenses })
+            : new CustomEvent("refreshExpenses")
+        );
+      }
+    );
+
     // Cleanup listener on unmount
     return () => {
       smsService.stopNotificationListener();
+      changeListener.then((listener) => listener.remove());
       window.removeEventListener(
         "testNotificationReceived",
         handleTestNotification
@@ -126,6 +144,15 @@ export const SMSProvider = ({ children }) => {
       );
 
       console.log("Live notification listener started successfully");
+
+      // Overlay saves made while the app was closed are waiting in the native store
+      const pending = await transactionStore.getPendingTransactions();
+      if (pending.length > 0) {
+        console.log(`📥 Syncing ${pending.length} expense(s) saved while app was closed`);
+        for (const expense of pending) {
+          await handleExpenseSavedFromOverlay(expense);
+        }
+      }
     } catch (error) {
       console.error("Error starting live listener:", error);
     }
@@ -289,6 +316,11 @@ export const SMSProvider = ({ children }) => {
   };
 
   const handleExpenseSavedFromOverlay = async (data) => {
+    // The live event and the pending-store sync can deliver the same save
+    if (data.clientId) {
+      if (inFlightClientIds.has(data.clientId)) return;
+      inFlightClientIds.add(data.clientId);
+    }
     try {
       console.log("💾 Handling expense saved from overlay:", data);
 
@@ -471,6 +503,7 @@ export const SMSProvider = ({ children }) => {
         description: data.title || "Transaction",
         date: isoDate, // Use full ISO timestamp
         userId: userProfile.id,
+        ...(data.clientId ? { clientId: data.clientId } : {}), // Same key the native sync uses
       };
 
       console.log("💾 Final expense data:", finalData);
@@ -496,9 +529,20 @@ export const SMSProvider = ({ children }) => {
           savedExpense
         );
 
+        if (data.clientId) {
+          await transactionStore.markSynced([data.clientId]);
+        }
+
         // Trigger a custom event to refresh expenses in the UI
         window.dispatchEvent(new CustomEvent("refreshExpenses"));
       } catch (saveError) {
+        if (data.clientId && saveError.code === "23505") {
+          // Unique clientId: the native background sync already saved this one
+          console.log("✅ Expense already synced natively:", data.clientId);
+          await transactionStore.markSynced([data.clientId]);
+          window.dispatchEvent(new CustomEvent("refreshExpenses"));
+          return;
+        }
         console.error("❌ Failed to save expense:", saveError);
         console.error("❌ Error details:", {
           message: saveError.message,
@@ -511,6 +555,8 @@ export const SMSProvider = ({ children }) => {
       console.error("❌ Error saving expense from overlay:", error);
       console.error("❌ Error details:", error.message, error.stack);
       alert(`Error: ${error.message}`);
+    } finally {
+      if (data.clientId) inFlightClientIds.delete(data.clientId);
     }
   };
 
@@ -7,7 +7,7 @@ import { supabase } from './supabase';
 // But for now, let's try to detect if we are on localhost vs build.
 // Best approach: Use a VITE_API_URL env var or fallback.
 
-const API_URL = import.meta.env.VITE_API_URL || 'http://localhost:3000/api';
+export const API_URL = import.meta.env.VITE_API_URL || 'http://localhost:3000/api';
 
 const api = axios.create({
     baseURL: API_URL,
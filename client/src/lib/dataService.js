@@ -617,7 +617,7 @@ export const createExpense = async (expense) => {
       type: "debit",
       ...expense,
       createdAt: now,
-      updatedAt: now,
+      updatedAt: now, // overwritten by a database trigger; the delta sync keys on it
     };
 
     console.log(
@@ -193,6 +193,45 @@ class SMSService {
     }
   }
 
+  /**
+   * Save user-defined transaction formats, e.g.
+   * { id: "mybank", pattern: "Rs.{amount} debited to {merchant} on {timestamp}", timestampFormat: "dd-MM-yy" }
+   */
+  async setTransactionFormats(formats) {
+    if (!this.isSupported) return;
+
+    try {
+      const NotificationListenerPlugin = (await import("./notificationPlugin"))
+        .default;
+
+      const result = await NotificationListenerPlugin.setTransactionFormats({
+        formats,
+      });
+      console.log("Set transaction formats:", result);
+      return result;
+    } catch (error) {
+      console.error("Error setting transaction formats:", error);
+    }
+  }
+
+  /**
+   * Get the stored user-defined transaction formats
+   */
+  async getTransactionFormats() {
+    if (!this.isSupported) return [];
+
+    try {
+      const NotificationListenerPlugin = (await import("./notificationPlugin"))
+        .default;
+
+      const result = await NotificationListenerPlugin.getTransactionFormats();
+      return result.formats || [];
+    } catch (error) {
+      console.error("Error getting transaction formats:", error);
+      return [];
+    }
+  }
+
   /**
    * Check if notification listener service is connected
    */
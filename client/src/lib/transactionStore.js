@@ -0,0 +1,166 @@
+import { registerPlugin, Capacitor } from "@capacitor/core";
+
+const TransactionStore = registerPlugin("TransactionStore");
+
+/**
+ * Native store of expenses saved from the Android overlay.
+ * Rows stay pending until they are saved to the server and marked synced.
+ */
+class TransactionStoreService {
+  isAvailable() {
+    return Capacitor.getPlatform() === "android";
+  }
+
+  /**
+   * One page, newest first. Pass the returned nextCursor as beforeId for the next page.
+   */
+  async getTransactions({ beforeId = 0, limit = 50, pendingOnly = false } = {}) {
+    if (!this.isAvailable()) return { transactions: [], nextCursor: null };
+    try {
+      return await TransactionStore.getTransactions({
+        beforeId,
+        limit,
+        pendingOnly,
+      });
+    } catch (error) {
+      console.error("Error reading native transactions:", error);
+      return { transactions: [], nextCursor: null };
+    }
+  }
+
+  /**
+   * Every pending row, oldest first.
+   */
+  async getPendingTransactions(pageSize = 100) {
+    const pending = [];
+    let beforeId = 0;
+    do {
+      const page = await this.getTransactions({
+        beforeId,
+        limit: pageSize,
+        pendingOnly: true,
+      });
+      pending.push(...page.transactions);
+      beforeId = page.nextCursor;
+    } while (beforeId);
+    return pending.reverse();
+  }
+
+  async markSynced(clientIds) {
+    if (!this.isAvailable() || !clientIds || clientIds.length === 0) return 0;
+    try {
+      const result = await TransactionStore.markSynced({ clientIds });
+      return result.updated;
+    } catch (error) {
+      console.error("Error marking transactions synced:", error);
+      return 0;
+    }
+  }
+
+  /**
+   * Hand the API URL, current access token and user id to the native background sync.
+   * Pass a null token on sign-out.
+   */
+  async configureSync(apiUrl, accessToken, userId = null) {
+    if (!this.isAvailable()) return;
+    try {
+      await TransactionStore.configureSync({ apiUrl, accessToken, userId });
+    } catch (error) {
+      console.error("Error configuring native sync:", error);
+    }
+  }
+
+  /**
+   * Pull only the expenses that changed on the server since the last sync.
+   * Resolves to the number of changed rows.
+   */
+  async syncChanges() {
+    if (!this.isAvailable()) return 0;
+    try {
+      const result = await TransactionStore.syncChanges();
+      return result.changed;
+    } catch (error) {
+      console.error("Error syncing server changes:", error);
+      return 0;
+    }
+  }
+
+  /**
+   * One page of the local mirror of server expenses, newest first.
+   * Pass the returned nextCursor back as the options for the next page.
+   */
+  async getServerExpenses({ beforeDate = 0, beforeId = 0, limit = 50 } = {}) {
+    if (!this.isAvailable()) return { expenses: [], nextCursor: null };
+    try {
+      return await TransactionStore.getServerExpenses({
+        beforeDate,
+        beforeId,
+        limit,
+      });
+    } catch (error) {
+      console.error("Error reading server expenses:", error);
+      return { expenses: [], nextCursor: null };
+    }
+  }
+
+  /**
+   * Called with { changed, expenses } whenever a native delta sync applied server
+   * changes. expenses holds the changed rows (as getServerExpenses returns them),
+   * or is missing when the run was too large to list. Resolves to a handle with remove().
+   */
+  async addChangeListener(callback) {
+    if (!this.isAvailable()) return { remove: () => {} };
+    return TransactionStore.addListener("expensesChanged", callback);
+  }
+
+  /**
+   * Opt in to saving high-confidence captures without the popup (with an undo
+   * notification). Thresholds are 0..1 and optional; minMerchantSamples is how
+   * many saves a merchant needs before it can be auto-filed.
+   */
+  async setAutoCommit({
+    enabled,
+    minParseConfidence,
+    minCategoryConfidence,
+    minMerchantSamples,
+  }) {
+    if (!this.isAvailable()) return null;
+    try {
+      return await TransactionStore.setAutoCommit({
+        enabled,
+        minParseConfidence,
+        minCategoryConfidence,
+        minMerchantSamples,
+      });
+    } catch (error) {
+      console.error("Error updating auto-commit:", error);
+      return null;
+    }
+  }
+
+  /**
+   * Settings plus committed / undone / declined counters.
+   */
+  async getAutoCommit() {
+    if (!this.isAvailable()) return null;
+    try {
+      return await TransactionStore.getAutoCommit();
+    } catch (error) {
+      console.error("Error reading auto-commit settings:", error);
+      return null;
+    }
+  }
+
+  async getPendingCount() {
+    if (!this.isAvailable()) return 0;
+    try {
+      const result = await TransactionStore.getPendingCount();
+      return result.count;
+    } catch (error) {
+      console.error("Error counting pending transactions:", error);
+      return 0;
+    }
+  }
+}
+
+export default new TransactionStoreService();
@@ -0,0 +1,9 @@
+-- AlterEnum
+ALTER TYPE "Source" ADD VALUE IF NOT EXISTS 'NOTIFICATION';
+ALTER TYPE "Source" ADD VALUE IF NOT EXISTS 'SCREENSHOT';
+
+-- AlterTable
+ALTER TABLE "Expense" ADD COLUMN "clientId" TEXT;
+
+-- CreateIndex
+CREATE UNIQUE INDEX "Expense_clientId_key" ON "Expense"("clientId");
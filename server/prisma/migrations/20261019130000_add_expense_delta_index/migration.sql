@@ -0,0 +1,2 @@
+-- CreateIndex
+CREATE INDEX "Expense_userId_updatedAt_id_idx" ON "Expense"("userId", "updatedAt", "id");
@@ -0,0 +1,15 @@
+-- The delta feed keys on "updatedAt". Prisma's @updatedAt is only applied by the Prisma
+-- client, and the app also writes expenses through Supabase with a device-clock value,
+-- so the database stamps every insert and update itself. Prisma stores UTC in
+-- timestamp-without-time-zone columns.
+CREATE OR REPLACE FUNCTION "expense_set_updated_at"() RETURNS TRIGGER AS $$
+BEGIN
+    NEW."updatedAt" = now() AT TIME ZONE 'UTC';
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+-- CreateTrigger
+CREATE TRIGGER "Expense_set_updatedAt"
+BEFORE INSERT OR UPDATE ON "Expense"
+FOR EACH ROW EXECUTE FUNCTION "expense_set_updated_at"();
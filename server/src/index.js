@@ -634,7 +634,53 @@ app.get("/api/savings/streaks", async (req, res) => {
   }
 });
 
+const DELTA_PAGE_DEFAULT = 200;
+const DELTA_PAGE_MAX = 1000;
+
 app.get("/api/expenses", async (req, res) => {
+  // Delta mode: rows changed after the (updatedAt, id) watermark, oldest change first
+  if (req.query.since !== undefined) {
+    const since = new Date(req.query.since || 0);
+    const afterId = parseInt(req.query.afterId, 10) || 0;
+    const limit = Math.min(
+      DELTA_PAGE_MAX,
+      Math.max(1, parseInt(req.query.limit, 10) || DELTA_PAGE_DEFAULT),
+    );
+    if (isNaN(since.getTime())) {
+      return res.status(400).json({ error: "Invalid since timestamp" });
+    }
+
+    try {
+      const expenses = await prisma.expense.findMany({
+        where: {
+          userId: req.dbUser.id,
+          OR: [
+            { updatedAt: { gt: since } },
+            { updatedAt: since, id: { gt: afterId } },
+          ],
+        },
+        orderBy: [{ updatedAt: "asc" }, { id: "asc" }],
+        take: limit,
+        include: { category: { select: { id: true, name: true } } },
+      });
+      const last = expenses[expenses.length - 1];
+      res.json({
+        expenses,
+        nextCursor:
+          expenses.length === limit
+            ? { since: last.updatedAt.toISOString(), afterId: last.id }
+            : null,
+        watermark: last
+          ? { since: last.updatedAt.toISOString(), afterId: last.id }
+          : { since: since.toISOString(), afterId },
+      });
+    } catch (error) {
+      console.error("DB Error:", error);
+      res.status(500).json({ error: "Database error" });
+    }
+    return;
+  }
+
   try {
     const expenses = await prisma.expense.findMany({
       where: { userId: req.dbUser.id },
@@ -648,11 +694,102 @@ app.get("/api/expenses", async (req, res) => {
   }
 });
 
+// Maps the native capture source to the Source enum
+const SYNC_SOURCES = {
+  notification: "NOTIFICATION",
+  screenshot: "SCREENSHOT",
+  shared: "SCREENSHOT",
+  sms: "SMS",
+};
+
+// One expense already parsed on the device, keyed by its clientId so resends are harmless
+const syncParsedExpense = async (userId, msg, categoriesByName) => {
+  const amount = Number(msg.amount);
+  const date = new Date(msg.date);
+  if (!Number.isFinite(amount) || amount <= 0 || isNaN(date.getTime())) {
+    return { clientId: msg.clientId, status: "invalid" };
+  }
+
+  const existing = await prisma.expense.findUnique({
+    where: { clientId: msg.clientId },
+    select: { id: true, userId: true },
+  });
+  if (existing) {
+    // Another user's clientId is never overwritten
+    return existing.userId === userId
+      ? { clientId: msg.clientId, status: "duplicate", id: existing.id }
+      : { clientId: msg.clientId, status: "invalid" };
+  }
+
+  const category = msg.category
+    ? categoriesByName.get(String(msg.category).toLowerCase())
+    : undefined;
+
+  try {
+    const expense = await prisma.expense.create({
+      data: {
+        clientId: msg.clientId,
+        amount,
+        description: String(msg.description || "Transaction").substring(0, 100),
+        date,
+        userId,
+        categoryId: category ? category.id : null,
+        source: SYNC_SOURCES[msg.source] || "SMS",
+        rawSmsBody: msg.body || null,
+      },
+    });
+    return { clientId: msg.clientId, status: "created", id: expense.id };
+  } catch (error) {
+    if (error.code === "P2002") {
+      // Created concurrently by a retry of the same batch
+      return { clientId: msg.clientId, status: "duplicate" };
+    }
+    throw error;
+  }
+};
+
 app.post("/api/expenses/sync", async (req, res) => {
-  const { messages } = req.body; // Expecting array of SMS strings or objects
+  const { messages } = req.body; // Array of SMS strings, { address, body } objects or parsed expenses with clientId
   if (!messages || !Array.isArray(messages))
     return res.status(400).json({ error: "Invalid messages format" });
 
+  // Parsed expenses from the native sync; each item gets its own result so one bad
+  // row does not fail the batch
+  const parsedExpenses = messages.filter(
+    (msg) => msg && typeof msg === "object" && msg.clientId,
+  );
+  if (parsedExpenses.length > 0) {
+    console.log(
+      `Syncing ${parsedExpenses.length} parsed expenses for user ${req.dbUser.id}` +
+        (req.get("Idempotency-Key") ? ` (key ${req.get("Idempotency-Key")})` : ""),
+    );
+    const categories = await prisma.category.findMany({
+      where: { userId: req.dbUser.id },
+      select: { id: true, name: true },
+    });
+    const categoriesByName = new Map(
+      categories.map((c) => [c.name.toLowerCase(), c]),
+    );
+
+    const results = [];
+    let syncedCount = 0;
+    for (const msg of parsedExpenses) {
+      try {
+        const result = await syncParsedExpense(
+          req.dbUser.id,
+          msg,
+          categoriesByName,
+        );
+        if (result.status === "created") syncedCount++;
+        results.push(result);
+      } catch (error) {
+        console.error("Sync Error for", msg.clientId, error);
+        results.push({ clientId: msg.clientId, status: "error" });
+      }
+    }
+    return res.json({ status: "success", synced: syncedCount, results });
+  }
+
   console.log(
     `Processing ${messages.length} SMS messages for user ${req.dbUser.id}`,
   );